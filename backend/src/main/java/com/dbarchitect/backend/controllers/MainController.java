@@ -2,74 +2,203 @@ package com.dbarchitect.backend.controllers;
 
 import com.dbarchitect.backend.entities.CodeChange;
 import com.dbarchitect.backend.entities.FileNode;
+import com.dbarchitect.backend.entities.DesignProject;
 import com.dbarchitect.backend.requests.CompareRequest;
 import com.dbarchitect.backend.requests.GenerateDBMLRequest;
 import com.dbarchitect.backend.requests.UpdateDbmlRequest;
 import com.dbarchitect.backend.requests.GenerateCodeRequest;
+import com.dbarchitect.backend.requests.SchemaDiffRequest;
+import com.dbarchitect.backend.responses.DbmlJobResponse;
+import com.dbarchitect.backend.responses.DbmlRevisionResponse;
+import com.dbarchitect.backend.responses.DbmlRevisionSummaryResponse;
 import com.dbarchitect.backend.responses.DesignProjectResponse;
+import com.dbarchitect.backend.responses.ProjectPageResponse;
+import com.dbarchitect.backend.services.DbmlJobService;
+import com.dbarchitect.backend.services.FlightRecorderService;
 import com.dbarchitect.backend.services.MainService;
 import com.dbarchitect.backend.utils.DBMLCode;
+import com.dbarchitect.backend.utils.DBMLGenerationCache;
+import com.dbarchitect.backend.utils.GeminiHedging;
+import com.dbarchitect.backend.utils.GeminiResilience;
+import com.dbarchitect.backend.utils.GeminiUnavailableException;
+import com.dbarchitect.backend.utils.GeneratedFile;
+import com.dbarchitect.backend.utils.GeneratedSourceCache;
+import com.dbarchitect.backend.utils.Hashing;
+import com.dbarchitect.backend.utils.JavaSourceDiff;
+import com.dbarchitect.backend.utils.ParsedSchemaCache;
+import com.dbarchitect.backend.utils.ProjectRenderSnapshots;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.validation.constraints.NotNull;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("")
 public class MainController {
 
     private final MainService mainService;
+    private final DbmlJobService dbmlJobService;
+    private final FlightRecorderService flightRecorderService;
 
-    public MainController(MainService mainService) {
+    public MainController(MainService mainService, DbmlJobService dbmlJobService,
+                          FlightRecorderService flightRecorderService) {
         this.mainService = mainService;
+        this.dbmlJobService = dbmlJobService;
+        this.flightRecorderService = flightRecorderService;
     }
 
     @PostMapping("/generate-dbml")
-    public DesignProjectResponse generateDbml(@RequestBody GenerateDBMLRequest request) {
-        return mainService.generateDbml(request);
+    public ResponseEntity<?> generateDbml(@RequestBody GenerateDBMLRequest request) {
+        try {
+            return ResponseEntity.ok(mainService.generateDbml(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (GeminiUnavailableException e) {
+            // Model (và các model fallback) đang lỗi / quá tải: báo lỗi ngay thay vì lưu project rỗng
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    // Sinh DBML bất đồng bộ: trả về jobId ngay, kết quả lấy qua polling hoặc SSE
+    @PostMapping("/generate-dbml/jobs")
+    public ResponseEntity<DbmlJobResponse> submitDbmlJob(@RequestBody GenerateDBMLRequest request) {
+        try {
+            return new ResponseEntity<>(dbmlJobService.submit(request), HttpStatus.ACCEPTED);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (IllegalStateException e) {
+            // Hàng đợi job đã đầy
+            return new ResponseEntity<>(HttpStatus.TOO_MANY_REQUESTS);
+        }
+    }
+
+    @GetMapping("/generate-dbml/jobs/{jobId}")
+    public ResponseEntity<DbmlJobResponse> getDbmlJob(@PathVariable String jobId) {
+        DbmlJobResponse job = dbmlJobService.getJob(jobId);
+        if (job == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    @GetMapping(value = "/generate-dbml/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamDbmlJob(@PathVariable String jobId) {
+        SseEmitter emitter = dbmlJobService.subscribe(jobId);
+        if (emitter == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(emitter);
     }
 
     @PutMapping("/projects/{id}/dbml")
     public ResponseEntity<DesignProjectResponse> updateProjectDbml(@PathVariable Long id, @RequestBody UpdateDbmlRequest request) {
-        var updated = mainService.updateProjectDbml(id, request.getRawDbmlCode());
+        DesignProject updated;
+        try {
+            updated = mainService.updateProjectDbml(id, request.getRawDbmlCode());
+        } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+            // Không lấy được khóa project / revision đã bị ghi: DBML mới không được lưu, client gửi lại
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
         if (updated == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         DesignProjectResponse response = new DesignProjectResponse();
         response.setProjectId(updated.getId());
         response.setProjectName(updated.getName());
-        response.setCleanDbmlCode(DBMLCode.extractCleanDbmlCode(updated.getRawDbmlCode()));
+        response.setCleanDbmlCode(updated.resolveCleanDbmlCode());
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    @GetMapping("/projects/{id}/revisions")
+    public List<DbmlRevisionSummaryResponse> getDbmlRevisions(@PathVariable Long id,
+                                                             @RequestParam(required = false) Integer before,
+                                                             @RequestParam(defaultValue = "50") int limit) {
+        return mainService.listDbmlRevisions(id, before, limit);
+    }
+
+    @GetMapping("/projects/{id}/revisions/{revision}")
+    public ResponseEntity<DbmlRevisionResponse> getDbmlRevision(@PathVariable Long id, @PathVariable int revision) {
+        DbmlRevisionResponse response = mainService.getDbmlRevision(id, revision);
+        if (response == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/generate-code")
-    public ResponseEntity<byte[]> downloadProjectZip(@RequestParam Long id) {
+    public ResponseEntity<StreamingResponseBody> downloadProjectZip(@RequestParam Long id) {
+        var project = mainService.getDesignProjectById(id);
+        if (project == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        // Render từng bảng và ghi thẳng vào ZIP trên output stream của response, không buffer cả file
+        StreamingResponseBody body = out -> {
+            try {
+                mainService.writeProjectZip(project, out);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                e.printStackTrace();
+                throw new IOException("Không thể tạo file ZIP cho project " + id, e);
+            }
+        };
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "generated-project.zip");
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    @GetMapping("/generate-preview")
+    public ResponseEntity<FileNode> generatePreview(@RequestParam Long id, @RequestParam(defaultValue = "false") boolean lazy,
+                                                    @RequestParam(required = false) String path,
+                                                    @RequestParam(defaultValue = "false") boolean sorted) {
+        // Generate preview for the project identified by ID (reads project from DB and builds tree).
+        // lazy=true: chỉ trả về khung cây, nội dung file lấy qua /projects/{id}/files
+        // path=controller/: chỉ trả về cây con (404 nếu không có); sorted=true: thư mục trước, rồi theo tên
+        FileNode tree = mainService.generateProjectPreview(id, !lazy, path, sorted);
+        if (tree == null && path != null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(tree);
+    }
+
+    @GetMapping("/projects/{id}/files")
+    public ResponseEntity<String> getGeneratedFileContent(@PathVariable Long id, @RequestParam String path, WebRequest webRequest) {
         try {
-            // 1. Gọi hàm tạo ZIP từ Service của bạn
-            byte[] zipBytes = mainService.generateProjectZip(id);
-            // 2. Thiết lập Header để trình duyệt kích hoạt tính năng tải file
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment", "generated-project.zip");
-            // Trả về mảng byte kèm mã trạng thái 200 OK
-            return new ResponseEntity<>(zipBytes, headers, HttpStatus.OK);
+            GeneratedFile file = mainService.getGeneratedFile(id, path);
+            if (file == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            String etag = "\"" + Hashing.sha256("file-etag", file.path(), file.content()) + "\"";
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                    .body(file.content());
         } catch (Exception e) {
             e.printStackTrace();
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
-    @GetMapping("/generate-preview")
-    public FileNode generatePreview(@RequestParam Long id) {
-        // Generate preview for the project identified by ID (reads project from DB and builds tree)
-        return mainService.generateProjectPreview(id);
-    }
-
     @GetMapping("/projects/{id}")
     public DesignProjectResponse getProjectById(@PathVariable Long id) {
         var project = mainService.getDesignProjectById(id);
@@ -79,31 +208,43 @@ public class MainController {
         DesignProjectResponse response = new DesignProjectResponse();
         response.setProjectId(project.getId());
         response.setProjectName(project.getName());
-        response.setCleanDbmlCode(DBMLCode.extractCleanDbmlCode(project.getRawDbmlCode()));
-        System.out.println(DBMLCode.extractCleanDbmlCode(project.getRawDbmlCode()));
-        System.out.println(project.getRawDbmlCode());
+        response.setCleanDbmlCode(project.resolveCleanDbmlCode());
         return response;
     }
 
     @GetMapping("/projects")
-    public java.util.List<DesignProjectResponse> getAllProjects() {
-        var projects = mainService.getAllDesignProjects();
-        java.util.List<DesignProjectResponse> responses = new java.util.ArrayList<>();
-        for (var project : projects) {
-            DesignProjectResponse response = new DesignProjectResponse();
-            response.setProjectId(project.getId());
-            response.setProjectName(project.getName());
-            response.setCleanDbmlCode(DBMLCode.extractCleanDbmlCode(project.getRawDbmlCode()));
-            responses.add(response);
-        }
-        return responses;
+    public ProjectPageResponse getAllProjects(@RequestParam(required = false) Long cursor,
+                                              @RequestParam(defaultValue = "50") int limit) {
+        // Chỉ trả về tóm tắt; DBML đầy đủ lấy qua GET /projects/{id}
+        return mainService.listProjects(cursor, limit);
     }
 
     @PostMapping("/compare")
-    public ResponseEntity<List<CodeChange>> getDiff(@RequestBody CompareRequest req) {
+    public ResponseEntity<?> getDiff(@RequestBody CompareRequest req) {
         // req chứa oldCode và newCode
-        List<CodeChange> diffResults = mainService.compareCode(req.getOldCode(), req.getNewCode());
-        return ResponseEntity.ok(diffResults);
+        try {
+            List<CodeChange> diffResults = mainService.compareCode(req.getOldCode(), req.getNewCode());
+            return ResponseEntity.ok(diffResults);
+        } catch (TimeoutException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/compare/stats")
+    public JavaSourceDiff.Stats getCompareStats() {
+        return mainService.getCompareStats();
+    }
+
+    @PostMapping("/schema-diff")
+    public ResponseEntity<?> diffSchemas(@RequestBody SchemaDiffRequest request) {
+        // So sánh trực tiếp trên schema DBML, không sinh / parse mã Java như /compare
+        try {
+            return ResponseEntity.ok(mainService.diffSchemas(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("DBML không hợp lệ: " + e.getMessage());
+        }
     }
 
     @PostMapping("/generate-java-code")
@@ -117,4 +258,95 @@ public class MainController {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    @GetMapping("/generation-cache/stats")
+    public GeneratedSourceCache.Stats getGenerationCacheStats() {
+        return mainService.getGenerationCacheStats();
+    }
+
+    @GetMapping("/gemini/status")
+    public List<GeminiResilience.ModelStatus> getGeminiStatus() {
+        return mainService.getGeminiStatus();
+    }
+
+    @GetMapping("/gemini/hedge/stats")
+    public GeminiHedging.Stats getGeminiHedgeStats() {
+        return mainService.getGeminiHedgeStats();
+    }
+
+    @GetMapping("/schema-cache/stats")
+    public ParsedSchemaCache.Stats getParsedSchemaCacheStats() {
+        return mainService.getParsedSchemaCacheStats();
+    }
+
+    @GetMapping("/dbml-cache/stats")
+    public DBMLGenerationCache.Stats getDbmlGenerationCacheStats() {
+        return mainService.getDbmlGenerationCacheStats();
+    }
+
+    @GetMapping("/generation-cache/incremental/stats")
+    public ProjectRenderSnapshots.Stats getIncrementalGenerationStats() {
+        return mainService.getIncrementalGenerationStats();
+    }
+
+    // Java Flight Recorder: bật recording có giới hạn (jfr.max-duration / jfr.max-size), dừng rồi tải file .jfr về
+    @PostMapping("/admin/jfr/start")
+    public ResponseEntity<?> startFlightRecording(@RequestParam(required = false) Duration duration,
+                                                  @RequestParam(defaultValue = "default") String settings) {
+        if (!flightRecorderService.isEnabled()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        try {
+            return ResponseEntity.ok(flightRecorderService.start(duration, settings));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PostMapping("/admin/jfr/stop")
+    public ResponseEntity<?> stopFlightRecording() {
+        if (!flightRecorderService.isEnabled()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        try {
+            return ResponseEntity.ok(flightRecorderService.stop());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/admin/jfr/status")
+    public ResponseEntity<FlightRecorderService.Status> getFlightRecordingStatus() {
+        if (!flightRecorderService.isEnabled()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(flightRecorderService.status());
+    }
+
+    @GetMapping("/admin/jfr/recording")
+    public ResponseEntity<StreamingResponseBody> downloadFlightRecording() throws IOException {
+        Path file = flightRecorderService.isEnabled() ? flightRecorderService.recordingFile() : null;
+        if (file == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        // Mở file ngay để một lần dump mới (xóa file cũ) không làm hỏng lượt tải đang diễn ra
+        var in = Files.newInputStream(file);
+        StreamingResponseBody body = out -> {
+            try (in) {
+                in.transferTo(out);
+            }
+        };
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "dbarchitect.jfr");
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
 }
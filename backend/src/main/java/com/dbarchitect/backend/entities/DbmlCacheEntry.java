@@ -0,0 +1,31 @@
+package com.dbarchitect.backend.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một kết quả sinh DBML từ Gemini đã được lưu lại (tầng Postgres của DBMLGenerationCache).
+ */
+@Entity
+@Getter
+@Setter
+@Table(indexes = @Index(name = "idx_dbml_cache_expires_at", columnList = "expiresAt"))
+public class DbmlCacheEntry {
+
+    // SHA-256 (hex) của model + mô tả đã chuẩn hóa + system instruction + cấu hình sinh
+    @Id
+    @Column(length = 64)
+    private String cacheKey;
+
+    private String modelName;
+
+    @Column(columnDefinition = "TEXT")
+    private String rawDbmlCode;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime expiresAt;
+}
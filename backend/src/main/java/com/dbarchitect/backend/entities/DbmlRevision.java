@@ -0,0 +1,50 @@
+package com.dbarchitect.backend.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một revision DBML của project: bản đầy đủ (FULL) hoặc delta theo dòng (DELTA) so với revision baseRevision.
+ * Sau mỗi tối đa dbml.revisions.snapshot-interval revision lại có một bản FULL, nên dựng lại một revision
+ * chỉ cần đọc bản FULL gần nhất và một số delta có giới hạn.
+ */
+@Entity
+@Getter
+@Setter
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_dbml_revision_project_revision", columnNames = {"projectId", "revision"}),
+        indexes = @Index(name = "idx_dbml_revision_created_at", columnList = "createdAt"))
+public class DbmlRevision {
+
+    public enum Kind { FULL, DELTA }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long projectId;
+
+    // Trùng với DesignProject.dbmlRevision tại thời điểm lưu
+    private Integer revision;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 8)
+    private Kind kind;
+
+    // DELTA: revision mà delta được tính từ đó (revision liền trước còn được giữ lại); FULL: null
+    private Integer baseRevision;
+
+    // FULL: rawDbmlCode; DELTA: TextDelta
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    // Kích thước rawDbmlCode của revision này (byte UTF-8), để hiển thị mà không cần dựng lại
+    private Integer textBytes;
+
+    private LocalDateTime createdAt;
+
+    // true nếu revision đã qua compaction (được giữ lại hoặc ghi lại); null/false với revision mới
+    private Boolean compacted;
+}
@@ -26,11 +26,35 @@ public class DesignProject {
     @Column(columnDefinition = "TEXT")
     private String rawDbmlCode;
 
+    // DBML đã tách khỏi rào markdown, tính một lần khi lưu
+    @Column(columnDefinition = "TEXT")
+    private String cleanDbmlCode;
+
+    // JSON của SchemaSnapshot (bảng, cột, kiểu, setting, ref); null nếu DBML không parse được
+    @Column(columnDefinition = "TEXT")
+    private String schemaSnapshot;
+
+    // Tăng mỗi khi DBML đổi; là số thứ tự của revision trong lịch sử do DbmlRevisionService lưu
+    private Integer dbmlRevision;
+
     private String status;
 
+    // Số bảng trong rawDbmlCode, cập nhật mỗi khi DBML thay đổi; danh sách project đọc cột này thay vì parse DBML
+    private Integer tableCount;
+
     @CreatedDate
     private LocalDateTime createdAt;
 
     @LastModifiedDate
     private LocalDateTime updatedAt;
+
+    // Project lưu trước khi có cột cleanDbmlCode thì tách từ rawDbmlCode
+    public String resolveCleanDbmlCode() {
+        if (cleanDbmlCode != null) return cleanDbmlCode;
+        return rawDbmlCode == null ? "" : DBMLCode.extractCleanDbmlCode(rawDbmlCode);
+    }
+
+    public int resolveDbmlRevision() {
+        return dbmlRevision == null ? 0 : dbmlRevision;
+    }
 }
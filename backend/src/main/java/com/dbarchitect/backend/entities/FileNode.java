@@ -11,6 +11,7 @@ public class FileNode {
     private String path;
     private String content; // Chỉ có giá trị nếu type là "file"
     private String language; // Ví dụ: "java", "xml", "sql"
+    private Long size; // Kích thước nội dung (byte, UTF-8), chỉ có giá trị nếu type là "file"
     private List<FileNode> children = new ArrayList<>();
 
     public FileNode(String name, String type, String path) {
@@ -0,0 +1,17 @@
+package com.dbarchitect.backend.repositories;
+
+import com.dbarchitect.backend.entities.DbmlCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface DbmlCacheEntryRepository extends JpaRepository<DbmlCacheEntry, String> {
+
+    @Modifying
+    @Transactional
+    long deleteByExpiresAtBefore(LocalDateTime time);
+}
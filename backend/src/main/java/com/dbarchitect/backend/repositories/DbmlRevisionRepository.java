@@ -0,0 +1,58 @@
+package com.dbarchitect.backend.repositories;
+
+import com.dbarchitect.backend.entities.DbmlRevision;
+import com.dbarchitect.backend.responses.DbmlRevisionSummaryResponse;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DbmlRevisionRepository extends JpaRepository<DbmlRevision, Long> {
+
+    Optional<DbmlRevision> findTopByProjectIdOrderByRevisionDesc(Long projectId);
+
+    // Bản FULL gần nhất không mới hơn revision cần dựng lại
+    Optional<DbmlRevision> findTopByProjectIdAndKindAndRevisionLessThanEqualOrderByRevisionDesc(
+            Long projectId, DbmlRevision.Kind kind, Integer revision);
+
+    List<DbmlRevision> findByProjectIdAndRevisionBetweenOrderByRevisionAsc(Long projectId, Integer from, Integer to);
+
+    long countByProjectIdAndRevisionGreaterThan(Long projectId, Integer revision);
+
+    @Query("select new com.dbarchitect.backend.responses.DbmlRevisionSummaryResponse(r.revision, r.kind, r.textBytes, r.createdAt) "
+            + "from DbmlRevision r where r.projectId = :projectId order by r.revision desc")
+    List<DbmlRevisionSummaryResponse> findSummaries(@Param("projectId") Long projectId, Limit limit);
+
+    @Query("select new com.dbarchitect.backend.responses.DbmlRevisionSummaryResponse(r.revision, r.kind, r.textBytes, r.createdAt) "
+            + "from DbmlRevision r where r.projectId = :projectId and r.revision < :before order by r.revision desc")
+    List<DbmlRevisionSummaryResponse> findSummariesBefore(@Param("projectId") Long projectId,
+                                                          @Param("before") Integer before, Limit limit);
+
+    // Project có nhiều delta cũ hơn mốc thời gian và chưa qua compaction: ứng viên cho compaction
+    @Query("select r.projectId from DbmlRevision r where r.createdAt < :cutoff and r.kind = :kind "
+            + "and (r.compacted is null or r.compacted = false) "
+            + "group by r.projectId having count(r) > :minRows")
+    List<Long> findProjectsToCompact(@Param("cutoff") LocalDateTime cutoff, @Param("kind") DbmlRevision.Kind kind,
+                                     @Param("minRows") long minRows);
+
+    // Mốc compaction của project: revision mới nhất đã qua compaction
+    Optional<DbmlRevision> findTopByProjectIdAndCompactedTrueOrderByRevisionDesc(Long projectId);
+
+    List<DbmlRevision> findByProjectIdAndRevisionGreaterThanEqualAndCreatedAtBeforeOrderByRevisionAsc(
+            Long projectId, Integer fromRevision, LocalDateTime cutoff);
+
+    @Modifying
+    @Query("update DbmlRevision r set r.compacted = true where r.projectId = :projectId and r.revision between :from and :to")
+    int markCompacted(@Param("projectId") Long projectId, @Param("from") Integer from, @Param("to") Integer to);
+
+    @Modifying
+    @Query("delete from DbmlRevision r where r.projectId = :projectId and r.revision between :from and :to")
+    int deleteRange(@Param("projectId") Long projectId, @Param("from") Integer from, @Param("to") Integer to);
+}
@@ -1,9 +1,32 @@
 package com.dbarchitect.backend.repositories;
 
 import com.dbarchitect.backend.entities.DesignProject;
+import com.dbarchitect.backend.responses.ProjectSummaryResponse;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface DesignProjectRepository extends JpaRepository<DesignProject, Long> {
+
+    // Keyset pagination theo id giảm dần (project mới nhất trước); chỉ select các cột tóm tắt, không đọc rawDbmlCode
+    @Query("select new com.dbarchitect.backend.responses.ProjectSummaryResponse(p.id, p.name, p.status, p.updatedAt, p.tableCount) "
+            + "from DesignProject p order by p.id desc")
+    List<ProjectSummaryResponse> findSummaries(Limit limit);
+
+    @Query("select new com.dbarchitect.backend.responses.ProjectSummaryResponse(p.id, p.name, p.status, p.updatedAt, p.tableCount) "
+            + "from DesignProject p where p.id < :cursor order by p.id desc")
+    List<ProjectSummaryResponse> findSummariesBefore(@Param("cursor") Long cursor, Limit limit);
+
+    // Khóa dòng project tới hết transaction: các lần sửa DBML đồng thời được xếp hàng nên mỗi lần tăng revision đúng 1
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from DesignProject p where p.id = :id")
+    Optional<DesignProject> findByIdForUpdate(@Param("id") Long id);
 }
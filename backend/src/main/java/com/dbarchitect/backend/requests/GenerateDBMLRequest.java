@@ -9,4 +9,8 @@ public class GenerateDBMLRequest {
     private String projectName;
     private String systemDescription;
     private String modelName;
+    // true: bỏ qua cache, luôn gọi Gemini để sinh mới (kết quả mới vẫn được lưu vào cache)
+    private boolean bypassCache;
+    // true / false: bật / tắt chế độ chia nhỏ theo domain; null: tự chọn theo độ dài mô tả
+    private Boolean chunked;
 }
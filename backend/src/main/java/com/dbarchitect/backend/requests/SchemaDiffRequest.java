@@ -0,0 +1,18 @@
+package com.dbarchitect.backend.requests;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Mỗi phía của phép so sánh là DBML truyền trực tiếp (oldDbml / newDbml) hoặc một revision của project
+ * (fromRevision / toRevision; null = revision hiện tại).
+ */
+@Getter
+@Setter
+public class SchemaDiffRequest {
+    private Long projectId;
+    private Integer fromRevision;
+    private Integer toRevision;
+    private String oldDbml;
+    private String newDbml;
+}
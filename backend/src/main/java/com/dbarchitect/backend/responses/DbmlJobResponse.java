@@ -0,0 +1,19 @@
+package com.dbarchitect.backend.responses;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+public class DbmlJobResponse {
+    private String jobId;
+    private String status; // PENDING, RUNNING, SUCCEEDED, FAILED
+    private String modelName;
+    private String partialOutput; // Phần DBML thô đã nhận được tới thời điểm hiện tại
+    private DesignProjectResponse result; // Chỉ có giá trị khi status = SUCCEEDED
+    private String error; // Chỉ có giá trị khi status = FAILED
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,15 @@
+package com.dbarchitect.backend.responses;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+public class DbmlRevisionResponse {
+    private Long projectId;
+    private Integer revision;
+    private LocalDateTime createdAt;
+    private String cleanDbmlCode;
+}
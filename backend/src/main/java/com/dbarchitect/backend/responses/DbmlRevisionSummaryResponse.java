@@ -0,0 +1,21 @@
+package com.dbarchitect.backend.responses;
+
+import com.dbarchitect.backend.entities.DbmlRevision;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Metadata của một revision, không kèm nội dung
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DbmlRevisionSummaryResponse {
+    private Integer revision;
+    private DbmlRevision.Kind kind;
+    private Integer textBytes;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,14 @@
+package com.dbarchitect.backend.responses;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class ProjectPageResponse {
+    private List<ProjectSummaryResponse> items;
+    // Truyền lại làm ?cursor= để lấy trang tiếp theo; null khi đã hết
+    private Long nextCursor;
+}
@@ -0,0 +1,21 @@
+package com.dbarchitect.backend.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Một dòng trong danh sách project: không có DBML (lấy qua GET /projects/{id})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectSummaryResponse {
+    private Long projectId;
+    private String projectName;
+    private String status;
+    private LocalDateTime updatedAt;
+    private Integer tableCount;
+}
@@ -0,0 +1,333 @@
+package com.dbarchitect.backend.services;
+
+import com.dbarchitect.backend.requests.GenerateDBMLRequest;
+import com.dbarchitect.backend.responses.DbmlJobResponse;
+import com.dbarchitect.backend.responses.DesignProjectResponse;
+import com.dbarchitect.backend.utils.DbmlStreamListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.dbarchitect.backend.utils.Constants.MODELS_MAP;
+
+/**
+ * Chạy việc sinh DBML (gọi Gemini) dưới dạng job bất đồng bộ để không giữ thread servlet trong lúc chờ LLM.
+ * Submit trả về jobId ngay; trạng thái, phần output đã nhận và kết quả cuối được lấy bằng polling
+ * hoặc nhận qua Server-Sent Events.
+ *
+ * Mỗi model có một giới hạn số job chạy đồng thời (dbml.jobs.concurrency.&lt;model&gt;, mặc định
+ * dbml.jobs.default-concurrency); job vượt giới hạn chờ trên virtual thread, không chiếm thread của Tomcat.
+ * Tổng số job đang chờ (chưa chạy) bị giới hạn bởi dbml.jobs.max-queued; vượt quá thì submit bị từ chối.
+ */
+@Service
+public class DbmlJobService {
+
+    public enum Status { PENDING, RUNNING, SUCCEEDED, FAILED }
+
+    private final MainService mainService;
+    private final Environment environment;
+    private final int defaultConcurrency;
+    private final Duration retention;
+    private final long emitterTimeoutMillis;
+    private final int maxQueued;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> modelPermits = new ConcurrentHashMap<>();
+    // Job đã submit nhưng chưa lấy được permit của model
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public DbmlJobService(MainService mainService, Environment environment,
+                          @Value("${dbml.jobs.default-concurrency:4}") int defaultConcurrency,
+                          @Value("${dbml.jobs.retention:1h}") Duration retention,
+                          @Value("${dbml.jobs.sse-timeout:5m}") Duration sseTimeout,
+                          @Value("${dbml.jobs.max-queued:100}") int maxQueued) {
+        this.mainService = mainService;
+        this.environment = environment;
+        this.defaultConcurrency = defaultConcurrency;
+        this.retention = retention;
+        this.emitterTimeoutMillis = sseTimeout.toMillis();
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * @throws IllegalArgumentException nếu model không hợp lệ
+     * @throws IllegalStateException nếu hàng đợi job đã đầy (dbml.jobs.max-queued)
+     */
+    public DbmlJobResponse submit(GenerateDBMLRequest request) {
+        if (!MODELS_MAP.containsKey(request.getModelName())) {
+            throw new IllegalArgumentException("Model không hợp lệ: " + request.getModelName());
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw new IllegalStateException("Hàng đợi job sinh DBML đã đầy, vui lòng thử lại sau");
+        }
+        Job job = new Job(UUID.randomUUID().toString(), request.getModelName());
+        jobs.put(job.id, job);
+        executor.submit(() -> run(job, request));
+        return job.toResponse();
+    }
+
+    public DbmlJobResponse getJob(String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null ? null : job.toResponse();
+    }
+
+    /**
+     * Đăng ký nhận sự kiện của job: "status", "chunk" (phần output mới), "table" (một khối Table
+     * hoàn chỉnh: {name, dbml}), "result" hoặc "error".
+     * Người đăng ký muộn nhận ngay trạng thái và toàn bộ output hiện có.
+     */
+    public SseEmitter subscribe(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        job.subscribe(emitter);
+        return emitter;
+    }
+
+    private void run(Job job, GenerateDBMLRequest request) {
+        Semaphore permits = modelPermits.computeIfAbsent(job.modelName, model ->
+                new Semaphore(environment.getProperty("dbml.jobs.concurrency." + model, Integer.class, defaultConcurrency)));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail("Job bị hủy");
+            return;
+        } finally {
+            queued.decrementAndGet();
+        }
+        try {
+            job.start();
+            // Stream từ Gemini: từng đoạn text và từng bảng hoàn chỉnh được đẩy ngay tới client SSE
+            DesignProjectResponse response = mainService.generateDbml(request, new DbmlStreamListener() {
+                @Override
+                public void onChunk(String chunk) {
+                    job.appendChunk(chunk);
+                }
+
+                @Override
+                public void onTable(String tableName, String tableDbml) {
+                    job.addTable(tableName, tableDbml);
+                }
+            });
+            if (response.getCleanDbmlCode() == null || response.getCleanDbmlCode().isBlank()) {
+                job.fail("Gemini không trả về DBML");
+            } else {
+                job.succeed(response);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            job.fail(e.getMessage());
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Xóa các job đã kết thúc quá thời gian lưu giữ
+    @Scheduled(fixedDelayString = "${dbml.jobs.cleanup-interval:5m}")
+    public void evictFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinishedBefore(threshold));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Một sự kiện SSE đã chụp lại dưới lock của Job, được gửi sau khi nhả lock
+    private record Event(String name, Object data) {
+    }
+
+    /**
+     * Một client SSE. Mọi lần gửi tới emitter đều giữ lock của chính Subscriber (không phải lock của Job),
+     * nên client chậm không chặn việc ghi output của job hay polling trạng thái, và các sự kiện tới
+     * một emitter không bị gửi đồng thời / sai thứ tự.
+     */
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void send(List<Event> events, boolean complete) {
+            if (closed) {
+                return;
+            }
+            try {
+                for (Event event : events) {
+                    emitter.send(SseEmitter.event().name(event.name()).data(event.data()));
+                }
+                if (complete) {
+                    closed = true;
+                    emitter.complete();
+                }
+            } catch (IOException e) {
+                closed = true;
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private static final class Job {
+        private final String id;
+        private final String modelName;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final StringBuilder partialOutput = new StringBuilder();
+        private final List<Map<String, String>> tables = new ArrayList<>();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private Status status = Status.PENDING;
+        private DesignProjectResponse result;
+        private String error;
+        private LocalDateTime finishedAt;
+
+        Job(String id, String modelName) {
+            this.id = id;
+            this.modelName = modelName;
+        }
+
+        void subscribe(SseEmitter emitter) {
+            Subscriber subscriber = new Subscriber(emitter);
+            emitter.onCompletion(() -> removeSubscriber(subscriber));
+            emitter.onTimeout(() -> removeSubscriber(subscriber));
+            emitter.onError(e -> removeSubscriber(subscriber));
+            // Giữ lock của subscriber trong lúc gửi bản chụp: sự kiện mới broadcast sau khi đăng ký
+            // phải chờ tới khi bản chụp đã gửi xong nên client luôn nhận đúng thứ tự
+            synchronized (subscriber) {
+                List<Event> replay = new ArrayList<>();
+                boolean finished;
+                synchronized (this) {
+                    replay.add(new Event("status", status.name()));
+                    if (!partialOutput.isEmpty()) {
+                        replay.add(new Event("chunk", partialOutput.toString()));
+                    }
+                    for (Map<String, String> table : tables) {
+                        replay.add(new Event("table", table));
+                    }
+                    Event finalEvent = finalEvent();
+                    finished = finalEvent != null;
+                    if (finished) {
+                        replay.add(finalEvent);
+                    } else {
+                        subscribers.add(subscriber);
+                    }
+                }
+                subscriber.send(replay, finished);
+            }
+        }
+
+        void start() {
+            List<Subscriber> targets;
+            synchronized (this) {
+                status = Status.RUNNING;
+                targets = List.copyOf(subscribers);
+            }
+            broadcast(targets, new Event("status", Status.RUNNING.name()));
+        }
+
+        void appendChunk(String chunk) {
+            List<Subscriber> targets;
+            synchronized (this) {
+                partialOutput.append(chunk);
+                targets = List.copyOf(subscribers);
+            }
+            broadcast(targets, new Event("chunk", chunk));
+        }
+
+        void addTable(String tableName, String tableDbml) {
+            Map<String, String> table = Map.of("name", tableName, "dbml", tableDbml);
+            List<Subscriber> targets;
+            synchronized (this) {
+                tables.add(table);
+                targets = List.copyOf(subscribers);
+            }
+            broadcast(targets, new Event("table", table));
+        }
+
+        void succeed(DesignProjectResponse response) {
+            finish(Status.SUCCEEDED, response, null);
+        }
+
+        void fail(String message) {
+            finish(Status.FAILED, null, message);
+        }
+
+        synchronized boolean isFinishedBefore(LocalDateTime threshold) {
+            return finishedAt != null && finishedAt.isBefore(threshold);
+        }
+
+        synchronized DbmlJobResponse toResponse() {
+            DbmlJobResponse response = new DbmlJobResponse();
+            response.setJobId(id);
+            response.setStatus(status.name());
+            response.setModelName(modelName);
+            response.setPartialOutput(partialOutput.toString());
+            response.setResult(result);
+            response.setError(error);
+            response.setCreatedAt(createdAt);
+            response.setFinishedAt(finishedAt);
+            return response;
+        }
+
+        private void finish(Status finalStatus, DesignProjectResponse response, String message) {
+            List<Subscriber> targets;
+            List<Event> events;
+            synchronized (this) {
+                status = finalStatus;
+                result = response;
+                error = message;
+                finishedAt = LocalDateTime.now();
+                events = List.of(new Event("status", status.name()), finalEvent());
+                targets = List.copyOf(subscribers);
+                subscribers.clear();
+            }
+            for (Subscriber subscriber : targets) {
+                subscriber.send(events, true);
+            }
+        }
+
+        // Sự kiện kết thúc ("result" / "error"); null nếu job chưa xong. Gọi khi đang giữ lock của Job
+        private Event finalEvent() {
+            if (status == Status.SUCCEEDED) {
+                return new Event("result", result);
+            }
+            if (status == Status.FAILED) {
+                return new Event("error", error == null ? "" : error);
+            }
+            return null;
+        }
+
+        private static void broadcast(List<Subscriber> targets, Event event) {
+            List<Event> events = List.of(event);
+            for (Subscriber subscriber : targets) {
+                subscriber.send(events, false);
+            }
+        }
+
+        private synchronized void removeSubscriber(Subscriber subscriber) {
+            subscribers.remove(subscriber);
+        }
+    }
+}
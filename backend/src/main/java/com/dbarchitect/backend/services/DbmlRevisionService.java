@@ -0,0 +1,239 @@
+package com.dbarchitect.backend.services;
+
+import com.dbarchitect.backend.entities.DbmlRevision;
+import com.dbarchitect.backend.entities.DesignProject;
+import com.dbarchitect.backend.repositories.DbmlRevisionRepository;
+import com.dbarchitect.backend.repositories.DesignProjectRepository;
+import com.dbarchitect.backend.responses.DbmlRevisionSummaryResponse;
+import com.dbarchitect.backend.utils.TextDelta;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lịch sử DBML của project: mỗi lần DBML đổi lưu một revision, là delta theo dòng so với revision trước
+ * hoặc bản đầy đủ sau mỗi snapshot-interval revision (hoặc khi delta không nhỏ hơn đáng kể).
+ * Dựng lại revision bất kỳ: bản FULL gần nhất + tối đa snapshot-interval - 1 delta.
+ *
+ * Compaction định kỳ: với các revision cũ hơn compact-after, mỗi khoảng compact-bucket chỉ giữ revision cuối
+ * (gộp các lần autosave liên tiếp), rồi tính lại delta giữa các revision còn lại. Revision đã qua compaction
+ * được đánh dấu (compacted); lần sau chỉ xử lý từ revision compacted mới nhất của project trở đi.
+ */
+@Service
+public class DbmlRevisionService {
+
+    public record RevisionText(Long projectId, int revision, LocalDateTime createdAt, String rawDbmlCode) {
+    }
+
+    private final DbmlRevisionRepository repository;
+    private final DesignProjectRepository projectRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int snapshotInterval;
+    private final Duration compactAfter;
+    private final Duration compactBucket;
+    private final int compactMinDeltas;
+
+    public DbmlRevisionService(DbmlRevisionRepository repository, DesignProjectRepository projectRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${dbml.revisions.snapshot-interval:20}") int snapshotInterval,
+                               @Value("${dbml.revisions.compact-after:30d}") Duration compactAfter,
+                               @Value("${dbml.revisions.compact-bucket:1h}") Duration compactBucket,
+                               @Value("${dbml.revisions.compact-min-deltas:50}") int compactMinDeltas) {
+        this.repository = repository;
+        this.projectRepository = projectRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+        this.compactAfter = compactAfter;
+        this.compactBucket = compactBucket;
+        this.compactMinDeltas = compactMinDeltas;
+    }
+
+    /**
+     * Lưu project và ghi revision hiện tại của nó trong cùng một transaction: ghi lịch sử lỗi
+     * (vd: trùng revision) thì DBML mới cũng không được lưu, lịch sử không bị thiếu revision.
+     * Khi sửa DBML, gọi trong transaction đã khóa project (DesignProjectRepository.findByIdForUpdate).
+     * @param previousRawDbml rawDbmlCode trước lần sửa này; null với project mới
+     */
+    @Transactional
+    public DesignProject saveWithRevision(DesignProject project, String previousRawDbml) {
+        DesignProject saved = projectRepository.save(project);
+        record(saved, previousRawDbml);
+        return saved;
+    }
+
+    /**
+     * Ghi revision hiện tại của project (gọi sau khi project đã được lưu, trong cùng transaction).
+     * @param previousRawDbml rawDbmlCode trước lần sửa này; dùng làm gốc cho delta nếu nó đúng là revision liền trước
+     */
+    public void record(DesignProject project, String previousRawDbml) {
+        int revision = project.resolveDbmlRevision();
+        String text = project.getRawDbmlCode() == null ? "" : project.getRawDbmlCode();
+
+        DbmlRevision row = new DbmlRevision();
+        row.setProjectId(project.getId());
+        row.setRevision(revision);
+        row.setTextBytes(text.getBytes(StandardCharsets.UTF_8).length);
+        row.setCreatedAt(LocalDateTime.now());
+        row.setKind(DbmlRevision.Kind.FULL);
+        row.setContent(text);
+
+        Optional<DbmlRevision> latest = repository.findTopByProjectIdOrderByRevisionDesc(project.getId());
+        // Chỉ tính delta khi revision trước có trong lịch sử (project cũ chưa có lịch sử thì bắt đầu bằng FULL)
+        if (latest.isPresent() && latest.get().getRevision() == revision - 1 && previousRawDbml != null
+                && deltasSinceFull(project.getId(), latest.get().getRevision()) + 1 < snapshotInterval) {
+            String delta = TextDelta.diff(previousRawDbml, text);
+            if (delta != null && delta.length() < text.length() / 2) {
+                row.setKind(DbmlRevision.Kind.DELTA);
+                row.setBaseRevision(latest.get().getRevision());
+                row.setContent(delta);
+            }
+        }
+        repository.save(row);
+    }
+
+    /** Metadata các revision, mới nhất trước; before = revision nhỏ nhất của trang trước. */
+    public List<DbmlRevisionSummaryResponse> listRevisions(Long projectId, Integer before, int limit) {
+        Limit pageSize = Limit.of(Math.clamp(limit, 1, 500));
+        return before == null
+                ? repository.findSummaries(projectId, pageSize)
+                : repository.findSummariesBefore(projectId, before, pageSize);
+    }
+
+    public Optional<RevisionText> getRevision(Long projectId, int revision) {
+        Optional<DbmlRevision> full = repository.findTopByProjectIdAndKindAndRevisionLessThanEqualOrderByRevisionDesc(
+                projectId, DbmlRevision.Kind.FULL, revision);
+        if (full.isEmpty()) {
+            return Optional.empty();
+        }
+        List<DbmlRevision> chain = repository.findByProjectIdAndRevisionBetweenOrderByRevisionAsc(
+                projectId, full.get().getRevision(), revision);
+        DbmlRevision last = chain.getLast();
+        if (last.getRevision() != revision) {
+            return Optional.empty(); // Revision đã bị gộp khi compaction
+        }
+        return Optional.of(new RevisionText(projectId, revision, last.getCreatedAt(), replay(chain)));
+    }
+
+    @Scheduled(fixedDelayString = "${dbml.revisions.compaction-interval:6h}")
+    public void compactOldRevisions() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(compactAfter);
+        for (Long projectId : repository.findProjectsToCompact(cutoff, DbmlRevision.Kind.DELTA, compactMinDeltas)) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> compactProject(projectId, cutoff));
+            } catch (RuntimeException e) {
+                System.err.println("Compaction lịch sử DBML của project " + projectId + " thất bại: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gộp các revision cũ hơn cutoff của một project, bắt đầu từ mốc compaction trước (revision đó được giữ nguyên
+     * làm gốc); chạy trong một transaction. Mọi revision đã xử lý được đánh dấu compacted, kể cả khi không gộp được gì,
+     * để project không bị chọn lại ở các lần chạy sau.
+     */
+    void compactProject(Long projectId, LocalDateTime cutoff) {
+        Optional<DbmlRevision> watermark = repository.findTopByProjectIdAndCompactedTrueOrderByRevisionDesc(projectId);
+        List<DbmlRevision> old = repository.findByProjectIdAndRevisionGreaterThanEqualAndCreatedAtBeforeOrderByRevisionAsc(
+                projectId, watermark.map(DbmlRevision::getRevision).orElse(0), cutoff);
+        if (old.size() < 2) {
+            return;
+        }
+        boolean anchored = watermark.isPresent() && watermark.get().getRevision().equals(old.getFirst().getRevision());
+
+        // Revision đầu tiên của project và mốc compaction thường là FULL; dựng lại nếu không phải
+        String text = old.getFirst().getKind() == DbmlRevision.Kind.FULL
+                ? old.getFirst().getContent()
+                : getRevision(projectId, old.getFirst().getRevision()).map(RevisionText::rawDbmlCode).orElse(null);
+        if (text == null) {
+            return;
+        }
+
+        List<DbmlRevision> kept = new ArrayList<>();
+        List<String> keptTexts = new ArrayList<>();
+        for (int i = 0; i < old.size(); i++) {
+            DbmlRevision row = old.get(i);
+            if (i > 0) {
+                text = row.getKind() == DbmlRevision.Kind.FULL ? row.getContent() : TextDelta.apply(text, row.getContent());
+            }
+            boolean lastInBucket = (i == 0 && anchored) || i == old.size() - 1 || bucket(old.get(i + 1)) != bucket(row);
+            if (lastInBucket) {
+                kept.add(row);
+                keptTexts.add(text);
+            }
+        }
+        if (kept.size() == old.size()) {
+            repository.markCompacted(projectId, old.getFirst().getRevision(), old.getLast().getRevision());
+            return;
+        }
+
+        List<DbmlRevision> rewritten = new ArrayList<>();
+        int sinceFull = 0;
+        for (int i = 0; i < kept.size(); i++) {
+            DbmlRevision source = kept.get(i);
+            String current = keptTexts.get(i);
+            DbmlRevision row = new DbmlRevision();
+            row.setProjectId(projectId);
+            row.setRevision(source.getRevision());
+            row.setCreatedAt(source.getCreatedAt());
+            row.setTextBytes(source.getTextBytes());
+            row.setKind(DbmlRevision.Kind.FULL);
+            row.setContent(current);
+            row.setCompacted(true);
+
+            // Revision cũ cuối cùng luôn là FULL để chuỗi delta mới hơn phía sau không dài thêm
+            boolean last = i == kept.size() - 1;
+            if (i > 0 && !last && sinceFull + 1 < snapshotInterval) {
+                String delta = TextDelta.diff(keptTexts.get(i - 1), current);
+                if (delta != null && delta.length() < current.length() / 2) {
+                    row.setKind(DbmlRevision.Kind.DELTA);
+                    row.setBaseRevision(kept.get(i - 1).getRevision());
+                    row.setContent(delta);
+                }
+            }
+            sinceFull = row.getKind() == DbmlRevision.Kind.FULL ? 0 : sinceFull + 1;
+            rewritten.add(row);
+        }
+
+        repository.deleteRange(projectId, old.getFirst().getRevision(), old.getLast().getRevision());
+        repository.saveAll(rewritten);
+    }
+
+    private long bucket(DbmlRevision row) {
+        return row.getCreatedAt().toEpochSecond(ZoneOffset.UTC) / Math.max(1, compactBucket.toSeconds());
+    }
+
+    private long deltasSinceFull(Long projectId, int latestRevision) {
+        return repository.findTopByProjectIdAndKindAndRevisionLessThanEqualOrderByRevisionDesc(
+                        projectId, DbmlRevision.Kind.FULL, latestRevision)
+                .map(full -> repository.countByProjectIdAndRevisionGreaterThan(projectId, full.getRevision()))
+                .orElse((long) snapshotInterval);
+    }
+
+    // chain: bản FULL rồi các delta theo thứ tự revision, mỗi delta tính từ revision liền trước trong chain
+    private static String replay(List<DbmlRevision> chain) {
+        String text = chain.getFirst().getContent();
+        for (int i = 1; i < chain.size(); i++) {
+            DbmlRevision row = chain.get(i);
+            if (row.getKind() == DbmlRevision.Kind.FULL) {
+                text = row.getContent();
+            } else if (!row.getBaseRevision().equals(chain.get(i - 1).getRevision())) {
+                throw new IllegalStateException("Lịch sử DBML bị đứt ở revision " + row.getRevision());
+            } else {
+                text = TextDelta.apply(text, row.getContent());
+            }
+        }
+        return text;
+    }
+}
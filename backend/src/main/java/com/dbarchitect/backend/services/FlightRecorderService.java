@@ -0,0 +1,148 @@
+package com.dbarchitect.backend.services;
+
+import com.dbarchitect.backend.utils.PipelineEvents;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Bật / tắt một recording Java Flight Recorder trên node đang chạy và tải file .jfr về
+ * (event PipelineEvents của ứng dụng + event GC / CPU / lock của JDK theo cấu hình "default" hoặc "profile").
+ *
+ * Mỗi lúc chỉ có một recording; recording luôn bị giới hạn bởi jfr.max-duration (tự dừng) và jfr.max-size
+ * (bỏ dữ liệu cũ nhất). Khi không có recording, các event của ứng dụng gần như không tốn gì.
+ *
+ * Opt-in: các endpoint /admin/jfr/* không có xác thực nên trả 404 trừ khi jfr.admin.enabled=true.
+ */
+@Service
+public class FlightRecorderService {
+
+    public record Status(String state, String settings, Instant startTime, Duration duration, long maxSizeBytes,
+                         long recordedBytes, boolean dumpAvailable) {
+    }
+
+    private final boolean enabled;
+    private final Duration maxDuration;
+    private final DataSize maxSize;
+
+    private Recording recording;
+    private String settings;
+    private Path dump;
+
+    public FlightRecorderService(@Value("${jfr.admin.enabled:false}") boolean enabled,
+                                 @Value("${jfr.max-duration:10m}") Duration maxDuration,
+                                 @Value("${jfr.max-size:256MB}") DataSize maxSize) {
+        this.enabled = enabled;
+        this.maxDuration = maxDuration;
+        this.maxSize = maxSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Bắt đầu recording mới; recording / file dump trước đó (nếu có) bị bỏ.
+     * @param duration null hoặc lớn hơn jfr.max-duration thì dùng jfr.max-duration
+     * @param settings "default" (overhead ~1%) hoặc "profile" (chi tiết hơn, nhiều sample hơn)
+     * @throws IllegalStateException nếu đang có recording chạy
+     * @throws IllegalArgumentException nếu settings không tồn tại
+     */
+    public synchronized Status start(Duration duration, String settings) throws IOException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("Đang có recording chạy, cần dừng trước khi bắt đầu recording mới");
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings);
+        } catch (ParseException | IOException e) {
+            throw new IllegalArgumentException("Cấu hình JFR không hợp lệ: " + settings, e);
+        }
+        discard();
+
+        Duration bounded = duration == null || duration.isNegative() || duration.isZero() || duration.compareTo(maxDuration) > 0
+                ? maxDuration : duration;
+        Recording next = new Recording(configuration);
+        next.setName("dbarchitect-admin");
+        next.enable(PipelineEvents.StageEvent.class).withoutThreshold();
+        next.enable(PipelineEvents.GeminiCallEvent.class).withoutThreshold();
+        next.setDuration(bounded);
+        next.setMaxSize(maxSize.toBytes());
+        next.setToDisk(true);
+        next.start();
+        this.recording = next;
+        this.settings = settings;
+        return status();
+    }
+
+    /**
+     * Dừng recording (nếu còn chạy) và ghi dữ liệu ra file để tải về.
+     * @throws IllegalStateException nếu chưa có recording nào
+     */
+    public synchronized Status stop() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("Chưa có recording nào");
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        dumpRecording();
+        return status();
+    }
+
+    /**
+     * File .jfr để tải về: file đã dump khi dừng, hoặc bản chụp dữ liệu tới hiện tại nếu recording còn chạy.
+     * @return null nếu chưa có recording nào
+     */
+    public synchronized Path recordingFile() throws IOException {
+        if (recording != null && (recording.getState() == RecordingState.RUNNING || dump == null)) {
+            dumpRecording();
+        }
+        return dump;
+    }
+
+    public synchronized Status status() {
+        if (recording == null) {
+            return new Status(dump == null ? "NONE" : "CLOSED", settings, null, null, maxSize.toBytes(), 0, dump != null);
+        }
+        return new Status(recording.getState().name(), settings, recording.getStartTime(), recording.getDuration(),
+                recording.getMaxSize(), recording.getSize(), dump != null);
+    }
+
+    // Dữ liệu của recording đã dừng vẫn được JFR giữ tới khi close(), nên có thể dump lại nhiều lần
+    private void dumpRecording() throws IOException {
+        Path file = Files.createTempFile("dbarchitect-", ".jfr");
+        recording.dump(file);
+        if (dump != null) {
+            Files.deleteIfExists(dump);
+        }
+        dump = file;
+    }
+
+    private void discard() throws IOException {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+        if (dump != null) {
+            Files.deleteIfExists(dump);
+            dump = null;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() throws IOException {
+        discard();
+    }
+}
@@ -5,71 +5,190 @@ import com.dbarchitect.backend.entities.DesignProject;
 import com.dbarchitect.backend.entities.FileNode;
 import com.dbarchitect.backend.repositories.DesignProjectRepository;
 import com.dbarchitect.backend.requests.GenerateDBMLRequest;
+import com.dbarchitect.backend.requests.SchemaDiffRequest;
+import com.dbarchitect.backend.responses.DbmlRevisionResponse;
+import com.dbarchitect.backend.responses.DbmlRevisionSummaryResponse;
 import com.dbarchitect.backend.responses.DesignProjectResponse;
+import com.dbarchitect.backend.responses.ProjectPageResponse;
+import com.dbarchitect.backend.responses.ProjectSummaryResponse;
 import com.dbarchitect.backend.utils.CodeGenerator;
 import com.dbarchitect.backend.utils.DBMLCode;
+import com.dbarchitect.backend.utils.DBMLGenerationCache;
+import com.dbarchitect.backend.utils.DbmlStreamListener;
+import com.dbarchitect.backend.utils.DbmlTableStreamParser;
+import com.dbarchitect.backend.utils.FileTree;
+import com.dbarchitect.backend.utils.GeminiHedging;
+import com.dbarchitect.backend.utils.GeminiResilience;
+import com.dbarchitect.backend.utils.GeneratedFile;
+import com.dbarchitect.backend.utils.GeneratedSourceCache;
+import com.dbarchitect.backend.utils.JavaSourceDiff;
+import com.dbarchitect.backend.utils.ParsedSchemaCache;
+import com.dbarchitect.backend.utils.PipelineEvents;
+import com.dbarchitect.backend.utils.PipelineMetrics;
+import com.dbarchitect.backend.utils.ProjectRenderSnapshots;
 import com.dbarchitect.backend.utils.ProjectTreeBuilder;
-import com.github.javaparser.StaticJavaParser;
-import com.github.javaparser.ParseProblemException;
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.FieldDeclaration;
+import com.dbarchitect.backend.utils.SchemaDiff;
+import com.dbarchitect.backend.utils.SchemaSnapshot;
+import com.wn.dbml.compiler.DbmlParser;
+import com.wn.dbml.model.Database;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import com.dbarchitect.backend.utils.DBMLGenerator;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.Collections;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class MainService {
     private final DBMLGenerator dbmlGenerator;
+    private final DBMLGenerationCache dbmlGenerationCache;
     private final CodeGenerator codeGenerator;
     private final DesignProjectRepository designProjectRepository;
 
-    public MainService(CodeGenerator codeGenerator, DesignProjectRepository designProjectRepository) {
+    private final GeminiResilience geminiResilience;
+
+    private final GeminiHedging geminiHedging;
+
+    private final ParsedSchemaCache parsedSchemaCache;
+
+    private final DbmlRevisionService dbmlRevisionService;
+
+    private final JavaSourceDiff javaSourceDiff;
+
+    private final PipelineMetrics metrics;
+
+    private static final int MAX_PROJECT_PAGE_SIZE = 200;
+
+    // Mô tả dài hơn ngưỡng này thì tự động dùng chế độ chia nhỏ theo domain (khi request không chỉ định)
+    private final int chunkedMinDescriptionChars;
+
+    public MainService(CodeGenerator codeGenerator, DesignProjectRepository designProjectRepository,
+                       DBMLGenerationCache dbmlGenerationCache, GeminiResilience geminiResilience,
+                       GeminiHedging geminiHedging, ParsedSchemaCache parsedSchemaCache,
+                       DbmlRevisionService dbmlRevisionService, JavaSourceDiff javaSourceDiff,
+                       DBMLGenerator dbmlGenerator, PipelineMetrics metrics,
+                       @Value("${dbml.chunked.min-description-chars:4000}") int chunkedMinDescriptionChars) {
         this.codeGenerator = codeGenerator;
-        this.dbmlGenerator = new DBMLGenerator();
+        this.parsedSchemaCache = parsedSchemaCache;
+        this.dbmlRevisionService = dbmlRevisionService;
+        this.javaSourceDiff = javaSourceDiff;
+        this.metrics = metrics;
+        this.chunkedMinDescriptionChars = chunkedMinDescriptionChars;
+        this.geminiResilience = geminiResilience;
+        this.geminiHedging = geminiHedging;
+        this.dbmlGenerator = dbmlGenerator;
+        this.dbmlGenerationCache = dbmlGenerationCache;
         this.designProjectRepository = designProjectRepository;
     }
 
     public DesignProjectResponse generateDbml(GenerateDBMLRequest request) {
-        DBMLCode dbmlCode = dbmlGenerator.generateDbmlCode(request.getSystemDescription(), request.getModelName());
+        return generateDbml(request, null);
+    }
+
+    /**
+     * @param listener khác null -> dùng API stream của Gemini và đẩy từng đoạn text / từng khối Table
+     *                 hoàn chỉnh cho listener ngay khi nhận được.
+     */
+    public DesignProjectResponse generateDbml(GenerateDBMLRequest request, DbmlStreamListener listener) {
+        DBMLCode dbmlCode = generateDbmlCode(request, listener);
 
         DesignProject designProject = new DesignProject();
         designProject.setName(request.getProjectName());
-        designProject.setRawDbmlCode(dbmlCode.getRawDbmlCode());
-        designProjectRepository.save(designProject);
+        Database parsed = applyDbml(designProject, dbmlCode.getRawDbmlCode());
+        // Chỉ phần lưu nằm trong transaction, không giữ kết nối DB trong lúc chờ Gemini
+        designProject = dbmlRevisionService.saveWithRevision(designProject, null);
+        cacheParsedSchema(designProject, parsed);
 
         DesignProjectResponse response = new DesignProjectResponse();
-        response.setCleanDbmlCode(dbmlCode.extractCleanDbmlCode());
+        response.setCleanDbmlCode(designProject.getCleanDbmlCode());
         response.setProjectId(designProject.getId());
         response.setProjectName(designProject.getName());
         return response;
     }
 
+    // Gọi Gemini qua cache; bypassCache = true thì luôn sinh mới
+    private DBMLCode generateDbmlCode(GenerateDBMLRequest request, DbmlStreamListener listener) {
+        DbmlTableStreamParser tableParser = listener == null ? null : new DbmlTableStreamParser(listener::onTable);
+        boolean chunked = useChunkedGeneration(request);
+        String key = DBMLGenerator.cacheKey(request.getSystemDescription(), request.getModelName(), chunked);
+        if (!request.isBypassCache()) {
+            String cached = dbmlGenerationCache.get(key);
+            if (cached != null) {
+                if (listener != null) {
+                    listener.onChunk(cached);
+                    tableParser.feed(cached);
+                }
+                return new DBMLCode(cached);
+            }
+        }
+        DBMLCode dbmlCode;
+        if (chunked) {
+            // Các domain sinh song song nên không stream theo thứ tự được: gửi kết quả gộp một lần
+            dbmlCode = dbmlGenerator.generateDbmlCodeChunked(request.getSystemDescription(), request.getModelName());
+            if (listener != null) {
+                listener.onChunk(dbmlCode.getRawDbmlCode());
+                tableParser.feed(dbmlCode.getRawDbmlCode());
+            }
+        } else if (listener == null) {
+            dbmlCode = dbmlGenerator.generateDbmlCode(request.getSystemDescription(), request.getModelName());
+        } else {
+            dbmlCode = dbmlGenerator.streamDbmlCode(request.getSystemDescription(), request.getModelName(), chunk -> {
+                listener.onChunk(chunk);
+                tableParser.feed(chunk);
+            });
+        }
+        // Không cache kết quả rỗng. Cache theo model đã thực sự trả lời: output của model fallback không được
+        // trả cho lần gọi sau với model được yêu cầu; không rõ model (chia nhỏ qua nhiều model) thì không cache
+        String answeredBy = dbmlCode.getModelName();
+        if (answeredBy != null && dbmlCode.getRawDbmlCode() != null && !dbmlCode.getRawDbmlCode().isBlank()) {
+            String answeredKey = answeredBy.equals(request.getModelName())
+                    ? key : DBMLGenerator.cacheKey(request.getSystemDescription(), answeredBy, chunked);
+            dbmlGenerationCache.put(answeredKey, answeredBy, dbmlCode.getRawDbmlCode());
+        }
+        return dbmlCode;
+    }
+
+    private boolean useChunkedGeneration(GenerateDBMLRequest request) {
+        if (request.getChunked() != null) {
+            return request.getChunked();
+        }
+        String description = request.getSystemDescription();
+        return description != null && description.length() >= chunkedMinDescriptionChars;
+    }
+
+    public List<GeminiResilience.ModelStatus> getGeminiStatus() {
+        return geminiResilience.status();
+    }
+
+    public GeminiHedging.Stats getGeminiHedgeStats() {
+        return geminiHedging.stats();
+    }
+
+    public DBMLGenerationCache.Stats getDbmlGenerationCacheStats() {
+        return dbmlGenerationCache.stats();
+    }
+
     public byte[] generateProjectZip(Long projectId) throws Exception {
         return codeGenerator.generateProjectZip(projectId);
     }
 
+    public void writeProjectZip(DesignProject project, OutputStream out) throws Exception {
+        codeGenerator.writeProjectZip(project.getId(), project.resolveCleanDbmlCode(), schemaSource(project), out);
+    }
+
     public FileNode generateProjectPreview(String dbmlContent) {
         try {
             String clean = DBMLCode.extractCleanDbmlCode(dbmlContent);
-            List<java.util.Map<String, String>> files = codeGenerator.generateFilesFromDbml(clean);
-            List<FileNode> nodes = new ArrayList<>();
-            String basePackagePath = "src/main/java/com/example/demo/";
-            for (var m : files) {
-                String path = basePackagePath + m.get("path");
-                String fileName = path.contains("/") ? path.substring(path.lastIndexOf('/') + 1) : path;
-                FileNode node = new FileNode(fileName, "file", path);
-                node.setContent(m.get("content"));
-                node.setLanguage(detectLanguage(fileName));
-                nodes.add(node);
-            }
-            return ProjectTreeBuilder.buildTree(nodes, "PreviewProject");
+            List<GeneratedFile> files = codeGenerator.generateAllSourceFiles(clean);
+            return buildPreviewTree(files, "PreviewProject", true, null, false);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -77,6 +196,24 @@ public class MainService {
     }
 
     public FileNode generateProjectPreview(Long projectId) {
+        return generateProjectPreview(projectId, true);
+    }
+
+    /**
+     * @param includeContent false -> chỉ trả về khung cây (tên, đường dẫn, ngôn ngữ, kích thước);
+     *                       nội dung từng file lấy sau qua {@link #getGeneratedFile(Long, String)}.
+     */
+    public FileNode generateProjectPreview(Long projectId, boolean includeContent) {
+        return generateProjectPreview(projectId, includeContent, null, false);
+    }
+
+    /**
+     * @param path    khác null -> chỉ trả về cây con tại đường dẫn này, tính từ gốc project
+     *                (vd: src/main/java/com/example/demo/controller) hoặc từ package gốc (vd: controller/);
+     *                null nếu không tồn tại
+     * @param sorted  true -> thư mục trước, rồi theo tên; false -> theo thứ tự sinh file
+     */
+    public FileNode generateProjectPreview(Long projectId, boolean includeContent, String path, boolean sorted) {
         try {
             // Tải dự án từ DB
             DesignProject project = designProjectRepository.findById(projectId).orElse(null);
@@ -84,126 +221,254 @@ public class MainService {
                 return null;
             }
 
-            // Giả mã DBML và tạo cây tệp
-            byte[] projectZip = codeGenerator.generateProjectZip(projectId);
-            return ProjectTreeBuilder.buildTreeFromZip(projectZip, project.getName());
+            // Sinh mã từ DBML và dựng cây tệp trực tiếp, không cần nén/giải nén ZIP
+            List<GeneratedFile> files = codeGenerator.generateAllSourceFiles(projectId, project.resolveCleanDbmlCode(), schemaSource(project));
+            return buildPreviewTree(files, project.getName(), includeContent, path, sorted);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    // Dựng cây preview, ghi thời gian dựng cây, số file và tổng kích thước (byte UTF-8) của cây
+    private FileNode buildPreviewTree(List<GeneratedFile> files, String projectName, boolean includeContent,
+                                      String path, boolean sorted) {
+        long start = System.nanoTime();
+        FileTree index = ProjectTreeBuilder.indexTreeFromGeneratedFiles(files, CodeGenerator.BASE_PACKAGE_PATH, projectName, includeContent);
+        if (sorted) {
+            index.sorted();
+        }
+        FileNode tree = index.root();
+        if (path != null) {
+            tree = index.subtree(path);
+            if (tree == null) {
+                tree = index.subtree(CodeGenerator.BASE_PACKAGE_PATH + path);
+            }
+            if (tree == null) {
+                return null;
+            }
+        }
+        Tags tags = metrics.tags(CodeGenerator.countTables(files))
+                .and("content", includeContent ? "full" : "lazy");
+        metrics.record("dbarchitect.preview.build", tags, System.nanoTime() - start);
+        metrics.summary("dbarchitect.preview.files", "files", tags, files.size());
+        metrics.summary("dbarchitect.preview.size", "bytes", tags, treeBytes(tree));
+        return tree;
+    }
+
+    private static long treeBytes(FileNode node) {
+        if (node.getChildren() == null || node.getChildren().isEmpty()) {
+            return node.getSize() == null ? 0 : node.getSize();
+        }
+        long total = 0;
+        for (FileNode child : node.getChildren()) {
+            total += treeBytes(child);
+        }
+        return total;
+    }
+
+    /**
+     * Lấy một file đã sinh của project theo đường dẫn hiển thị trong cây preview
+     * (vd: src/main/java/com/example/demo/entity/User.java). Kết quả sinh code được lấy từ cache nếu có.
+     */
+    public GeneratedFile getGeneratedFile(Long projectId, String path) throws Exception {
+        DesignProject project = designProjectRepository.findById(projectId).orElse(null);
+        if (project == null || path == null || !path.startsWith(CodeGenerator.BASE_PACKAGE_PATH)) {
+            return null;
+        }
+        String relativePath = path.substring(CodeGenerator.BASE_PACKAGE_PATH.length());
+        List<GeneratedFile> files = codeGenerator.generateAllSourceFiles(projectId, project.resolveCleanDbmlCode(), schemaSource(project));
+        for (GeneratedFile file : files) {
+            if (file.path().equals(relativePath)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
     public DesignProject getDesignProjectById(Long projectId) {
         return designProjectRepository.findById(projectId).orElse(null);
     }
 
+    /**
+     * Đọc (có khóa), tăng revision, lưu project và ghi lịch sử trong một transaction,
+     * nên hai lần sửa đồng thời không thể cùng ghi một revision.
+     */
+    @Transactional
     public DesignProject updateProjectDbml(Long projectId, String rawDbmlCode) {
-        var projectOpt = designProjectRepository.findById(projectId);
+        var projectOpt = designProjectRepository.findByIdForUpdate(projectId);
         if (projectOpt.isEmpty()) return null;
         DesignProject project = projectOpt.get();
-        project.setRawDbmlCode(rawDbmlCode);
-        // Optionally update status or record a change; for now we just save
-        designProjectRepository.save(project);
+        String previousRawDbml = project.getRawDbmlCode();
+        Database parsed = applyDbml(project, rawDbmlCode);
+        // Lưu revision mới vào lịch sử (delta so với bản trước)
+        project = dbmlRevisionService.saveWithRevision(project, previousRawDbml);
+        cacheParsedSchema(project, parsed);
         return project;
     }
 
-    public List<DesignProject> getAllDesignProjects() {
-        return designProjectRepository.findAll();
+    public List<DbmlRevisionSummaryResponse> listDbmlRevisions(Long projectId, Integer before, int limit) {
+        return dbmlRevisionService.listRevisions(projectId, before, limit);
     }
 
-    // Simple language detection (same rules as ProjectTreeBuilder)
-    private String detectLanguage(String fileName) {
-        String lower = fileName.toLowerCase();
-        if (lower.endsWith(".java")) return "java";
-        if (lower.endsWith(".xml")) return "xml";
-        if (lower.endsWith(".sql")) return "sql";
-        if (lower.endsWith(".yml") || lower.endsWith(".yaml")) return "yaml";
-        if (lower.endsWith(".json")) return "json";
-        return "text";
+    public DbmlRevisionResponse getDbmlRevision(Long projectId, int revision) {
+        return dbmlRevisionService.getRevision(projectId, revision)
+                .map(text -> {
+                    DbmlRevisionResponse response = new DbmlRevisionResponse();
+                    response.setProjectId(text.projectId());
+                    response.setRevision(text.revision());
+                    response.setCreatedAt(text.createdAt());
+                    response.setCleanDbmlCode(DBMLCode.extractCleanDbmlCode(text.rawDbmlCode()));
+                    return response;
+                })
+                .orElse(null);
     }
 
-    public List<CodeChange> compareCode(String oldSource, String newSource) {
-        List<CodeChange> changes = new ArrayList<>();
+    /**
+     * Gán DBML mới cho project và tính một lần mọi thứ suy ra từ nó: DBML sạch, snapshot schema,
+     * số bảng, revision mới. Trả về Database đã parse (null nếu DBML không hợp lệ) để đưa vào cache sau khi lưu.
+     */
+    private Database applyDbml(DesignProject project, String rawDbmlCode) {
+        long start = System.nanoTime();
+        String clean = rawDbmlCode == null ? "" : DBMLCode.extractCleanDbmlCode(rawDbmlCode);
+        long extractNanos = System.nanoTime() - start;
+        project.setRawDbmlCode(rawDbmlCode);
+        project.setCleanDbmlCode(clean);
+        project.setDbmlRevision(project.resolveDbmlRevision() + 1);
+        long parseStart = System.nanoTime();
+        Database db;
+        try {
+            db = DbmlParser.parse(clean);
+            SchemaSnapshot snapshot = SchemaSnapshot.of(db, clean);
+            project.setSchemaSnapshot(snapshot.toJson());
+            project.setTableCount(snapshot.tables().size());
+        } catch (Exception e) {
+            // DBML lỗi vẫn được lưu (người dùng sửa sau); chỉ không có snapshot
+            project.setSchemaSnapshot(null);
+            project.setTableCount(countTables(rawDbmlCode));
+            db = null;
+        }
+        // Số bảng chỉ biết sau khi parse nên ghi metric ở cuối; parse lỗi thì tableCount chỉ là ước lượng
+        Tags tags = db != null ? metrics.tags(project.getTableCount()) : metrics.tagsUnknownSize();
+        metrics.record("dbarchitect.dbml.extract", tags, extractNanos);
+        metrics.record("dbarchitect.dbml.parse", tags.and("stage", "apply").and("outcome", db != null ? "success" : "error"),
+                System.nanoTime() - parseStart);
+        return db;
+    }
 
-        // Parse possibly-multiple compilation units from each source
-        List<CompilationUnit> cusOld = parsePossiblyMultiple(oldSource);
-        List<CompilationUnit> cusNew = parsePossiblyMultiple(newSource);
+    private void cacheParsedSchema(DesignProject project, Database parsed) {
+        if (parsed != null) {
+            parsedSchemaCache.put(project.resolveCleanDbmlCode(), parsed);
+        }
+    }
 
-        // Extract fields from all compilation units
-        Map<String, String> fieldsOld = extractFieldsFromCus(cusOld);
-        Map<String, String> fieldsNew = extractFieldsFromCus(cusNew);
+    // Database của project lấy từ cache theo nội dung DBML; chỉ parse khi cache nội dung sinh code miss
+    private CodeGenerator.SchemaSource schemaSource(DesignProject project) {
+        String clean = project.resolveCleanDbmlCode();
+        return () -> parsedSchemaCache.get(clean);
+    }
 
-        // 3. So sánh: Tìm cái mới thêm hoặc bị sửa
-        fieldsNew.forEach((name, type) -> {
-            if (!fieldsOld.containsKey(name)) {
-                changes.add(new CodeChange(name, "FIELD", "ADDED", "Kiểu dữ liệu: " + type));
-            } else if (!fieldsOld.get(name).equals(type)) {
-                changes.add(new CodeChange(name, "FIELD", "MODIFIED",
-                        "Đổi từ " + fieldsOld.get(name) + " sang " + type));
-            }
-        });
+    /**
+     * Một trang danh sách project (mới nhất trước), không đọc cột DBML.
+     * @param cursor nextCursor của trang trước, null cho trang đầu
+     */
+    public ProjectPageResponse listProjects(Long cursor, int limit) {
+        int pageSize = Math.clamp(limit, 1, MAX_PROJECT_PAGE_SIZE);
+        // Lấy dư một dòng để biết còn trang sau hay không
+        Limit fetch = Limit.of(pageSize + 1);
+        List<ProjectSummaryResponse> rows = cursor == null
+                ? designProjectRepository.findSummaries(fetch)
+                : designProjectRepository.findSummariesBefore(cursor, fetch);
 
-        // 4. So sánh: Tìm cái bị xóa
-        fieldsOld.keySet().forEach(name -> {
-            if (!fieldsNew.containsKey(name)) {
-                changes.add(new CodeChange(name, "FIELD", "REMOVED", "Đã xóa thuộc tính này"));
-            }
-        });
+        ProjectPageResponse page = new ProjectPageResponse();
+        boolean hasMore = rows.size() > pageSize;
+        page.setItems(hasMore ? new ArrayList<>(rows.subList(0, pageSize)) : rows);
+        page.setNextCursor(hasMore ? rows.get(pageSize - 1).getProjectId() : null);
+        return page;
+    }
 
-        return changes;
+    // Đếm khối Table cấp cao nhất; không cần DBML hợp lệ
+    private static int countTables(String rawDbmlCode) {
+        int[] count = {0};
+        new DbmlTableStreamParser((name, block) -> count[0]++).feed(rawDbmlCode);
+        return count[0];
     }
 
-    // Try to parse the provided source string into one or more CompilationUnits.
-    // If parsing the whole string fails (e.g., it contains multiple concatenated files),
-    // split by top-level `package` declarations and parse each piece separately.
-    private List<CompilationUnit> parsePossiblyMultiple(String source) {
-        if (source == null || source.trim().isEmpty()) return Collections.emptyList();
+    /**
+     * So sánh cấu trúc hai phiên bản DBML (bảng, cột, kiểu, setting, index, ref) mà không sinh mã Java.
+     * Revision hiện tại của project dùng snapshot đã lưu; revision cũ được dựng lại từ lịch sử và parse qua cache.
+     * @throws IllegalArgumentException nếu thiếu dữ liệu, project / revision không tồn tại
+     */
+    public List<CodeChange> diffSchemas(SchemaDiffRequest request) throws Exception {
+        SchemaSnapshot before = resolveSnapshot(request.getProjectId(), request.getFromRevision(), request.getOldDbml());
+        SchemaSnapshot after = resolveSnapshot(request.getProjectId(), request.getToRevision(), request.getNewDbml());
+        return SchemaDiff.diff(before, after);
+    }
 
-        // First, try parsing as a single compilation unit
-        try {
-            return Collections.singletonList(StaticJavaParser.parse(source));
-        } catch (ParseProblemException ex) {
-            // Fallback: split by package declarations (keep the 'package' keyword with lookahead)
-            String[] parts = source.split("(?m)(?=^\\s*package\\b)");
-            List<CompilationUnit> result = new ArrayList<>();
-            for (String part : parts) {
-                String trimmed = part.trim();
-                if (trimmed.isEmpty()) continue;
-                try {
-                    result.add(StaticJavaParser.parse(part));
-                } catch (ParseProblemException ex2) {
-                    // As a last resort, try trimming trailing content after the last top-level '}'
-                    int lastBrace = part.lastIndexOf('}');
-                    if (lastBrace > 0) {
-                        String maybe = part.substring(0, lastBrace + 1);
-                        try {
-                            result.add(StaticJavaParser.parse(maybe));
-                            continue;
-                        } catch (ParseProblemException ignored) {
-                            // ignore and skip this part
-                        }
-                    }
-                    // skip this part if still unparseable
+    private SchemaSnapshot resolveSnapshot(Long projectId, Integer revision, String dbml) throws Exception {
+        if (dbml != null) {
+            String clean = DBMLCode.extractCleanDbmlCode(dbml);
+            return SchemaSnapshot.of(DbmlParser.parse(clean), clean);
+        }
+        if (projectId == null) {
+            throw new IllegalArgumentException("Cần truyền DBML hoặc projectId cho mỗi phía của phép so sánh");
+        }
+        DesignProject project = designProjectRepository.findById(projectId)
+                .orElseThrow(() -> new IllegalArgumentException("Project ID " + projectId + " không tồn tại."));
+        int current = project.resolveDbmlRevision();
+        if (revision == null || revision == current) {
+            if (project.getSchemaSnapshot() != null) {
+                SchemaSnapshot stored = SchemaSnapshot.fromJson(project.getSchemaSnapshot());
+                if (stored.hasIndexes()) {
+                    return stored;
                 }
             }
-            return result;
+            String clean = project.resolveCleanDbmlCode();
+            return SchemaSnapshot.of(parsedSchemaCache.get(clean), clean);
         }
+        DbmlRevisionService.RevisionText text = dbmlRevisionService.getRevision(projectId, revision)
+                .orElseThrow(() -> new IllegalArgumentException("Revision " + revision + " của project " + projectId + " không tồn tại."));
+        String clean = DBMLCode.extractCleanDbmlCode(text.rawDbmlCode());
+        return SchemaSnapshot.of(parsedSchemaCache.get(clean), clean);
     }
 
-    private Map<String, String> extractFieldsFromCus(List<CompilationUnit> cus) {
-        Map<String, String> fieldMap = new HashMap<>();
-        for (CompilationUnit cu : cus) {
-            if (cu == null) continue;
-            cu.findAll(FieldDeclaration.class).forEach(f -> {
-                f.getVariables().forEach(v -> {
-                    fieldMap.put(v.getNameAsString(), v.getTypeAsString());
-                });
-            });
+    /**
+     * So sánh hai bộ mã Java theo khai báo (class, field, method, annotation), qualify theo class.
+     * @throws TimeoutException nếu việc parse vượt quá compare.timeout
+     */
+    public List<CodeChange> compareCode(String oldSource, String newSource) throws TimeoutException {
+        PipelineEvents.StageEvent event = PipelineEvents.StageEvent.begin("compare", null);
+        int[] units = {0};
+        try {
+            return javaSourceDiff.diff(oldSource, newSource, n -> units[0] = n);
+        } finally {
+            // Cả lần so sánh bị timeout cũng được ghi; đếm byte chỉ khi đang có recording.
+            // Mã gửi lên không cho biết số bảng nên tableCount = 0
+            if (event.isEnabled()) {
+                long bytes = (oldSource == null ? 0 : ProjectTreeBuilder.utf8Length(oldSource))
+                        + (newSource == null ? 0 : ProjectTreeBuilder.utf8Length(newSource));
+                event.finish(0, units[0], bytes);
+            }
         }
-        return fieldMap;
     }
 
     public List<Map<String, String>> generateFilesFromDbml(String cleanDbml) throws Exception {
         return codeGenerator.generateFilesFromDbml(cleanDbml);
     }
+
+    public JavaSourceDiff.Stats getCompareStats() {
+        return javaSourceDiff.stats();
+    }
+
+    public ParsedSchemaCache.Stats getParsedSchemaCacheStats() {
+        return parsedSchemaCache.stats();
+    }
+
+    public GeneratedSourceCache.Stats getGenerationCacheStats() {
+        return codeGenerator.getCacheStats();
+    }
+
+    public ProjectRenderSnapshots.Stats getIncrementalGenerationStats() {
+        return codeGenerator.getIncrementalStats();
+    }
 }
@@ -4,29 +4,61 @@ import com.dbarchitect.backend.entities.DesignProject;
 import com.dbarchitect.backend.repositories.DesignProjectRepository;
 import com.wn.dbml.compiler.DbmlParser;
 import com.wn.dbml.model.*;
-import freemarker.template.Configuration;
-import freemarker.template.Template;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
-import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
-
 @Service
 public class CodeGenerator {
-    private final Configuration freemarkerConfig;
-    private final DesignProjectRepository designProjectRepository;
+    public static final String BASE_PACKAGE_PATH = "src/main/java/com/example/demo/";
 
-    public CodeGenerator(Configuration freemarkerConfig, DesignProjectRepository designProjectRepository) {
-        this.freemarkerConfig = freemarkerConfig;
+    // FreeMarker (TemplateRegistry) hoặc bản biên dịch sẵn thành Java, chọn theo codegen.backend
+    private final SourceRenderer renderer;
+    private final DesignProjectRepository designProjectRepository;
+    private final GeneratedSourceCache generatedSourceCache;
+    private final ProjectRenderSnapshots renderSnapshots;
+    private final PipelineMetrics metrics;
+    // Tag "backend" của metric render
+    private final String backendName;
+    // Số bảng được render đồng thời; 1 = tuần tự
+    private final int parallelism;
+
+    public CodeGenerator(TemplateRegistry templateRegistry, DesignProjectRepository designProjectRepository,
+                         GeneratedSourceCache generatedSourceCache, ProjectRenderSnapshots renderSnapshots,
+                         PipelineMetrics metrics,
+                         @Value("${codegen.parallelism:0}") int parallelism,
+                         @Value("${codegen.backend:compiled}") String backend) throws Exception {
+        this.renderer = CompiledSourceRenderer.select(backend, templateRegistry);
         this.designProjectRepository = designProjectRepository;
+        this.generatedSourceCache = generatedSourceCache;
+        this.renderSnapshots = renderSnapshots;
+        this.metrics = metrics;
+        this.backendName = renderer instanceof CompiledSourceRenderer ? CompiledSourceRenderer.COMPILED : CompiledSourceRenderer.FREEMARKER;
+        // 0 (mặc định) = dùng số core hiện có
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
     }
 
 //    public Map<String, String> generateAllEntities(String dbmlContent) throws Exception {
@@ -55,89 +87,76 @@ public class CodeGenerator {
 //    }
 
     // Tách logic chuẩn bị dữ liệu ra hàm riêng để code sạch hơn
-    private Map<String, Object> prepareDataModel(Table table, Database db) {
-        Map<String, Object> dataModel = new HashMap<>();
-        dataModel.put("packageName", "com.example.demo");
-        dataModel.put("tableName", table.getName());
+    private TableModel prepareDataModel(Table table, SchemaIndex schemaIndex) {
         String className = StringUtils.capitalize(table.getName());
-        dataModel.put("className", className);
 
         // Xác định ID Type cho Repository/Service
         Column idCol = table.getColumns().stream()
                 .filter(col -> col.getSettings().containsKey(ColumnSetting.PRIMARY_KEY))
                 .findFirst()
                 .orElse(null);
-        if (idCol != null) {
-            dataModel.put("hasIncrement", idCol.getSettings().containsKey(ColumnSetting.INCREMENT));
-            dataModel.put("idType", mapSqlToJavaType(idCol.getType()));
-        } else {
-            dataModel.put("hasIncrement", false);
-        }
+        boolean hasIncrement = idCol != null && idCol.getSettings().containsKey(ColumnSetting.INCREMENT);
+        String idType = idCol != null ? mapSqlToJavaType(idCol.getType()) : null;
 
-        List<String> imports = new ArrayList<>();
-        List<Map<String, Object>> fields = new ArrayList<>();
-        List<Map<String, Object>> manyToOneRels = new ArrayList<>();
-        List<Map<String, Object>> oneToManyRels = new ArrayList<>();
+        // LinkedHashSet: kiểm tra trùng O(1) nhưng vẫn giữ thứ tự import như trước
+        Set<String> imports = new LinkedHashSet<>();
+        List<TableModel.Field> fields = new ArrayList<>();
+        List<TableModel.ManyToOne> manyToOneRels = new ArrayList<>();
+        List<TableModel.OneToMany> oneToManyRels = new ArrayList<>();
 
         // 1. Lấy danh sách các cột Khóa ngoại (FK) để tránh gen trùng field cơ bản
-        List<String> fkColumnNames = new ArrayList<>();
-
-        // 2. Duyệt quan hệ trong toàn bộ Database
-        db.getRelationships().forEach(rel -> {
-                // Lấy thông tin Table từ List<Column> (giả định quan hệ đơn cột)
-                Table fromTable = rel.getFrom().get(0).getTable();
-                Table toTable = rel.getTo().get(0).getTable();
-
-                // TRƯỜNG HỢP A: Bảng hiện tại chứa Khóa ngoại (Many-to-One)
-                // Ví dụ: Books.author_id > Authors.id (Books là From)
-                if (fromTable.getName().equals(table.getName())) {
-                    Map<String, Object> mto = new HashMap<>();
-                    String fkColName = rel.getFrom().get(0).getName();
-                    fkColumnNames.add(fkColName);
-
-                    mto.put("joinColumn", fkColName);
-                    mto.put("targetClass", StringUtils.capitalize(toTable.getName()));
-                    mto.put("fieldName", toCamelCase(toTable.getName()));
-                    manyToOneRels.add(mto);
-                }
+        Set<String> fkColumnNames = new HashSet<>();
+
+        // 2. Chỉ duyệt các quan hệ liên quan tới bảng hiện tại (lấy từ SchemaIndex, giả định quan hệ đơn cột)
+        // TRƯỜNG HỢP A: Bảng hiện tại chứa Khóa ngoại (Many-to-One)
+        // Ví dụ: Books.author_id > Authors.id (Books là From)
+        for (Relationship rel : schemaIndex.outgoing(table)) {
+            Table toTable = rel.getTo().get(0).getTable();
+            String fkColName = rel.getFrom().get(0).getName();
+            fkColumnNames.add(fkColName);
+
+            manyToOneRels.add(new TableModel.ManyToOne(
+                    fkColName, StringUtils.capitalize(toTable.getName()), toCamelCase(toTable.getName())));
+        }
 
-                // TRƯỜNG HỢP B: Bảng hiện tại được tham chiếu bởi bảng khác (One-to-Many)
-                // Ví dụ: Books.author_id > Authors.id (Authors là To)
-                if (toTable.getName().equals(table.getName())) {
-                    Map<String, Object> otm = new HashMap<>();
-                    otm.put("targetClass", StringUtils.capitalize(fromTable.getName()));
-                    otm.put("fieldName", toCamelCase(fromTable.getName()) + "s"); // plural
-                    otm.put("mappedBy", toCamelCase(toTable.getName())); // field name bên kia
-                    oneToManyRels.add(otm);
-
-                    if (!imports.contains("java.util.List")) {
-                        imports.add("java.util.List");
-                    }
-                }
-            });
+        // TRƯỜNG HỢP B: Bảng hiện tại được tham chiếu bởi bảng khác (One-to-Many)
+        // Ví dụ: Books.author_id > Authors.id (Authors là To)
+        for (Relationship rel : schemaIndex.incoming(table)) {
+            Table fromTable = rel.getFrom().get(0).getTable();
+            oneToManyRels.add(new TableModel.OneToMany(
+                    StringUtils.capitalize(fromTable.getName()),
+                    toCamelCase(fromTable.getName()) + "s", // plural
+                    toCamelCase(table.getName()))); // field name bên kia
+
+            imports.add("java.util.List");
+        }
 
         // 3. Xử lý các Fields cơ bản (Bỏ qua các cột đã là FK)
         table.getColumns().forEach(col -> {
             if (!fkColumnNames.contains(col.getName())) {
-                Map<String, Object> field = new HashMap<>();
                 String javaType = mapSqlToJavaType(col.getType());
-                field.put("columnName", col.getName());
-                field.put("fieldName", toCamelCase(col.getName()));
-                field.put("javaType", javaType);
-                field.put("isId", col.getSettings().containsKey(ColumnSetting.PRIMARY_KEY));
-                fields.add(field);
-
-                if (javaType.equals("BigDecimal") && !imports.contains("java.math.BigDecimal")) imports.add("java.math.BigDecimal");
-                if (javaType.equals("LocalDateTime") && !imports.contains("java.time.LocalDateTime")) imports.add("java.time.LocalDateTime");
+                fields.add(new TableModel.Field(col.getName(), toCamelCase(col.getName()), javaType,
+                        col.getSettings().containsKey(ColumnSetting.PRIMARY_KEY)));
+
+                if (javaType.equals("BigDecimal")) imports.add("java.math.BigDecimal");
+                if (javaType.equals("LocalDateTime")) imports.add("java.time.LocalDateTime");
             }
         });
 
-        dataModel.put("fields", fields);
-        dataModel.put("manyToOneRels", manyToOneRels);
-        dataModel.put("oneToManyRels", oneToManyRels);
-        dataModel.put("imports", imports);
+        return new TableModel("com.example.demo", table.getName(), className, hasIncrement, idType,
+                List.copyOf(imports), List.copyOf(fields), List.copyOf(manyToOneRels), List.copyOf(oneToManyRels));
+    }
 
-        return dataModel;
+    /**
+     * Data model của mọi bảng trong schema public, theo thứ tự bảng; quan hệ được phân tích một lần cho cả schema.
+     */
+    public List<TableModel> prepareDataModels(Database db) {
+        SchemaIndex schemaIndex = SchemaIndex.of(db);
+        List<TableModel> models = new ArrayList<>();
+        for (Table table : db.getSchema("public").getTables()) {
+            models.add(prepareDataModel(table, schemaIndex));
+        }
+        return models;
     }
 
     // Hàm phụ trợ convert snake_case sang camelCase
@@ -194,32 +213,107 @@ public class CodeGenerator {
         DesignProject project = designProjectRepository.findById(projectId)
                 .orElseThrow(() -> new IllegalArgumentException("Project ID " + projectId + " không tồn tại."));
 
-        List<GeneratedFile> generatedFiles = generateAllSourceFiles(DBMLCode.extractCleanDbmlCode(project.getRawDbmlCode()));
-
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        String basePackagePath = "src/main/java/com/example/demo/";
-
-        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-            for (GeneratedFile file : generatedFiles) {
-                ZipEntry ze = new ZipEntry(basePackagePath + file.path());
-                zos.putNextEntry(ze);
-                zos.write(file.content().getBytes());
-                zos.closeEntry();
+        writeProjectZip(projectId, project.resolveCleanDbmlCode(), baos);
+        return baos.toByteArray();
+    }
+
+    public void writeProjectZip(String cleanDbml, OutputStream out) throws Exception {
+        writeProjectZip(null, cleanDbml, out);
+    }
+
+    /**
+     * Ghi file ZIP của project thẳng vào output stream (vd: output stream của servlet).
+     * Nếu kết quả đã có trong cache thì ghi từ cache; nếu chưa, render từng bảng và ghi ngay
+     * các file của bảng đó vào ZIP, nên heap không phụ thuộc vào kích thước schema và byte đầu tiên
+     * được gửi đi sau khoảng thời gian render một bảng.
+     * Với projectId khác null, các bảng không đổi so với lần render trước của project được dùng lại.
+     * Stream {@code out} không bị đóng, chỉ được flush.
+     */
+    public void writeProjectZip(Long projectId, String cleanDbml, OutputStream out) throws Exception {
+        writeProjectZip(projectId, cleanDbml, null, out);
+    }
+
+    /**
+     * Như trên; schemaSource (có thể null) cung cấp Database đã parse sẵn (vd: từ ParsedSchemaCache)
+     * và chỉ được gọi khi thật sự cần render.
+     */
+    public void writeProjectZip(Long projectId, String cleanDbml, SchemaSource schemaSource, OutputStream out) throws Exception {
+        PipelineEvents.StageEvent event = PipelineEvents.StageEvent.begin("codegen.zip", projectId);
+        long start = System.nanoTime();
+        CountingOutputStream counting = new CountingOutputStream(out);
+        ZipOutputStream zos = new ZipOutputStream(counting);
+        int[] fileCount = {0};
+        FileSink sink = file -> {
+            zos.putNextEntry(new ZipEntry(BASE_PACKAGE_PATH + file.path()));
+            zos.write(file.content().getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+            fileCount[0]++;
+        };
+
+        List<GeneratedFile> cached = generatedSourceCache.getIfPresent(GeneratedSourceCache.key(cleanDbml, renderer.version()));
+        int tables;
+        if (cached != null) {
+            for (GeneratedFile file : cached) {
+                sink.accept(file);
             }
+            tables = countTables(cached);
+        } else {
+            // Không lưu snapshot ở đây để heap của đường stream không phụ thuộc kích thước schema
+            tables = renderAllSourceFiles(cleanDbml, schemaSource, sink, projectId, false);
         }
-        return baos.toByteArray();
+        zos.finish();
+        zos.flush();
+
+        Tags tags = metrics.tags(tables).and("cache", cached != null ? "hit" : "miss");
+        metrics.record("dbarchitect.zip.build", tags, System.nanoTime() - start);
+        metrics.summary("dbarchitect.zip.size", "bytes", tags, counting.count);
+        event.finish(tables, fileCount[0], counting.count);
     }
 
-    // Hàm phụ trợ để render nhanh
-    private GeneratedFile renderFile(String templateName, Map<String, Object> model, String path) throws Exception {
-        Template template = freemarkerConfig.getTemplate(templateName);
-        String code = FreeMarkerTemplateUtils.processTemplateIntoString(template, model);
-        return new GeneratedFile(path, code);
+    // Số bảng của một kết quả sinh code: mỗi bảng ra đúng một file entity/
+    public static int countTables(List<GeneratedFile> files) {
+        int tables = 0;
+        for (GeneratedFile file : files) {
+            if (file.path().startsWith("entity/")) {
+                tables++;
+            }
+        }
+        return tables;
+    }
+
+    // Đếm số byte ZIP đã ghi ra (metric dbarchitect.zip.size) mà không phải giữ ZIP trong bộ nhớ
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    // Hàm phụ trợ để render nhanh (template đã được biên dịch sẵn trong TemplateRegistry hoặc thành Java)
+    private GeneratedFile renderFile(String templateName, TableModel model, String path, Tags tags) throws Exception {
+        long start = System.nanoTime();
+        String content = renderer.render(templateName, model);
+        metrics.record("dbarchitect.codegen.render", tags.and("template", templateName), System.nanoTime() - start);
+        return new GeneratedFile(path, content);
     }
 
     /**
      * Public helper to generate a simplified list of files (path + content) from DBML content.
-     * This wrapper exists so callers outside this class don't need to reference the private GeneratedFile record.
+     * This wrapper exists so callers (and the JSON API) get plain path/content maps instead of GeneratedFile records.
      */
     public List<java.util.Map<String, String>> generateFilesFromDbml(String dbmlContent) throws Exception {
         List<GeneratedFile> files = generateAllSourceFiles(dbmlContent);
@@ -233,30 +327,172 @@ public class CodeGenerator {
         return out;
     }
 
-    // Thêm record phụ trợ bên trong hoặc ngoài class
-    private record GeneratedFile(String path, String content) {}
-
+    /**
+     * Sinh toàn bộ file cho DBML, đi qua cache nội dung: cùng DBML + cùng bộ template thì chỉ sinh một lần.
+     */
     public List<GeneratedFile> generateAllSourceFiles(String dbmlContent) throws Exception {
-        Database db = DbmlParser.parse(dbmlContent);
-        List<GeneratedFile> files = new ArrayList<>();
+        return generateAllSourceFiles(null, dbmlContent);
+    }
+
+    /**
+     * Như trên, nhưng khi cache miss (vd: DBML của project vừa bị sửa) chỉ render lại các bảng
+     * khác với lần render trước của project; các bảng còn lại dùng lại output cũ.
+     */
+    public List<GeneratedFile> generateAllSourceFiles(Long projectId, String dbmlContent) throws Exception {
+        return generateAllSourceFiles(projectId, dbmlContent, null);
+    }
+
+    public List<GeneratedFile> generateAllSourceFiles(Long projectId, String dbmlContent, SchemaSource schemaSource) throws Exception {
+        String key = GeneratedSourceCache.key(dbmlContent, renderer.version());
+        return generatedSourceCache.get(key, () -> {
+            List<GeneratedFile> files = new ArrayList<>();
+            renderAllSourceFiles(dbmlContent, schemaSource, files::add, projectId, true);
+            return files;
+        });
+    }
+
+    public GeneratedSourceCache.Stats getCacheStats() {
+        return generatedSourceCache.stats();
+    }
+
+    public ProjectRenderSnapshots.Stats getIncrementalStats() {
+        return renderSnapshots.stats();
+    }
+
+    // Database đã parse sẵn cho DBML đang render; chỉ được gọi khi cache nội dung miss
+    @FunctionalInterface
+    public interface SchemaSource {
+        Database load() throws Exception;
+    }
+
+    // Nơi nhận từng file ngay khi vừa render xong (list trong bộ nhớ hoặc ZIP stream)
+    @FunctionalInterface
+    private interface FileSink {
+        void accept(GeneratedFile file) throws IOException;
+    }
+
+    /**
+     * Render mọi bảng trong schema và đẩy từng file vào sink theo đúng thứ tự bảng.
+     * Khi parallelism > 1, các bảng được render song song trên virtual thread nhưng tối đa
+     * {@code parallelism} bảng cùng lúc; kết quả vẫn được đẩy ra theo thứ tự nên output luôn xác định.
+     * Bảng nào có data model giống hệt lần render trước của project thì dùng lại file cũ.
+     * @return số bảng đã xử lý
+     */
+    private int renderAllSourceFiles(String dbmlContent, SchemaSource schemaSource, FileSink sink, Long projectId,
+                                     boolean storeSnapshot) throws Exception {
+        PipelineEvents.StageEvent schemaEvent = PipelineEvents.StageEvent.begin("codegen.schema", projectId);
+        long parseStart = System.nanoTime();
+        Database db = schemaSource != null ? schemaSource.load() : DbmlParser.parse(dbmlContent);
         Schema schema = db.getSchema("public");
+        List<Table> tables = new ArrayList<>(schema.getTables());
+        // Tag lấy trên thread gọi: các bảng có thể được render trên virtual thread khác
+        Tags tags = metrics.tags(tables.size());
+        metrics.record("dbarchitect.codegen.schema.load", tags, System.nanoTime() - parseStart);
+        schemaEvent.finish(tables.size(), 0, 0);
+        Tags renderTags = tags.and("backend", backendName);
+        // Phân tích quan hệ một lần cho cả schema
+        SchemaIndex schemaIndex = SchemaIndex.of(db);
+
+        String templateVersion = renderer.version();
+        Map<String, ProjectRenderSnapshots.RenderedTable> previous = renderSnapshots.previousTables(projectId, templateVersion);
+        Map<String, ProjectRenderSnapshots.RenderedTable> current = storeSnapshot && projectId != null ? new LinkedHashMap<>() : null;
+        PipelineEvents.StageEvent renderEvent = PipelineEvents.StageEvent.begin("codegen.render", projectId);
+        boolean countBytes = renderEvent.isEnabled();
+        int[] fileCount = {0};
+        long[] bytes = {0};
+        RenderedTableSink tableSink = rendered -> {
+            for (GeneratedFile file : rendered.files()) {
+                sink.accept(file);
+            }
+            fileCount[0] += rendered.files().size();
+            if (countBytes) {
+                bytes[0] += PipelineEvents.utf8Bytes(rendered.files());
+            }
+            if (current != null) {
+                current.put(rendered.model().tableName(), rendered);
+            }
+        };
+
+        if (parallelism <= 1 || tables.size() < 2) {
+            for (Table table : tables) {
+                tableSink.accept(renderTable(table, schemaIndex, previous, projectId, tags, renderTags));
+            }
+        } else {
+            ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+            Deque<Future<ProjectRenderSnapshots.RenderedTable>> window = new ArrayDeque<>(parallelism);
+            try {
+                for (Table table : tables) {
+                    window.addLast(executor.submit(() -> renderTable(table, schemaIndex, previous, projectId, tags, renderTags)));
+                    if (window.size() >= parallelism) {
+                        drainHead(window, tableSink);
+                    }
+                }
+                while (!window.isEmpty()) {
+                    drainHead(window, tableSink);
+                }
+            } finally {
+                // Khi có lỗi: hủy các bảng đang render dở
+                window.forEach(f -> f.cancel(true));
+                executor.shutdownNow();
+            }
+        }
 
-        for (Table table : schema.getTables()) {
-            Map<String, Object> dataModel = prepareDataModel(table, db);
-            String className = (String) dataModel.get("className");
+        renderEvent.finish(tables.size(), fileCount[0], bytes[0]);
+
+        if (current != null) {
+            renderSnapshots.store(projectId, templateVersion, current);
+        }
+        return tables.size();
+    }
 
-            // 1. Render Entity
-            files.add(renderFile("entity.ftl", dataModel, "entity/" + className + ".java"));
+    @FunctionalInterface
+    private interface RenderedTableSink {
+        void accept(ProjectRenderSnapshots.RenderedTable rendered) throws IOException;
+    }
 
-            // 2. Render Repository
-            files.add(renderFile("repository.ftl", dataModel, "repository/" + className + "Repository.java"));
+    private static void drainHead(Deque<Future<ProjectRenderSnapshots.RenderedTable>> window, RenderedTableSink sink) throws Exception {
+        ProjectRenderSnapshots.RenderedTable rendered;
+        try {
+            rendered = window.pollFirst().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+        sink.accept(rendered);
+    }
 
-            // 3. Render Service
-            files.add(renderFile("service.ftl", dataModel, "service/" + className + "Service.java"));
+    private ProjectRenderSnapshots.RenderedTable renderTable(Table table, SchemaIndex schemaIndex,
+                                                             Map<String, ProjectRenderSnapshots.RenderedTable> previous,
+                                                             Long projectId, Tags tags, Tags renderTags) throws Exception {
+        PipelineEvents.StageEvent event = PipelineEvents.StageEvent.begin("codegen.table", projectId);
+        ProjectRenderSnapshots.RenderedTable rendered = renderTable(table, schemaIndex, previous, tags, renderTags);
+        event.finish(1, rendered.files().size(), event.isEnabled() ? PipelineEvents.utf8Bytes(rendered.files()) : 0);
+        return rendered;
+    }
 
-            // 4. Render Controller
-            files.add(renderFile("controller.ftl", dataModel, "controller/" + className + "Controller.java"));
+    private ProjectRenderSnapshots.RenderedTable renderTable(Table table, SchemaIndex schemaIndex,
+                                                             Map<String, ProjectRenderSnapshots.RenderedTable> previous,
+                                                             Tags tags, Tags renderTags) throws Exception {
+        long start = System.nanoTime();
+        TableModel dataModel = prepareDataModel(table, schemaIndex);
+        metrics.record("dbarchitect.codegen.prepare", tags, System.nanoTime() - start);
+        ProjectRenderSnapshots.RenderedTable before = previous.get(dataModel.tableName());
+        if (before != null && before.model().equals(dataModel)) {
+            renderSnapshots.recordReused();
+            return before;
         }
-        return files;
+        renderSnapshots.recordRendered();
+
+        String className = dataModel.className();
+        return new ProjectRenderSnapshots.RenderedTable(dataModel, List.of(
+                // 1. Render Entity
+                renderFile(TemplateRegistry.ENTITY, dataModel, "entity/" + className + ".java", renderTags),
+                // 2. Render Repository
+                renderFile(TemplateRegistry.REPOSITORY, dataModel, "repository/" + className + "Repository.java", renderTags),
+                // 3. Render Service
+                renderFile(TemplateRegistry.SERVICE, dataModel, "service/" + className + "Service.java", renderTags),
+                // 4. Render Controller
+                renderFile(TemplateRegistry.CONTROLLER, dataModel, "controller/" + className + "Controller.java", renderTags)
+        ));
     }
 }
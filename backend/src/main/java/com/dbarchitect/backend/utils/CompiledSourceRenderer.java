@@ -0,0 +1,198 @@
+package com.dbarchitect.backend.utils;
+
+import java.util.List;
+
+/**
+ * Bộ template có sẵn (entity / repository / service / controller .ftl) viết lại thành code Java:
+ * ghi thẳng vào StringBuilder cấp phát sẵn theo số field / quan hệ, đọc TableModel qua accessor,
+ * không qua object wrapper hay reflection của FreeMarker.
+ *
+ * Output phải giống hệt từng byte với TemplateRegistry (xem TemplateBackendGoldenTest); khi sửa file .ftl
+ * phải sửa cả ở đây. {@link #select} kiểm tra lại điều này lúc khởi động và quay về FreeMarker nếu lệch.
+ */
+public final class CompiledSourceRenderer implements SourceRenderer {
+
+    public static final String FREEMARKER = "freemarker";
+    public static final String COMPILED = "compiled";
+
+    private final String version;
+
+    /**
+     * @param version phiên bản của bộ .ftl mà output khớp với (TemplateRegistry.version()),
+     *                để cache dùng chung giữa hai backend
+     */
+    public CompiledSourceRenderer(String version) {
+        this.version = version;
+    }
+
+    /**
+     * Chọn backend theo codegen.backend. "compiled" chỉ được dùng khi template không được sửa lúc chạy
+     * và output trên các model mẫu khớp với FreeMarker; nếu không thì dùng chính TemplateRegistry.
+     */
+    public static SourceRenderer select(String backend, TemplateRegistry templates) throws Exception {
+        if (!COMPILED.equalsIgnoreCase(backend) || templates.checksUpdates()) {
+            return templates;
+        }
+        CompiledSourceRenderer compiled = new CompiledSourceRenderer(templates.version());
+        for (TableModel sample : TemplateRegistry.sampleModels()) {
+            for (String name : TemplateRegistry.TEMPLATE_NAMES) {
+                if (!compiled.render(name, sample).equals(templates.render(name, sample))) {
+                    System.err.println("Output của " + name + " khác với template .ftl, dùng lại FreeMarker");
+                    return templates;
+                }
+            }
+        }
+        return compiled;
+    }
+
+    @Override
+    public String version() {
+        return version;
+    }
+
+    @Override
+    public String render(String templateName, TableModel model) {
+        return switch (templateName) {
+            case TemplateRegistry.ENTITY -> entity(model);
+            case TemplateRegistry.REPOSITORY -> repository(model);
+            case TemplateRegistry.SERVICE -> service(model);
+            case TemplateRegistry.CONTROLLER -> controller(model);
+            default -> throw new IllegalArgumentException("Template không được đăng ký: " + templateName);
+        };
+    }
+
+    // ${idType!"Long"}
+    private static String idTypeOrLong(TableModel m) {
+        return m.idType() != null ? m.idType() : "Long";
+    }
+
+    static String entity(TableModel m) {
+        List<String> imports = m.imports() != null ? m.imports() : List.of();
+        int members = m.fields().size() + m.manyToOneRels().size() + m.oneToManyRels().size();
+        StringBuilder out = new StringBuilder(512 + 48 * imports.size() + 128 * members);
+
+        out.append("package ").append(m.packageName()).append(".entity;\n\n")
+                .append("import jakarta.persistence.*;\n")
+                .append("import lombok.Data;\n")
+                .append("import java.time.LocalDateTime;\n");
+        for (String imp : imports) {
+            out.append("import ").append(imp).append(";\n");
+        }
+        out.append("\n@Entity\n@Data\n@Table(name = \"").append(m.tableName()).append("\")\n")
+                .append("public class ").append(m.className()).append(" {\n");
+        if (m.hasIncrement()) {
+            out.append("    @Id\n")
+                    .append("    @GeneratedValue(strategy = GenerationType.IDENTITY)\n")
+                    .append("    private ").append(m.idType()).append(" id;\n");
+        }
+        out.append('\n');
+
+        for (TableModel.Field field : m.fields()) {
+            if (field.primaryKey()) continue;
+            out.append("    @Column(name = \"").append(field.columnName()).append("\")\n")
+                    .append("    private ").append(field.javaType()).append(' ').append(field.fieldName()).append(";\n");
+        }
+        out.append('\n');
+
+        for (TableModel.ManyToOne rel : m.manyToOneRels()) {
+            out.append("    @ManyToOne(fetch = FetchType.LAZY)\n")
+                    .append("    @JoinColumn(name = \"").append(rel.joinColumn()).append("\")\n")
+                    .append("    private ").append(rel.targetClass()).append(' ').append(rel.fieldName()).append(";\n\n");
+        }
+        for (TableModel.OneToMany rel : m.oneToManyRels()) {
+            out.append("    @OneToMany(mappedBy = \"").append(rel.mappedBy()).append("\", cascade = CascadeType.ALL)\n")
+                    .append("    @ToString.Exclude\n")
+                    .append("    private List<").append(rel.targetClass()).append("> ").append(rel.fieldName()).append(";\n");
+        }
+        return out.append('}').toString();
+    }
+
+    static String repository(TableModel m) {
+        String c = m.className();
+        return new StringBuilder(384)
+                .append("package ").append(m.packageName()).append(".repository;\n\n")
+                .append("import ").append(m.packageName()).append(".entity.").append(c).append(";\n")
+                .append("import org.springframework.data.jpa.repository.JpaRepository;\n")
+                .append("import org.springframework.stereotype.Repository;\n\n")
+                .append("@Repository\n")
+                .append("public interface ").append(c).append("Repository extends JpaRepository<")
+                .append(c).append(", ").append(idTypeOrLong(m)).append("> {\n}")
+                .toString();
+    }
+
+    static String service(TableModel m) {
+        String c = m.className();
+        String id = idTypeOrLong(m);
+        return new StringBuilder(1024)
+                .append("package ").append(m.packageName()).append(".service;\n\n")
+                .append("import ").append(m.packageName()).append(".entity.").append(c).append(";\n")
+                .append("import ").append(m.packageName()).append(".repository.").append(c).append("Repository;\n")
+                .append("import org.springframework.stereotype.Service;\n")
+                .append("import java.util.List;\n")
+                .append("import java.util.Optional;\n\n")
+                .append("@Service\n")
+                .append("public class ").append(c).append("Service {\n\n")
+                .append("    private final ").append(c).append("Repository repository;\n\n")
+                .append("    public ").append(c).append("Service(").append(c).append("Repository repository) {\n")
+                .append("        this.repository = repository;\n")
+                .append("    }\n\n")
+                .append("    public List<").append(c).append("> findAll() {\n")
+                .append("        return repository.findAll();\n")
+                .append("    }\n\n")
+                .append("    public Optional<").append(c).append("> findById(").append(id).append(" id) {\n")
+                .append("        return repository.findById(id);\n")
+                .append("    }\n\n")
+                .append("    public ").append(c).append(" save(").append(c).append(" entity) {\n")
+                .append("        return repository.save(entity);\n")
+                .append("    }\n\n")
+                .append("    public void deleteById(").append(id).append(" id) {\n")
+                .append("        repository.deleteById(id);\n")
+                .append("    }\n}")
+                .toString();
+    }
+
+    static String controller(TableModel m) {
+        String c = m.className();
+        String id = idTypeOrLong(m);
+        return new StringBuilder(2048)
+                .append("package ").append(m.packageName()).append(".controller;\n\n")
+                .append("import ").append(m.packageName()).append(".entity.").append(c).append(";\n")
+                .append("import ").append(m.packageName()).append(".service.").append(c).append("Service;\n")
+                .append("import org.springframework.http.ResponseEntity;\n")
+                .append("import org.springframework.web.bind.annotation.*;\n\n")
+                .append("import java.util.List;\n\n")
+                .append("@RestController\n")
+                .append("@RequestMapping(\"/api/").append(m.tableName()).append("\")\n")
+                .append("public class ").append(c).append("Controller {\n\n")
+                .append("    private final ").append(c).append("Service service;\n\n")
+                .append("    public ").append(c).append("Controller(").append(c).append("Service service) {\n")
+                .append("        this.service = service;\n")
+                .append("    }\n\n")
+                .append("    @GetMapping\n")
+                .append("    public List<").append(c).append("> getAll() {\n")
+                .append("        return service.findAll();\n")
+                .append("    }\n\n")
+                .append("    @GetMapping(\"/{id}\")\n")
+                .append("    public ResponseEntity<").append(c).append("> getById(@PathVariable ").append(id).append(" id) {\n")
+                .append("        return service.findById(id).map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());\n")
+                .append("    }\n\n")
+                .append("    @PostMapping\n")
+                .append("    public ").append(c).append(" create(@RequestBody ").append(c).append(" entity) {\n")
+                .append("        return service.save(entity);\n")
+                .append("    }\n\n")
+                .append("    @PutMapping(\"/{id}\")\n")
+                .append("    public ResponseEntity<").append(c).append("> update(@PathVariable ").append(id)
+                .append(" id, @RequestBody ").append(c).append(" entity) {\n")
+                .append("        return service.findById(id).map(existing -> {\n")
+                .append("            entity.setId(id);\n")
+                .append("            return ResponseEntity.ok(service.save(entity));\n")
+                .append("        }).orElse(ResponseEntity.notFound().build());\n")
+                .append("    }\n\n")
+                .append("    @DeleteMapping(\"/{id}\")\n")
+                .append("    public ResponseEntity<Void> delete(@PathVariable ").append(id).append(" id) {\n")
+                .append("        service.deleteById(id);\n")
+                .append("        return ResponseEntity.noContent().build();\n")
+                .append("    }\n}")
+                .toString();
+    }
+}
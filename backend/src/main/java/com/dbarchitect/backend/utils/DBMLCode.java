@@ -1,5 +1,6 @@
 package com.dbarchitect.backend.utils;
 
+import com.wn.dbml.compiler.DbmlParser;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
@@ -9,6 +10,12 @@ import lombok.Setter;
 @AllArgsConstructor
 public class DBMLCode {
     private String rawDbmlCode;
+    // Model đã thực sự trả lời (có thể là model fallback); null nếu không xác định (vd: lấy từ cache, gộp từ nhiều model)
+    private String modelName;
+
+    public DBMLCode(String rawDbmlCode) {
+        this(rawDbmlCode, null);
+    }
 
     public String extractCleanDbmlCode() {
         String startDelimiter = "```dbml";
@@ -39,4 +46,17 @@ public class DBMLCode {
         }
         return rawDbmlCode;
     }
+
+    // DBML (sau khi bỏ rào markdown) khác rỗng và DbmlParser parse được
+    public static boolean isValidDbml(String rawDbmlCode) {
+        if (rawDbmlCode == null || rawDbmlCode.isBlank()) return false;
+        String clean = extractCleanDbmlCode(rawDbmlCode);
+        if (clean.isBlank()) return false;
+        try {
+            DbmlParser.parse(clean);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
 }
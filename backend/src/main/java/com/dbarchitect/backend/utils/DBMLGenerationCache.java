@@ -0,0 +1,112 @@
+package com.dbarchitect.backend.utils;
+
+import com.dbarchitect.backend.entities.DbmlCacheEntry;
+import com.dbarchitect.backend.repositories.DbmlCacheEntryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache kết quả sinh DBML từ Gemini, gồm hai tầng:
+ * - bộ nhớ: LRU giới hạn số entry, trả về ngay không cần truy vấn DB;
+ * - Postgres: bảng DbmlCacheEntry, sống qua các lần khởi động lại và dùng chung giữa các node.
+ * Mỗi entry có TTL (dbml.cache.ttl); entry hết hạn bị bỏ qua khi đọc và bị xóa định kỳ.
+ * Key được tính bởi {@link DBMLGenerator#cacheKey(String, String)}.
+ */
+@Component
+public class DBMLGenerationCache {
+
+    public record Stats(long memoryHits, long databaseHits, long misses, long stores, int memoryEntries) {
+    }
+
+    private record MemoryEntry(String rawDbmlCode, LocalDateTime expiresAt) {
+    }
+
+    private final DbmlCacheEntryRepository repository;
+    private final Duration ttl;
+    private final int maxMemoryEntries;
+    private final Map<String, MemoryEntry> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong databaseHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+
+    public DBMLGenerationCache(DbmlCacheEntryRepository repository,
+                               @Value("${dbml.cache.ttl:7d}") Duration ttl,
+                               @Value("${dbml.cache.memory-max-entries:256}") int maxMemoryEntries) {
+        this.repository = repository;
+        this.ttl = ttl;
+        this.maxMemoryEntries = maxMemoryEntries;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MemoryEntry> eldest) {
+                return size() > DBMLGenerationCache.this.maxMemoryEntries;
+            }
+        };
+    }
+
+    /**
+     * @return DBML thô đã cache cho key, hoặc null nếu không có / đã hết hạn.
+     */
+    public String get(String key) {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (this) {
+            MemoryEntry entry = memory.get(key);
+            if (entry != null) {
+                if (entry.expiresAt().isAfter(now)) {
+                    memoryHits.incrementAndGet();
+                    return entry.rawDbmlCode();
+                }
+                memory.remove(key);
+            }
+        }
+
+        DbmlCacheEntry stored = repository.findById(key).orElse(null);
+        if (stored != null && stored.getExpiresAt().isAfter(now)) {
+            databaseHits.incrementAndGet();
+            remember(key, stored.getRawDbmlCode(), stored.getExpiresAt());
+            return stored.getRawDbmlCode();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, String modelName, String rawDbmlCode) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(ttl);
+
+        DbmlCacheEntry entry = new DbmlCacheEntry();
+        entry.setCacheKey(key);
+        entry.setModelName(modelName);
+        entry.setRawDbmlCode(rawDbmlCode);
+        entry.setCreatedAt(now);
+        entry.setExpiresAt(expiresAt);
+        repository.save(entry);
+
+        remember(key, rawDbmlCode, expiresAt);
+        stores.incrementAndGet();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(memoryHits.get(), databaseHits.get(), misses.get(), stores.get(), memory.size());
+    }
+
+    // Dọn các entry đã hết hạn trong Postgres (mặc định mỗi giờ)
+    @Scheduled(fixedDelayString = "${dbml.cache.purge-interval:1h}")
+    public void purgeExpired() {
+        repository.deleteByExpiresAtBefore(LocalDateTime.now());
+    }
+
+    private synchronized void remember(String key, String rawDbmlCode, LocalDateTime expiresAt) {
+        if (maxMemoryEntries > 0) {
+            memory.put(key, new MemoryEntry(rawDbmlCode, expiresAt));
+        }
+    }
+}
@@ -1,29 +1,61 @@
 package com.dbarchitect.backend.utils;
 
 // Thay đổi imports để phù hợp với cú pháp xây dựng Content/Config
-import com.google.genai.Client;
 import com.google.genai.types.GenerateContentResponse;
 import com.google.genai.types.GenerateContentConfig;
 import com.google.genai.types.Content;
+import com.google.genai.types.FinishReason;
 import com.google.genai.types.Part;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
 
+import java.text.Normalizer;
+import java.util.ArrayList;
 import java.util.Collections; // Cần cho Collections.singletonList
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 import static com.dbarchitect.backend.utils.Constants.MODELS_MAP;
 
+@Component
 public class DBMLGenerator {
 
-    private final Client client;
+    // Tham số sinh nội dung; cũng là một phần của key cache (xem cacheKey)
+    static final float TEMPERATURE = 0.2f; // Nhiệt độ thấp cho tác vụ sinh code chính xác
+    static final int MAX_OUTPUT_TOKENS = 2048; // Đủ token cho mã DBML lớn
+    static final int MAX_CONTINUATIONS = 3; // Số lần yêu cầu viết tiếp tối đa cho một đoạn DBML bị cắt
 
-    public DBMLGenerator() {
-        // Khởi tạo Client. Nó tự động lấy GOOGLE_API_KEY từ biến môi trường.
-        this.client = new Client();
+    /** Một bounded context trong plan của chế độ chia nhỏ: tên, mô tả và các bảng nó sở hữu. */
+    public record DomainPlan(String name, String description, List<String> tables) {
+    }
+
+    private final GeminiClient client;
+    private final GeminiResilience resilience;
+    private final GeminiHedging hedging;
+    private final PipelineMetrics metrics;
+
+    // client: Gemini thật (GoogleGeminiClient) hoặc bản giả lập khi gemini.client=stub
+    public DBMLGenerator(GeminiClient client, GeminiResilience resilience, GeminiHedging hedging, PipelineMetrics metrics) {
+        this.client = client;
+        this.resilience = resilience;
+        this.hedging = hedging;
+        this.metrics = metrics;
     }
 
     /**
      * Phương thức chính để tạo mã DBML từ mô tả hệ thống.
      * @param systemDescription Mô tả kỹ thuật của hệ thống (Prompt của người dùng).
-     * @return Mã DBML đã được làm sạch.
+     * @return Mã DBML đã được làm sạch, kèm model đã trả lời.
+     * @throws GeminiUnavailableException nếu model (và các model fallback) không trả lời được.
      */
     public DBMLCode generateDbmlCode(String systemDescription, String modelName) {
         if (!MODELS_MAP.containsKey(modelName)) {
@@ -44,36 +76,372 @@ public class DBMLGenerator {
         // --- 3. Định cấu hình (Điều chỉnh tham số) ---
         GenerateContentConfig config = GenerateContentConfig.builder()
                 .systemInstruction(systemInstruction) // Gắn System Instruction vào Config
-                .temperature(0.2f) // Nhiệt độ thấp cho tác vụ sinh code chính xác
-                .maxOutputTokens(2048) // Đủ token cho mã DBML lớn
+                .temperature(TEMPERATURE)
+                .maxOutputTokens(MAX_OUTPUT_TOKENS)
                 .build();
 
-        // --- 4. Gọi API (Sửa lỗi cú pháp) ---
-        try {
-            // Cú pháp đúng: client.generateContent(...)
-            GenerateContentResponse response = client.models.generateContent(
-                    modelName,
+        // --- 4. Gọi API qua bulkhead / rate limiter / circuit breaker, có fallback sang model khác ---
+        Tags tags = metrics.tags();
+        GeminiHedging.Attempt attempt = requestedModel -> resilience.executeWithModel(requestedModel, model -> {
+            GenerateContentResponse response = call(tags, "generate", model,
                     Collections.singletonList(userContent),
                     config
             );
+            return response.text();
+        });
+        // Bật hedging: model chính chậm quá percentile độ trễ thì gửi thêm request thứ hai, lấy kết quả hợp lệ đầu tiên
+        GeminiResilience.Answer<String> answer;
+        try {
+            answer = hedging.isEnabled() ? hedging.execute(modelName, attempt) : attempt.call(modelName);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GeminiUnavailableException("Gemini không khả dụng cho model " + modelName, e);
+        }
+
+        // Xử lý để chỉ lấy phần code DBML
+        return new DBMLCode(answer.value() == null ? "" : answer.value(), answer.model());
+    }
+
+    /**
+     * Như generateDbmlCode nhưng dùng API stream của Gemini: từng đoạn text được chuyển cho onChunk
+     * ngay khi tới, thay vì chờ toàn bộ response.
+     * Chỉ chuyển sang model fallback nếu lỗi xảy ra trước khi có đoạn nào được gửi đi.
+     * Không hedge: các đoạn đã gửi cho client không thể thu hồi nếu request thứ hai thắng.
+     * @return Toàn bộ DBML thô đã nhận, kèm model đã trả lời.
+     * @throws GeminiUnavailableException nếu không model nào trả lời được.
+     */
+    public DBMLCode streamDbmlCode(String systemDescription, String modelName, Consumer<String> onChunk) {
+        if (!MODELS_MAP.containsKey(modelName)) {
+            throw new IllegalArgumentException("Model không hợp lệ: " + modelName);
+        }
+
+        Content userContent = Content.builder()
+                .role("user")
+                .parts(Collections.singletonList(
+                        Part.builder().text(systemDescription).build()
+                ))
+                .build();
+
+        GenerateContentConfig config = GenerateContentConfig.builder()
+                .systemInstruction(buildSystemInstruction())
+                .temperature(TEMPERATURE)
+                .maxOutputTokens(MAX_OUTPUT_TOKENS)
+                .build();
+
+        Tags tags = metrics.tags();
+        GeminiResilience.Answer<String> answer = resilience.executeWithModel(modelName, new GeminiResilience.ModelCall<>() {
+            private volatile boolean emitted;
+
+            @Override
+            public String invoke(String model) throws Exception {
+                StringBuilder text = new StringBuilder();
+                PipelineEvents.GeminiCallEvent event = PipelineEvents.GeminiCallEvent.begin(model, "stream");
+                long start = System.nanoTime();
+                GenerateContentResponse last = null;
+                try (GeminiClient.ResponseChunks stream = client.generateContentStream(
+                        model,
+                        Collections.singletonList(userContent),
+                        config
+                )) {
+                    for (GenerateContentResponse response : stream) {
+                        last = response;
+                        String chunk = response.text();
+                        if (chunk == null || chunk.isEmpty()) continue;
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedException("Stream bị hủy do quá thời gian chờ");
+                        }
+                        text.append(chunk);
+                        emitted = true;
+                        onChunk.accept(chunk);
+                    }
+                } catch (Exception e) {
+                    metrics.geminiCall(tags, model, "stream", System.nanoTime() - start, null, e);
+                    event.finish(null, text, e);
+                    throw e;
+                }
+                // Usage của cả lời gọi nằm ở đoạn cuối của stream
+                metrics.geminiCall(tags, model, "stream", System.nanoTime() - start, last, null);
+                event.finish(last, text, null);
+                return text.toString();
+            }
+
+            @Override
+            public boolean fallbackAllowed() {
+                return !emitted;
+            }
+        });
+        return new DBMLCode(answer.value(), answer.model());
+    }
+
+    /**
+     * Chế độ chia nhỏ cho mô tả lớn (hàng chục - hàng trăm bảng không vừa một response):
+     * 1. một lời gọi lập plan: các bounded context và danh sách bảng của từng context;
+     * 2. sinh DBML cho từng context song song (virtual thread, tối đa max-in-flight của model cùng lúc để
+     *    không vượt bulkhead của GeminiResilience), đoạn nào bị cắt (MAX_TOKENS / khối chưa đóng)
+     *    thì yêu cầu viết tiếp, tối đa MAX_CONTINUATIONS lần;
+     * 3. gộp các đoạn, bỏ bảng trùng và Ref chéo domain trỏ tới bảng / cột không tồn tại, kiểm tra bằng DbmlParser.
+     * Plan chỉ có một context thì quay về generateDbmlCode thông thường.
+     * Model của kết quả chỉ được ghi khi mọi lời gọi đều do cùng một model trả lời.
+     */
+    public DBMLCode generateDbmlCodeChunked(String systemDescription, String modelName) {
+        if (!MODELS_MAP.containsKey(modelName)) {
+            throw new IllegalArgumentException("Model không hợp lệ: " + modelName);
+        }
+
+        Set<String> answeredBy = ConcurrentHashMap.newKeySet();
+        List<DomainPlan> plan = planDomains(systemDescription, modelName, answeredBy);
+        if (plan.size() <= 1) {
+            return generateDbmlCode(systemDescription, modelName);
+        }
+
+        Map<String, Integer> owners = new HashMap<>();
+        for (int i = 0; i < plan.size(); i++) {
+            for (String table : plan.get(i).tables()) {
+                owners.putIfAbsent(table.toLowerCase(), i);
+            }
+        }
+        String planSummary = describePlan(plan);
+        Tags tags = metrics.tags();
+
+        // Các domain vượt quá giới hạn chờ ở đây thay vì bị bulkhead từ chối rồi chuyển sang model fallback
+        Semaphore permits = new Semaphore(Math.max(1, resilience.maxInFlight(modelName)));
+        List<String> fragments = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> futures = new ArrayList<>();
+            for (DomainPlan domain : plan) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return generateFragment(systemDescription, domain, planSummary, modelName, tags, answeredBy);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<String> future : futures) {
+                fragments.add(DbmlFragmentMerger.stripFences(future.get()));
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new GeminiUnavailableException("Sinh DBML theo domain thất bại", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeminiUnavailableException("Sinh DBML theo domain bị hủy", e);
+        }
+
+        DbmlFragmentMerger.MergeResult merged = DbmlFragmentMerger.merge(fragments, owners);
+        String dbml = merged.dbml();
+        if (!merged.droppedRefs().isEmpty()) {
+            System.err.println("Bỏ " + merged.droppedRefs().size() + " Ref không hợp lệ khi gộp DBML: " + merged.droppedRefs());
+        }
+        if (!DBMLCode.isValidDbml(dbml)) {
+            // Lỗi thường nằm ở Ref chéo domain: thử bỏ các Ref cấp cao nhất
+            String withoutRefs = DbmlFragmentMerger.withoutTopLevelRefs(dbml);
+            if (DBMLCode.isValidDbml(withoutRefs)) {
+                System.err.println("DBML gộp không hợp lệ, đã bỏ các Ref cấp cao nhất");
+                dbml = withoutRefs;
+            } else {
+                System.err.println("DBML gộp từ " + plan.size() + " domain không parse được");
+            }
+        }
+        return new DBMLCode("```dbml\n" + dbml + "\n```", answeredBy.size() == 1 ? answeredBy.iterator().next() : null);
+    }
 
-            String generatedText = response.text();
+    // Lời gọi lập plan; trả về danh sách rỗng nếu không đọc được plan. Model đã trả lời được thêm vào answeredBy
+    List<DomainPlan> planDomains(String systemDescription, String modelName, Set<String> answeredBy) {
+        GenerateContentConfig config = GenerateContentConfig.builder()
+                .systemInstruction(Content.fromParts(Part.fromText(PLAN_INSTRUCTION)))
+                .temperature(TEMPERATURE)
+                .maxOutputTokens(MAX_OUTPUT_TOKENS)
+                .build();
+        List<Content> contents = List.of(userContent(systemDescription));
+        Tags tags = metrics.tags();
+        GeminiResilience.Answer<String> answer = resilience.executeWithModel(modelName,
+                model -> call(tags, "plan", model, contents, config).text());
+        answeredBy.add(answer.model());
+        return parsePlan(answer.value() == null ? "" : answer.value());
+    }
 
-            // Xử lý để chỉ lấy phần code DBML
-            return new DBMLCode(generatedText);
+    /**
+     * Đọc plan dạng:
+     * <pre>
+     * DOMAIN: Catalog
+     * DESCRIPTION: ...
+     * TABLES: Product, Category
+     * </pre>
+     * Bảng xuất hiện ở nhiều domain chỉ thuộc domain đầu tiên.
+     */
+    static List<DomainPlan> parsePlan(String planText) {
+        List<DomainPlan> domains = new ArrayList<>();
+        List<String> seen = new ArrayList<>();
+        String name = null;
+        String description = "";
+        for (String rawLine : planText.split("\n")) {
+            String line = rawLine.replace("*", "").replaceFirst("^[\\s\\-#>]+", "").strip();
+            int colon = line.indexOf(':');
+            if (colon == -1) continue;
+            String key = line.substring(0, colon).strip().toUpperCase();
+            String value = line.substring(colon + 1).strip();
+            switch (key) {
+                case "DOMAIN" -> {
+                    name = value;
+                    description = "";
+                }
+                case "DESCRIPTION" -> description = value;
+                case "TABLES" -> {
+                    if (name == null) continue;
+                    List<String> tables = new ArrayList<>();
+                    for (String table : value.split(",")) {
+                        String t = table.replace("`", "").replace("\"", "").strip();
+                        if (!t.isEmpty() && !seen.contains(t.toLowerCase())) {
+                            seen.add(t.toLowerCase());
+                            tables.add(t);
+                        }
+                    }
+                    if (!tables.isEmpty()) domains.add(new DomainPlan(name, description, tables));
+                    name = null;
+                }
+                default -> {
+                }
+            }
+        }
+        return domains;
+    }
+
+    // Sinh DBML cho một domain; nếu response bị cắt thì hỏi tiếp trong cùng hội thoại
+    private String generateFragment(String systemDescription, DomainPlan domain, String planSummary, String modelName,
+                                    Tags tags, Set<String> answeredBy) {
+        GenerateContentConfig config = GenerateContentConfig.builder()
+                .systemInstruction(buildSystemInstruction())
+                .temperature(TEMPERATURE)
+                .maxOutputTokens(MAX_OUTPUT_TOKENS)
+                .build();
+        String prompt = """
+                Full system requirements:
+                %s
 
+                The schema is split into these domains (exact table names):
+                %s
+                Generate DBML ONLY for the tables of domain "%s" (%s): %s.
+                Do not define tables of other domains; reference them with Ref using the exact names above \
+                and their `id` column as primary key.
+                """.formatted(systemDescription, planSummary, domain.name(), domain.description(),
+                String.join(", ", domain.tables()));
+
+        List<Content> history = new ArrayList<>();
+        history.add(userContent(prompt));
+        StringBuilder text = new StringBuilder();
+        for (int round = 0; round <= MAX_CONTINUATIONS; round++) {
+            List<Content> contents = List.copyOf(history);
+            GeminiResilience.Answer<GenerateContentResponse> answer = resilience.executeWithModel(modelName,
+                    model -> call(tags, "fragment", model, contents, config));
+            answeredBy.add(answer.model());
+            GenerateContentResponse response = answer.value();
+            String part = response.text() == null ? "" : response.text();
+            text.append(round == 0 ? part : stripLeadingFence(part));
+            if (!hitTokenLimit(response) && !DbmlFragmentMerger.looksTruncated(text.toString())) {
+                break;
+            }
+            history.add(Content.builder().role("model").parts(List.of(Part.fromText(part))).build());
+            history.add(userContent(CONTINUE_PROMPT));
+        }
+        return text.toString();
+    }
+
+    // Một lời gọi generateContent, ghi độ trễ / token / lỗi theo model vào PipelineMetrics và JFR
+    private GenerateContentResponse call(Tags tags, String operation, String model, List<Content> contents,
+                                         GenerateContentConfig config) throws Exception {
+        PipelineEvents.GeminiCallEvent event = PipelineEvents.GeminiCallEvent.begin(model, operation);
+        long start = System.nanoTime();
+        try {
+            GenerateContentResponse response = client.generateContent(model, contents, config);
+            metrics.geminiCall(tags, model, operation, System.nanoTime() - start, response, null);
+            event.finish(response, null, null);
+            return response;
         } catch (Exception e) {
-            System.err.println("Lỗi gọi Gemini API: " + e.getMessage());
-            e.printStackTrace();
-            return new DBMLCode(""); // Trả về chuỗi rỗng trong trường hợp lỗi
+            metrics.geminiCall(tags, model, operation, System.nanoTime() - start, null, e);
+            event.finish(null, null, e);
+            throw e;
         }
     }
 
+    private static boolean hitTokenLimit(GenerateContentResponse response) {
+        try {
+            FinishReason reason = response.finishReason();
+            return reason != null && reason.knownEnum() == FinishReason.Known.MAX_TOKENS;
+        } catch (RuntimeException e) {
+            return false; // Response không có candidate
+        }
+    }
+
+    // Phần viết tiếp có thể mở lại rào ```dbml
+    private static String stripLeadingFence(String continuation) {
+        String trimmed = continuation.stripLeading();
+        if (trimmed.startsWith("```")) {
+            int lineEnd = trimmed.indexOf('\n');
+            return lineEnd == -1 ? "" : trimmed.substring(lineEnd + 1);
+        }
+        return continuation;
+    }
+
+    private static String describePlan(List<DomainPlan> plan) {
+        StringBuilder out = new StringBuilder();
+        for (DomainPlan domain : plan) {
+            out.append("- ").append(domain.name()).append(": ").append(String.join(", ", domain.tables())).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static Content userContent(String text) {
+        return Content.builder()
+                .role("user")
+                .parts(Collections.singletonList(Part.builder().text(text).build()))
+                .build();
+    }
+
+    /**
+     * Key cache cho một lần sinh: hash của model, mô tả đã chuẩn hóa, system instruction và cấu hình sinh.
+     * Đổi prompt hệ thống hay tham số sinh sẽ tự động tạo key mới.
+     */
+    public static String cacheKey(String systemDescription, String modelName) {
+        String material = String.join("\u0000",
+                modelName,
+                normalizeDescription(systemDescription),
+                SYSTEM_INSTRUCTION,
+                "temperature=" + TEMPERATURE,
+                "maxOutputTokens=" + MAX_OUTPUT_TOKENS);
+        return Hashing.sha256("dbml-generation", material);
+    }
+
+    /** Như cacheKey(systemDescription, modelName); chế độ chia nhỏ cho kết quả khác nên dùng key riêng. */
+    public static String cacheKey(String systemDescription, String modelName, boolean chunked) {
+        if (!chunked) {
+            return cacheKey(systemDescription, modelName);
+        }
+        String material = String.join("\u0000",
+                cacheKey(systemDescription, modelName),
+                "mode=chunked",
+                PLAN_INSTRUCTION,
+                "maxContinuations=" + MAX_CONTINUATIONS);
+        return Hashing.sha256("dbml-generation", material);
+    }
+
+    // Chuẩn hóa Unicode (NFC), gộp khoảng trắng liên tiếp và bỏ khoảng trắng đầu/cuối
+    static String normalizeDescription(String systemDescription) {
+        if (systemDescription == null) return "";
+        String nfc = Normalizer.normalize(systemDescription, Normalizer.Form.NFC);
+        return nfc.strip().replaceAll("\\s+", " ");
+    }
+
     /**
      * Định nghĩa System Instruction chi tiết để định hướng đầu ra DBML.
      */
     private Content buildSystemInstruction() {
-        return Content.fromParts(Part.fromText(
+        return Content.fromParts(Part.fromText(SYSTEM_INSTRUCTION));
+    }
+
+    private static final String SYSTEM_INSTRUCTION =
             """
             You are an expert database architect and DBML code generator.
             Your task is to convert a user's system requirements into normalized and valid DBML code for a MySQL/PostgreSQL database.
@@ -103,8 +471,24 @@ public class DBMLGenerator {
             }
             Ref: Product.user_id > User.id
             ```
-            """));
-    }
+            """;
+
+    private static final String PLAN_INSTRUCTION =
+            """
+            You are an expert database architect planning a large relational schema.
+            Split the user's system requirements into bounded contexts (domains) of at most 15 tables each
+            and list the tables each domain owns. Every table belongs to exactly one domain.
+            Use PascalCase table names that are unique across all domains.
+
+            Output ONLY lines in this exact format, with no other text:
+            DOMAIN: <domain name>
+            DESCRIPTION: <one sentence>
+            TABLES: <Table1>, <Table2>, ...
+            """;
+
+    private static final String CONTINUE_PROMPT =
+            "Your previous answer was cut off. Continue the DBML exactly where it stopped, "
+                    + "without repeating anything already written and without any explanation.";
 
 //    /**
 //     * Hàm helper để trích xuất nội dung DBML thuần túy từ khối markdown.
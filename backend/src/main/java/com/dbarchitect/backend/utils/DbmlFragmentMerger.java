@@ -0,0 +1,334 @@
+package com.dbarchitect.backend.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Gộp các đoạn DBML sinh song song theo từng domain thành một file:
+ * - mỗi bảng chỉ giữ một định nghĩa (ưu tiên domain sở hữu bảng theo plan, sau đó là đoạn xuất hiện trước);
+ * - Enum / TableGroup / Project trùng tên chỉ giữ bản đầu tiên;
+ * - Ref (cả dạng "Ref: ..." lẫn "[ref: ...]" trong cột) trỏ tới bảng hoặc cột không tồn tại bị bỏ,
+ *   Ref trùng (kể cả trùng với ref inline) chỉ giữ một.
+ *
+ * Chỉ tách ở mức khối cấp cao nhất, không thay thế DbmlParser: kết quả vẫn cần được parse để kiểm tra.
+ */
+public class DbmlFragmentMerger {
+
+    public record MergeResult(String dbml, int tables, int refs, int duplicateTables, List<String> droppedRefs) {
+    }
+
+    // A.b > C.d, "schema"."A"."b" <> C.d, A.(a, b) - D.(c, d)
+    private static final Pattern REF_BODY = Pattern.compile(
+            "([\\w\".]+(?:\\.\\([^)]*\\))?)\\s*(<>|<|>|-)\\s*([\\w\".]+(?:\\.\\([^)]*\\))?)");
+    private static final Pattern INLINE_REF = Pattern.compile(
+            "(,\\s*)?\\bref\\s*:\\s*(<>|<|>|-)\\s*([\\w\".]+)(\\s*,)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SETTINGS = Pattern.compile("\\[([^\\]]*)\\]\\s*$");
+
+    private DbmlFragmentMerger() {
+    }
+
+    /**
+     * @param fragments DBML sạch (không có rào markdown) của từng domain, theo thứ tự domain
+     * @param owners    tên bảng -> chỉ số domain sở hữu (theo plan); bảng không có trong map thì lấy bản đầu tiên
+     */
+    public static MergeResult merge(List<String> fragments, Map<String, Integer> owners) {
+        Map<String, Block> tables = new LinkedHashMap<>();
+        Map<String, Integer> tableSource = new HashMap<>();
+        Map<String, String> otherBlocks = new LinkedHashMap<>();
+        List<String> refs = new ArrayList<>();
+        int duplicateTables = 0;
+
+        for (int i = 0; i < fragments.size(); i++) {
+            for (Block block : split(fragments.get(i))) {
+                switch (block.kind()) {
+                    case TABLE -> {
+                        String key = normalizeName(block.name());
+                        Integer owner = owners.get(key);
+                        Integer existing = tableSource.get(key);
+                        if (existing == null) {
+                            tables.put(key, block);
+                            tableSource.put(key, i);
+                        } else {
+                            duplicateTables++;
+                            if (owner != null && owner == i && existing != i) {
+                                tables.put(key, block);
+                                tableSource.put(key, i);
+                            }
+                        }
+                    }
+                    case REF -> refs.add(block.text().strip());
+                    case OTHER -> otherBlocks.putIfAbsent(block.name(), block.text());
+                }
+            }
+        }
+
+        // Cột của từng bảng, để kiểm tra đích của Ref
+        Map<String, Set<String>> columns = new HashMap<>();
+        tables.forEach((name, block) -> columns.put(name, columnNames(block.text())));
+
+        List<String> droppedRefs = new ArrayList<>();
+        Set<String> relationKeys = new HashSet<>();
+        List<String> tableTexts = new ArrayList<>();
+        for (Map.Entry<String, Block> entry : tables.entrySet()) {
+            tableTexts.add(reconcileInlineRefs(entry.getKey(), entry.getValue().text(), columns, droppedRefs, relationKeys));
+        }
+
+        Set<String> keptRefs = new LinkedHashSet<>();
+        for (String ref : refs) {
+            Matcher m = REF_BODY.matcher(ref);
+            if (!m.find()) {
+                droppedRefs.add(ref);
+                continue;
+            }
+            String from = m.group(1);
+            String to = m.group(3);
+            if (!endpointExists(from, columns) || !endpointExists(to, columns)) {
+                droppedRefs.add(ref);
+                continue;
+            }
+            if (relationKeys.add(relationKey(from, to)) && relationKeys.add(relationKey(to, from))) {
+                keptRefs.add(ref);
+            }
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (String enumOrGroup : otherBlocks.values()) {
+            out.append(enumOrGroup.strip()).append("\n\n");
+        }
+        for (String table : tableTexts) {
+            out.append(table.strip()).append("\n\n");
+        }
+        for (String ref : keptRefs) {
+            out.append(ref).append('\n');
+        }
+        return new MergeResult(out.toString().strip(), tables.size(), keptRefs.size(), duplicateTables, droppedRefs);
+    }
+
+    /** Bỏ các dòng Ref cấp cao nhất (dùng khi file gộp không parse được vì tham chiếu chéo domain). */
+    public static String withoutTopLevelRefs(String dbml) {
+        StringBuilder out = new StringBuilder();
+        for (Block block : split(dbml)) {
+            if (block.kind() != Kind.REF) {
+                out.append(block.text().strip()).append("\n\n");
+            }
+        }
+        return out.toString().strip();
+    }
+
+    /**
+     * DBML bị cắt ngang: rào ```dbml chưa đóng, hoặc còn dấu '{' chưa đóng ở cuối.
+     */
+    public static boolean looksTruncated(String rawFragment) {
+        int fence = rawFragment.indexOf("```");
+        if (fence != -1 && rawFragment.indexOf("```", fence + 3) == -1) {
+            return true;
+        }
+        return depthAtEnd(stripFences(rawFragment)) > 0;
+    }
+
+    /** Bỏ rào markdown (```dbml ... ```), kể cả khi rào đóng bị thiếu do response bị cắt. */
+    public static String stripFences(String rawFragment) {
+        String text = rawFragment;
+        int start = text.indexOf("```");
+        if (start != -1) {
+            int lineEnd = text.indexOf('\n', start);
+            text = lineEnd == -1 ? "" : text.substring(lineEnd + 1);
+            int end = text.indexOf("```");
+            if (end != -1) {
+                text = text.substring(0, end);
+            }
+        }
+        return text;
+    }
+
+    private enum Kind { TABLE, REF, OTHER }
+
+    private record Block(Kind kind, String name, String text) {
+    }
+
+    // Tách các khối / câu lệnh cấp cao nhất; dấu ngoặc trong chuỗi và comment // không tính
+    private static List<Block> split(String dbml) {
+        List<Block> blocks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int depth = 0;
+        for (String line : dbml.split("\n", -1)) {
+            if (depth == 0 && current.isEmpty() && line.isBlank()) {
+                continue;
+            }
+            current.append(line).append('\n');
+            depth += braceDelta(line);
+            if (depth <= 0) {
+                depth = 0;
+                String text = current.toString();
+                current.setLength(0);
+                Block block = classify(text);
+                if (block != null) blocks.add(block);
+            }
+        }
+        if (!current.isEmpty()) {
+            // Khối chưa đóng (response bị cắt): bỏ
+            current.setLength(0);
+        }
+        return blocks;
+    }
+
+    private static Block classify(String text) {
+        String header = text.strip();
+        if (header.isEmpty() || header.startsWith("//")) {
+            return null;
+        }
+        String keyword = header.split("[\\s:{\\[]", 2)[0];
+        if (keyword.equalsIgnoreCase("Table")) {
+            return new Block(Kind.TABLE, blockName(header, 5), text);
+        }
+        if (keyword.equalsIgnoreCase("Ref")) {
+            return new Block(Kind.REF, "", text);
+        }
+        int brace = header.indexOf('{');
+        String name = brace == -1 ? header : header.substring(0, brace).strip();
+        return new Block(Kind.OTHER, name.replaceAll("\\s+", " "), text);
+    }
+
+    private static String blockName(String header, int keywordLength) {
+        String rest = header.substring(keywordLength).strip();
+        int end = 0;
+        boolean quoted = false;
+        while (end < rest.length()) {
+            char ch = rest.charAt(end);
+            if (ch == '"') quoted = !quoted;
+            else if (!quoted && (Character.isWhitespace(ch) || ch == '[' || ch == '{')) break;
+            end++;
+        }
+        return rest.substring(0, end);
+    }
+
+    private static Set<String> columnNames(String tableText) {
+        Set<String> names = new HashSet<>();
+        String[] lines = tableText.split("\n");
+        int depth = 0;
+        for (String line : lines) {
+            int before = depth;
+            depth += braceDelta(line);
+            String trimmed = line.strip();
+            // Chỉ các dòng nằm trực tiếp trong khối Table (bỏ indexes { }, Note, comment)
+            if (before != 1 || trimmed.isEmpty() || trimmed.startsWith("//") || trimmed.startsWith("}")) continue;
+            String first = trimmed.startsWith("\"")
+                    ? trimmed.substring(0, Math.max(1, trimmed.indexOf('"', 1) + 1))
+                    : trimmed.split("[\\s\\[{]", 2)[0];
+            if (first.equalsIgnoreCase("indexes") || first.equalsIgnoreCase("Note") || first.equalsIgnoreCase("Note:")) continue;
+            names.add(normalizeName(first));
+        }
+        return names;
+    }
+
+    private static String reconcileInlineRefs(String tableName, String tableText, Map<String, Set<String>> columns,
+                                              List<String> droppedRefs, Set<String> relationKeys) {
+        StringBuilder out = new StringBuilder();
+        for (String line : tableText.split("\n", -1)) {
+            Matcher settings = SETTINGS.matcher(line);
+            if (!settings.find() || !INLINE_REF.matcher(settings.group(1)).find()) {
+                out.append(line).append('\n');
+                continue;
+            }
+            String trimmed = line.strip();
+            String column = trimmed.startsWith("\"")
+                    ? trimmed.substring(0, Math.max(1, trimmed.indexOf('"', 1) + 1))
+                    : trimmed.split("[\\s\\[]", 2)[0];
+            String from = tableName + "." + normalizeName(column);
+
+            StringBuilder kept = new StringBuilder();
+            Matcher ref = INLINE_REF.matcher(settings.group(1));
+            while (ref.find()) {
+                String target = ref.group(3);
+                boolean keep = endpointExists(target, columns) && relationKeys.add(relationKey(from, target));
+                if (keep) {
+                    relationKeys.add(relationKey(target, from));
+                    ref.appendReplacement(kept, Matcher.quoteReplacement(ref.group()));
+                } else {
+                    droppedRefs.add(from + " " + ref.group().replaceAll("^,\\s*|\\s*,$", "").strip());
+                    // Giữ lại đúng một dấu phẩy nếu ref nằm giữa hai setting khác
+                    String separator = ref.group(1) != null && ref.group(4) != null ? ", " : "";
+                    ref.appendReplacement(kept, separator);
+                }
+            }
+            ref.appendTail(kept);
+            String newSettings = kept.toString().strip();
+            String prefix = line.substring(0, settings.start()).stripTrailing();
+            out.append(newSettings.isEmpty() ? prefix : prefix + " [" + newSettings + "]").append('\n');
+        }
+        out.setLength(out.length() - 1);
+        return out.toString();
+    }
+
+    private static boolean endpointExists(String endpoint, Map<String, Set<String>> columns) {
+        int paren = endpoint.indexOf(".(");
+        if (paren != -1) {
+            // Ref nhiều cột: chỉ kiểm tra bảng
+            return columns.containsKey(tableOf(endpoint.substring(0, paren) + ".x"));
+        }
+        Set<String> cols = columns.get(tableOf(endpoint));
+        return cols != null && cols.contains(columnOf(endpoint));
+    }
+
+    private static String relationKey(String from, String to) {
+        return normalizeEndpoint(from) + "->" + normalizeEndpoint(to);
+    }
+
+    private static String normalizeEndpoint(String endpoint) {
+        return tableOf(endpoint) + "." + columnOf(endpoint);
+    }
+
+    // "public"."User".id -> user ; User.id -> user
+    private static String tableOf(String endpoint) {
+        String[] parts = endpoint.replace("\"", "").split("\\.");
+        return parts.length < 2 ? "" : normalizeName(parts[parts.length - 2]);
+    }
+
+    private static String columnOf(String endpoint) {
+        String[] parts = endpoint.replace("\"", "").split("\\.");
+        return normalizeName(parts[parts.length - 1]);
+    }
+
+    private static String normalizeName(String name) {
+        String plain = name.replace("\"", "");
+        int dot = plain.lastIndexOf('.');
+        return (dot == -1 ? plain : plain.substring(dot + 1)).toLowerCase();
+    }
+
+    private static int depthAtEnd(String dbml) {
+        int depth = 0;
+        for (String line : dbml.split("\n")) {
+            depth += braceDelta(line);
+        }
+        return depth;
+    }
+
+    private static int braceDelta(String line) {
+        int delta = 0;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') i++;
+                else if (c == quote) quote = 0;
+            } else if (c == '/' && i + 1 < line.length() && line.charAt(i + 1) == '/') {
+                break;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '{') {
+                delta++;
+            } else if (c == '}') {
+                delta--;
+            }
+        }
+        return delta;
+    }
+}
@@ -0,0 +1,12 @@
+package com.dbarchitect.backend.utils;
+
+/**
+ * Nhận kết quả sinh DBML dạng stream: từng đoạn text thô ngay khi Gemini trả về,
+ * và từng khối Table hoàn chỉnh ngay khi dấu đóng ngoặc của nó tới.
+ */
+public interface DbmlStreamListener {
+
+    void onChunk(String chunk);
+
+    void onTable(String tableName, String tableDbml);
+}
@@ -0,0 +1,114 @@
+package com.dbarchitect.backend.utils;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Tách các khối {@code Table ... { ... }} hoàn chỉnh từ DBML đang được stream về theo từng đoạn.
+ * Mỗi khi dấu '}' đóng một khối cấp cao nhất tới, khối đó được đẩy ra ngay (tên bảng + DBML của khối),
+ * nên frontend có thể vẽ bảng trước khi toàn bộ response kết thúc.
+ *
+ * Bỏ qua dấu ngoặc nằm trong chuỗi ('...', "...", `...`) và comment //; các dòng rào markdown (```) không ảnh hưởng.
+ * Không thread-safe: mỗi stream dùng một instance.
+ */
+public class DbmlTableStreamParser {
+
+    private final BiConsumer<String, String> onTable;
+    private final StringBuilder buffer = new StringBuilder();
+    private int pos;
+    private int depth;
+    private int blockStart = -1;
+    private char quote;
+    private boolean escaped;
+    private boolean inLineComment;
+
+    public DbmlTableStreamParser(BiConsumer<String, String> onTable) {
+        this.onTable = onTable;
+    }
+
+    public void feed(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        buffer.append(chunk);
+        scan();
+    }
+
+    private void scan() {
+        while (pos < buffer.length()) {
+            char c = buffer.charAt(pos);
+
+            if (inLineComment) {
+                if (c == '\n') inLineComment = false;
+                pos++;
+                continue;
+            }
+            if (quote != 0) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+                pos++;
+                continue;
+            }
+
+            if (c == '/') {
+                if (pos + 1 >= buffer.length()) {
+                    return; // Chưa biết có phải "//" hay không, chờ đoạn tiếp theo
+                }
+                if (buffer.charAt(pos + 1) == '/') {
+                    inLineComment = true;
+                    pos += 2;
+                    continue;
+                }
+            } else if (c == '`') {
+                if (pos + 2 >= buffer.length()) {
+                    return; // Có thể là rào markdown ```, chờ thêm
+                }
+                if (buffer.charAt(pos + 1) == '`' && buffer.charAt(pos + 2) == '`') {
+                    pos += 3; // Rào ```dbml / ``` không phải chuỗi
+                    continue;
+                }
+                quote = c;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '{') {
+                if (depth == 0) {
+                    blockStart = buffer.lastIndexOf("\n", pos) + 1;
+                }
+                depth++;
+            } else if (c == '}' && depth > 0) {
+                depth--;
+                if (depth == 0) {
+                    emitBlock(buffer.substring(blockStart, pos + 1));
+                    // Khối đã xử lý xong: bỏ phần đầu buffer để không giữ lại toàn bộ response
+                    buffer.delete(0, pos + 1);
+                    pos = 0;
+                    blockStart = -1;
+                    continue;
+                }
+            }
+            pos++;
+        }
+    }
+
+    private void emitBlock(String block) {
+        String header = block.substring(0, block.indexOf('{')).strip();
+        if (!header.regionMatches(true, 0, "Table", 0, 5) || header.length() == 5
+                || !Character.isWhitespace(header.charAt(5))) {
+            return; // Enum, Ref { }, TableGroup, Project...
+        }
+        String name = header.substring(5).strip();
+        int end = 0;
+        boolean quoted = false;
+        while (end < name.length()) {
+            char ch = name.charAt(end);
+            if (ch == '"') quoted = !quoted;
+            else if (!quoted && (Character.isWhitespace(ch) || ch == '[')) break;
+            end++;
+        }
+        onTable.accept(name.substring(0, end).replace("\"", ""), block);
+    }
+}
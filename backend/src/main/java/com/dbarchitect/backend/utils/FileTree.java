@@ -0,0 +1,144 @@
+package com.dbarchitect.backend.utils;
+
+import com.dbarchitect.backend.entities.FileNode;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cây FileNode kèm chỉ mục theo đường dẫn, dựng trong thời gian tuyến tính theo số file.
+ *
+ * Mỗi thư mục có một HashMap tên -> node con, nên thêm file vào thư mục có hàng nghìn file vẫn là O(1);
+ * mỗi thư mục chỉ được tạo (và dựng chuỗi path) một lần. File liên tiếp cùng thư mục - trường hợp thường gặp
+ * với output của CodeGenerator - dùng lại thư mục của file trước mà không cắt chuỗi hay tra map.
+ *
+ * Đường dẫn tương đối tính từ gốc project, không có "/" ở đầu: "src/main/java/com/example/demo/controller".
+ * Thư mục trung gian có path = projectName + "/" + đường dẫn tương đối, như ProjectTreeBuilder.buildTree trước đây.
+ */
+public final class FileTree {
+
+    // Thư mục trước, sau đó theo tên
+    private static final Comparator<FileNode> ORDER = Comparator
+            .comparing((FileNode node) -> !"folder".equals(node.getType()))
+            .thenComparing(FileNode::getName);
+
+    private static final class Folder {
+        final FileNode node;
+        final Map<String, FileNode> children = new HashMap<>();
+
+        Folder(FileNode node) {
+            this.node = node;
+        }
+    }
+
+    private final FileNode root;
+    private final String projectName;
+    // Theo đường dẫn tương đối; "" là gốc
+    private final Map<String, Folder> folders = new HashMap<>();
+
+    private FileTree(String projectName) {
+        this.projectName = projectName;
+        this.root = new FileNode(projectName, "folder", projectName);
+        folders.put("", new Folder(root));
+    }
+
+    /**
+     * Dựng cây từ danh sách file phẳng; path của mỗi file là đường dẫn tương đối (vd: "src/main/.../User.java").
+     * Các file được giữ đúng thứ tự đầu vào trong từng thư mục; file trùng đường dẫn chỉ giữ file đầu tiên.
+     */
+    public static FileTree build(List<FileNode> flatFiles, String projectName) {
+        FileTree tree = new FileTree(projectName);
+        String lastDir = null;
+        Folder lastFolder = null;
+        for (FileNode file : flatFiles) {
+            String path = file.getPath();
+            int slash = path.lastIndexOf('/');
+            Folder folder;
+            if (lastDir != null && slash == lastDir.length() && path.startsWith(lastDir)) {
+                folder = lastFolder;
+            } else {
+                lastDir = slash < 0 ? "" : path.substring(0, slash);
+                folder = tree.folder(lastDir);
+                lastFolder = folder;
+            }
+            String name = file.getName() != null ? file.getName() : path.substring(slash + 1);
+            if (folder.children.putIfAbsent(name, file) == null) {
+                folder.node.getChildren().add(file);
+            }
+        }
+        return tree;
+    }
+
+    public FileNode root() {
+        return root;
+    }
+
+    /**
+     * Thư mục hoặc file tại đường dẫn tương đối (chấp nhận "/" ở đầu / cuối và tiền tố projectName + "/").
+     * @return null nếu không tồn tại; "" trả về gốc
+     */
+    public FileNode subtree(String path) {
+        String relative = normalize(path);
+        Folder folder = folders.get(relative);
+        if (folder != null) {
+            return folder.node;
+        }
+        int slash = relative.lastIndexOf('/');
+        Folder parent = folders.get(slash < 0 ? "" : relative.substring(0, slash));
+        return parent == null ? null : parent.children.get(relative.substring(slash + 1));
+    }
+
+    /** Sắp xếp con của mọi thư mục: thư mục trước, rồi theo tên. Trả về chính cây này. */
+    public FileTree sorted() {
+        for (Folder folder : folders.values()) {
+            folder.node.getChildren().sort(ORDER);
+        }
+        return this;
+    }
+
+    public int folderCount() {
+        return folders.size();
+    }
+
+    // Lấy hoặc tạo thư mục (và các thư mục cha còn thiếu)
+    private Folder folder(String relative) {
+        Folder folder = folders.get(relative);
+        if (folder != null) {
+            return folder;
+        }
+        int slash = relative.lastIndexOf('/');
+        Folder parent = folder(slash < 0 ? "" : relative.substring(0, slash));
+        String name = relative.substring(slash + 1);
+
+        FileNode existing = parent.children.get(name);
+        FileNode node;
+        if (existing != null) {
+            // Đã có node cùng tên (file trùng tên thư mục): dùng luôn node đó làm thư mục như cách cũ
+            node = existing;
+        } else {
+            node = new FileNode(name, "folder", projectName + "/" + relative);
+            parent.children.put(name, node);
+            parent.node.getChildren().add(node);
+        }
+        folder = new Folder(node);
+        folders.put(relative, folder);
+        return folder;
+    }
+
+    private String normalize(String path) {
+        if (path == null) return "";
+        String relative = path.strip();
+        if (relative.startsWith(projectName + "/")) {
+            relative = relative.substring(projectName.length() + 1);
+        } else if (relative.equals(projectName)) {
+            return "";
+        }
+        int start = 0;
+        int end = relative.length();
+        while (start < end && relative.charAt(start) == '/') start++;
+        while (end > start && relative.charAt(end - 1) == '/') end--;
+        return relative.substring(start, end);
+    }
+}
@@ -1,5 +1,8 @@
 package com.dbarchitect.backend.utils;
 
+import freemarker.ext.beans.ZeroArgumentNonVoidMethodPolicy;
+import freemarker.template.DefaultObjectWrapperBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.ui.freemarker.FreeMarkerConfigurationFactoryBean;
@@ -7,8 +10,27 @@ import org.springframework.ui.freemarker.FreeMarkerConfigurationFactoryBean;
 @Configuration
 public class FreeMarkerConfig {
     @Bean
-    public FreeMarkerConfigurationFactoryBean freemarkerConfiguration() {
-        FreeMarkerConfigurationFactoryBean bean = new FreeMarkerConfigurationFactoryBean();
+    public FreeMarkerConfigurationFactoryBean freemarkerConfiguration(
+            @Value("${codegen.templates.check-updates:false}") boolean checkUpdates) {
+        return configurationFactory(checkUpdates);
+    }
+
+    /**
+     * Dùng chung cho bean Spring và cho benchmark/test dựng CodeGenerator không qua ApplicationContext.
+     */
+    public static FreeMarkerConfigurationFactoryBean configurationFactory(boolean checkUpdates) {
+        FreeMarkerConfigurationFactoryBean bean = new FreeMarkerConfigurationFactoryBean() {
+            @Override
+            protected void postProcessConfiguration(freemarker.template.Configuration config) {
+                // Model là record (TableModel): đọc accessor như property, không expose field/method thừa
+                DefaultObjectWrapperBuilder wrapper = new DefaultObjectWrapperBuilder(freemarker.template.Configuration.VERSION_2_3_34);
+                wrapper.setRecordZeroArgumentNonVoidMethodPolicy(ZeroArgumentNonVoidMethodPolicy.PROPERTY_ONLY_UNLESS_BEAN_PROPERTY_READ_METHOD);
+                wrapper.setExposeFields(false);
+                config.setObjectWrapper(wrapper.build());
+                // Production: không kiểm tra file .ftl có bị sửa hay không
+                config.setTemplateUpdateDelayMilliseconds(checkUpdates ? 0 : Long.MAX_VALUE);
+            }
+        };
         // Chỉ định nơi chứa các file .ftl (template)
         bean.setTemplateLoaderPath("classpath:/templates/");
         return bean;
@@ -0,0 +1,24 @@
+package com.dbarchitect.backend.utils;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+
+import java.util.List;
+
+/**
+ * Phần API Gemini mà DBMLGenerator dùng, tách ra để thay được khi chạy local / load test.
+ * Chọn theo gemini.client: google (mặc định, GoogleGeminiClient) hoặc stub (StubGeminiClient, không gọi mạng).
+ */
+public interface GeminiClient {
+
+    GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config) throws Exception;
+
+    ResponseChunks generateContentStream(String model, List<Content> contents, GenerateContentConfig config) throws Exception;
+
+    /** Các response từng phần của một lời gọi stream; phải được đóng sau khi đọc xong hoặc khi bỏ dở. */
+    interface ResponseChunks extends Iterable<GenerateContentResponse>, AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,233 @@
+package com.dbarchitect.backend.utils;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedged request cho Gemini: nếu model chính chưa trả lời sau một khoảng trễ (percentile độ trễ gần đây
+ * của model đó), gửi thêm một request thứ hai - cùng model hoặc model nhanh hơn (gemini.hedge.target.&lt;model&gt;).
+ * Lấy response đầu tiên parse được thành DBML hợp lệ và hủy request còn lại.
+ *
+ * Tắt mặc định (gemini.hedge.enabled=false) vì mỗi lần hedge tốn thêm một lời gọi API.
+ */
+@Component
+public class GeminiHedging {
+
+    /** Một lần gọi cho modelName; Answer.model() là model đã thực sự trả lời (có thể là model fallback). */
+    @FunctionalInterface
+    public interface Attempt {
+        GeminiResilience.Answer<String> call(String modelName) throws Exception;
+    }
+
+    /**
+     * hedgesFired / requests là tỉ lệ lời gọi API phát sinh thêm; wastedMillis là tổng thời gian
+     * các lời gọi thua đã chạy trước khi bị hủy hoặc bị bỏ.
+     */
+    public record Stats(boolean enabled, long requests, long hedgesFired, long primaryWins, long hedgeWins,
+                        long invalidResponses, long failedAttempts, long wastedMillis, double hedgeRate,
+                        double hedgeWinRate) {
+    }
+
+    private final Environment environment;
+    private final boolean enabled;
+    private final double percentile;
+    private final int minSamples;
+    private final int window;
+    private final Duration initialDelay;
+    private final Duration minDelay;
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedgesFired = new AtomicLong();
+    private final AtomicLong primaryWins = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong invalidResponses = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong wastedMillis = new AtomicLong();
+
+    public GeminiHedging(Environment environment) {
+        this.environment = environment;
+        this.enabled = environment.getProperty("gemini.hedge.enabled", Boolean.class, false);
+        this.percentile = environment.getProperty("gemini.hedge.percentile", Double.class, 0.95);
+        this.minSamples = environment.getProperty("gemini.hedge.min-samples", Integer.class, 20);
+        this.window = environment.getProperty("gemini.hedge.window", Integer.class, 200);
+        this.initialDelay = environment.getProperty("gemini.hedge.initial-delay", Duration.class, Duration.ofSeconds(10));
+        this.minDelay = environment.getProperty("gemini.hedge.min-delay", Duration.class, Duration.ofMillis(500));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Chạy attempt cho modelName, hedge khi quá hedgeDelay(modelName).
+     * Nếu không attempt nào cho DBML hợp lệ thì trả về response (không hợp lệ) đầu tiên nhận được,
+     * ưu tiên model chính; nếu cả hai đều lỗi thì ném lỗi của model chính.
+     * @return text và model của attempt được chọn
+     */
+    public GeminiResilience.Answer<String> execute(String modelName, Attempt attempt) {
+        requests.incrementAndGet();
+        CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+        String hedgeModel = hedgeTarget(modelName);
+
+        long start = System.nanoTime();
+        Future<Result> primary = completion.submit(() -> run(attempt, modelName, false));
+        Future<Result> hedge = null;
+        long hedgeStart = 0;
+        Result fallback = null;
+        Exception primaryError = null;
+        int pending = 1;
+
+        try {
+            Future<Result> done = completion.poll(hedgeDelay(modelName).toMillis(), TimeUnit.MILLISECONDS);
+            while (true) {
+                if (done == null && hedge == null) {
+                    // Model chính chậm hơn ngưỡng: bắn hedge
+                    hedge = fireHedge(completion, attempt, hedgeModel);
+                    hedgeStart = System.nanoTime();
+                    pending++;
+                } else if (done != null) {
+                    pending--;
+                    Result result = get(done);
+                    if (result.error() != null) {
+                        failedAttempts.incrementAndGet();
+                        if (!result.hedge()) primaryError = result.error();
+                    } else if (result.valid()) {
+                        (result.hedge() ? hedgeWins : primaryWins).incrementAndGet();
+                        Future<Result> loser = result.hedge() ? primary : hedge;
+                        if (loser != null && !loser.isDone()) {
+                            loser.cancel(true);
+                            long loserStart = result.hedge() ? start : hedgeStart;
+                            wastedMillis.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loserStart));
+                        }
+                        return result.answer();
+                    } else {
+                        invalidResponses.incrementAndGet();
+                        if (fallback == null || (fallback.hedge() && !result.hedge())) fallback = result;
+                    }
+                    if (hedge == null) {
+                        // Model chính trả lời sớm nhưng lỗi / không hợp lệ: thử ngay request thứ hai
+                        hedge = fireHedge(completion, attempt, hedgeModel);
+                        hedgeStart = System.nanoTime();
+                        pending++;
+                    } else if (pending == 0) {
+                        break;
+                    }
+                }
+                done = completion.take();
+            }
+        } catch (InterruptedException e) {
+            primary.cancel(true);
+            if (hedge != null) hedge.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new GeminiUnavailableException("Lời gọi Gemini bị hủy", e);
+        }
+
+        if (fallback != null) {
+            return fallback.answer();
+        }
+        if (primaryError instanceof RuntimeException runtime) throw runtime;
+        throw new GeminiUnavailableException("Gemini không khả dụng cho model " + modelName, primaryError);
+    }
+
+    /** Khoảng trễ trước khi hedge: percentile độ trễ gần đây của model, hoặc initial-delay khi chưa đủ mẫu. */
+    public Duration hedgeDelay(String modelName) {
+        LatencyWindow samples = latencies.get(modelName);
+        long millis = samples == null ? -1 : samples.percentile(percentile, minSamples);
+        Duration delay = millis < 0 ? initialDelay : Duration.ofMillis(millis);
+        return delay.compareTo(minDelay) < 0 ? minDelay : delay;
+    }
+
+    /** Model dùng cho request thứ hai: gemini.hedge.target.&lt;model&gt; nếu hợp lệ, ngược lại chính model đó. */
+    String hedgeTarget(String modelName) {
+        String target = environment.getProperty("gemini.hedge.target." + modelName);
+        return target != null && Constants.MODELS_MAP.containsKey(target) ? target : modelName;
+    }
+
+    public Stats stats() {
+        long total = requests.get();
+        long fired = hedgesFired.get();
+        return new Stats(enabled, total, fired, primaryWins.get(), hedgeWins.get(), invalidResponses.get(),
+                failedAttempts.get(), wastedMillis.get(),
+                total == 0 ? 0 : (double) fired / total,
+                fired == 0 ? 0 : (double) hedgeWins.get() / fired);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Future<Result> fireHedge(CompletionService<Result> completion, Attempt attempt, String hedgeModel) {
+        hedgesFired.incrementAndGet();
+        return completion.submit(() -> run(attempt, hedgeModel, true));
+    }
+
+    private Result run(Attempt attempt, String model, boolean hedge) {
+        try {
+            GeminiResilience.Answer<String> answer = attempt.call(model);
+            // Chỉ ghi mẫu khi chính model này trả lời: thời gian chờ timeout + model fallback
+            // sẽ đẩy percentile lên và làm hedge bắn quá muộn
+            if (answer.model().equals(model)) {
+                latencies.computeIfAbsent(model, m -> new LatencyWindow(window))
+                        .record(TimeUnit.NANOSECONDS.toMillis(answer.nanos()));
+            }
+            return new Result(answer, DBMLCode.isValidDbml(answer.value()), hedge, null);
+        } catch (Exception e) {
+            return new Result(null, false, hedge, e);
+        }
+    }
+
+    private static Result get(Future<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // run() không ném lỗi; chỉ xảy ra khi task bị hủy
+            return new Result(null, false, false, new GeminiUnavailableException("Attempt lỗi", e));
+        }
+    }
+
+    private record Result(GeminiResilience.Answer<String> answer, boolean valid, boolean hedge, Exception error) {
+    }
+
+    /** Ring buffer độ trễ (ms) của các lời gọi thành công gần nhất. */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int count;
+        private int next;
+
+        LatencyWindow(int size) {
+            this.samples = new long[Math.max(1, size)];
+        }
+
+        synchronized void record(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) count++;
+        }
+
+        synchronized long percentile(double p, int minSamples) {
+            if (count == 0 || count < minSamples) return -1;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p * count) - 1;
+            return sorted[Math.min(count - 1, Math.max(0, index))];
+        }
+    }
+}
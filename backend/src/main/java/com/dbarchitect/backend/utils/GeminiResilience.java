@@ -0,0 +1,320 @@
+package com.dbarchitect.backend.utils;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bảo vệ các lời gọi Gemini theo từng model:
+ * - bulkhead: tối đa max-in-flight lời gọi đồng thời, chờ tối đa bulkhead-wait để có chỗ;
+ * - rate limiter: token bucket (rate-per-second, burst);
+ * - timeout cho mỗi lời gọi;
+ * - circuit breaker: mở sau failure-threshold lỗi liên tiếp, fail fast trong open-duration,
+ *   sau đó cho một lời gọi thử (HALF_OPEN) để quyết định đóng lại hay mở tiếp.
+ * Khi model không gọi được, thử lần lượt các model trong chuỗi fallback (gemini.fallback.&lt;model&gt;=&lt;model khác&gt;).
+ *
+ * Cấu hình mặc định ở gemini.resilience.*, ghi đè riêng cho từng model ở gemini.resilience.&lt;model&gt;.*.
+ * Không phụ thuộc SDK: lời gọi thật được truyền vào dưới dạng {@link ModelCall}, nên có thể kiểm thử với client giả.
+ */
+@Component
+public class GeminiResilience {
+
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    @FunctionalInterface
+    public interface ModelCall<T> {
+        T invoke(String modelName) throws Exception;
+
+        /** false -> không chuyển sang model fallback sau khi lời gọi này lỗi (vd: stream đã gửi dữ liệu cho client). */
+        default boolean fallbackAllowed() {
+            return true;
+        }
+    }
+
+    /**
+     * Kết quả của executeWithModel: giá trị và model đã thực sự trả lời (model được yêu cầu hoặc một model fallback).
+     * @param nanos thời gian lời gọi của riêng model đó, không tính các model lỗi / quá hạn trước nó trong chuỗi fallback
+     */
+    public record Answer<T>(String model, T value, long nanos) {
+    }
+
+    public record ModelStatus(String model, CircuitState state, int inFlight, int maxInFlight,
+                              long successes, long failures, long timeouts, long rejections) {
+    }
+
+    private final Environment environment;
+    private final Map<String, ModelGuard> guards = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public GeminiResilience(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Gọi model được yêu cầu qua các lớp bảo vệ; nếu model đó không khả dụng thì thử chuỗi fallback.
+     * @throws GeminiUnavailableException nếu mọi model trong chuỗi đều không trả lời được.
+     */
+    public <T> T execute(String modelName, ModelCall<T> call) {
+        return executeWithModel(modelName, call).value();
+    }
+
+    /**
+     * Như execute nhưng trả về kèm model đã trả lời, để bên gọi không gán output của model fallback
+     * cho model được yêu cầu (vd: khi cache kết quả theo model).
+     * @throws GeminiUnavailableException nếu mọi model trong chuỗi đều không trả lời được.
+     */
+    public <T> Answer<T> executeWithModel(String modelName, ModelCall<T> call) {
+        Exception lastError = null;
+        for (String model : fallbackChain(modelName)) {
+            ModelGuard guard = guard(model);
+            String rejection = guard.tryEnter();
+            if (rejection != null) {
+                lastError = new GeminiUnavailableException(model + ": " + rejection, null);
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                T result = invokeWithTimeout(model, call, guard.timeout);
+                guard.onSuccess();
+                return new Answer<>(model, result, System.nanoTime() - start);
+            } catch (TimeoutException e) {
+                guard.timeouts.incrementAndGet();
+                guard.onFailure();
+                lastError = new GeminiUnavailableException(model + ": quá thời gian chờ " + guard.timeout, e);
+            } catch (InterruptedException e) {
+                // Bên gọi hủy (vd: hedged request đã thắng): không tính là lỗi của model, không fallback
+                guard.onCancelled();
+                Thread.currentThread().interrupt();
+                throw new GeminiUnavailableException(model + ": lời gọi bị hủy", e);
+            } catch (Exception e) {
+                guard.onFailure();
+                lastError = e;
+            } finally {
+                guard.exit();
+            }
+            if (!call.fallbackAllowed()) {
+                break;
+            }
+        }
+        throw new GeminiUnavailableException("Gemini không khả dụng cho model " + modelName
+                + (lastError != null ? ": " + lastError.getMessage() : ""), lastError);
+    }
+
+    public List<ModelStatus> status() {
+        Map<String, ModelGuard> sorted = new TreeMap<>(guards);
+        List<ModelStatus> result = new ArrayList<>();
+        sorted.forEach((model, guard) -> result.add(guard.status(model)));
+        return result;
+    }
+
+    public CircuitState circuitState(String modelName) {
+        return guard(modelName).state();
+    }
+
+    /** Số lời gọi đồng thời tối đa của model (gemini.resilience.&lt;model&gt;.max-in-flight). */
+    public int maxInFlight(String modelName) {
+        return guard(modelName).maxInFlight;
+    }
+
+    /** Model được yêu cầu, rồi gemini.fallback.&lt;model&gt;, rồi fallback của model đó... (không lặp vòng). */
+    List<String> fallbackChain(String modelName) {
+        Set<String> chain = new LinkedHashSet<>();
+        String current = modelName;
+        while (current != null && chain.add(current)) {
+            current = environment.getProperty("gemini.fallback." + current);
+        }
+        return new ArrayList<>(chain);
+    }
+
+    private <T> T invokeWithTimeout(String model, ModelCall<T> call, Duration timeout) throws Exception {
+        Future<T> future = executor.submit(() -> call.invoke(model));
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    private ModelGuard guard(String model) {
+        return guards.computeIfAbsent(model, m -> new ModelGuard(
+                setting(m, "max-in-flight", Integer.class, 8),
+                setting(m, "bulkhead-wait", Duration.class, Duration.ofSeconds(2)),
+                setting(m, "rate-per-second", Double.class, 5.0),
+                setting(m, "burst", Integer.class, 10),
+                setting(m, "timeout", Duration.class, Duration.ofSeconds(60)),
+                setting(m, "failure-threshold", Integer.class, 5),
+                setting(m, "open-duration", Duration.class, Duration.ofSeconds(30))));
+    }
+
+    private <T> T setting(String model, String name, Class<T> type, T defaultValue) {
+        T perModel = environment.getProperty("gemini.resilience." + model + "." + name, type);
+        if (perModel != null) {
+            return perModel;
+        }
+        return environment.getProperty("gemini.resilience." + name, type, defaultValue);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class ModelGuard {
+        private final Semaphore bulkhead;
+        private final int maxInFlight;
+        private final Duration bulkheadWait;
+        private final double ratePerNano;
+        private final int burst;
+        private final Duration timeout;
+        private final int failureThreshold;
+        private final long openDurationNanos;
+
+        private final AtomicLong successes = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong rejections = new AtomicLong();
+
+        // Token bucket
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        // Circuit breaker
+        private CircuitState state = CircuitState.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        ModelGuard(int maxInFlight, Duration bulkheadWait, double ratePerSecond, int burst, Duration timeout,
+                   int failureThreshold, Duration openDuration) {
+            this.bulkhead = new Semaphore(maxInFlight);
+            this.maxInFlight = maxInFlight;
+            this.bulkheadWait = bulkheadWait;
+            this.ratePerNano = ratePerSecond / 1_000_000_000d;
+            this.burst = burst;
+            this.tokens = burst;
+            this.timeout = timeout;
+            this.failureThreshold = failureThreshold;
+            this.openDurationNanos = openDuration.toNanos();
+        }
+
+        /** @return null nếu được phép gọi, ngược lại là lý do bị từ chối. */
+        String tryEnter() {
+            if (!allowByCircuit()) {
+                rejections.incrementAndGet();
+                return "circuit breaker đang mở";
+            }
+            if (!tryTakeToken()) {
+                releaseTrial();
+                rejections.incrementAndGet();
+                return "vượt giới hạn tốc độ gọi";
+            }
+            boolean acquired;
+            try {
+                acquired = bulkhead.tryAcquire(bulkheadWait.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                releaseTrial();
+                rejections.incrementAndGet();
+                return "quá nhiều lời gọi đồng thời";
+            }
+            return null;
+        }
+
+        void exit() {
+            bulkhead.release();
+        }
+
+        synchronized void onSuccess() {
+            successes.incrementAndGet();
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            state = CircuitState.CLOSED;
+        }
+
+        synchronized void onFailure() {
+            failures.incrementAndGet();
+            consecutiveFailures++;
+            if (state == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                state = CircuitState.OPEN;
+                openedAt = System.nanoTime();
+            }
+            trialInFlight = false;
+        }
+
+        synchronized void onCancelled() {
+            trialInFlight = false;
+        }
+
+        synchronized CircuitState state() {
+            if (state == CircuitState.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+                return CircuitState.HALF_OPEN;
+            }
+            return state;
+        }
+
+        synchronized ModelStatus status(String model) {
+            return new ModelStatus(model, state(), maxInFlight - bulkhead.availablePermits(), maxInFlight,
+                    successes.get(), failures.get(), timeouts.get(), rejections.get());
+        }
+
+        private synchronized boolean allowByCircuit() {
+            if (state == CircuitState.OPEN) {
+                if (System.nanoTime() - openedAt < openDurationNanos) {
+                    return false;
+                }
+                state = CircuitState.HALF_OPEN;
+            }
+            if (state == CircuitState.HALF_OPEN) {
+                // Chỉ cho một lời gọi thử tại một thời điểm
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+            }
+            return true;
+        }
+
+        private synchronized void releaseTrial() {
+            trialInFlight = false;
+        }
+
+        private synchronized boolean tryTakeToken() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+}
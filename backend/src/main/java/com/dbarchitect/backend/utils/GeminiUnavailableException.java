@@ -0,0 +1,11 @@
+package com.dbarchitect.backend.utils;
+
+/**
+ * Không model nào trong chuỗi fallback trả lời được: circuit breaker đang mở, vượt giới hạn
+ * bulkhead / rate limit, quá thời gian chờ hoặc API trả lỗi.
+ */
+public class GeminiUnavailableException extends RuntimeException {
+    public GeminiUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
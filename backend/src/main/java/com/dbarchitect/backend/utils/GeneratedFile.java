@@ -0,0 +1,7 @@
+package com.dbarchitect.backend.utils;
+
+/**
+ * Một file mã nguồn đã được sinh ra: đường dẫn tương đối (vd: entity/User.java) và nội dung.
+ */
+public record GeneratedFile(String path, String content) {
+}
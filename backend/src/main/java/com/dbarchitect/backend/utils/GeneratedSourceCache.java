@@ -0,0 +1,175 @@
+package com.dbarchitect.backend.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache nội dung (content-addressed) cho danh sách file đã sinh từ DBML.
+ * Key là SHA-256 của DBML sạch cộng với phiên bản bộ template, nên cùng một DBML
+ * luôn trỏ tới cùng một kết quả bất kể nó đến từ project nào.
+ *
+ * Eviction theo LRU, giới hạn cả số entry lẫn tổng số byte ước tính.
+ * Các request đồng thời cho cùng một key chỉ kích hoạt một lần sinh code (single-flight).
+ */
+@Component
+public class GeneratedSourceCache {
+
+    @FunctionalInterface
+    public interface Loader {
+        List<GeneratedFile> load() throws Exception;
+    }
+
+    public record Stats(long hits, long misses, long evictions, long inFlightJoins,
+                        int entries, long estimatedBytes, int maxEntries, long maxBytes) {
+    }
+
+    private record Entry(List<GeneratedFile> files, long bytes) {
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+
+    // accessOrder = true -> thứ tự duyệt là từ ít dùng gần đây nhất đến mới nhất
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<List<GeneratedFile>>> inFlight = new ConcurrentHashMap<>();
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong inFlightJoins = new AtomicLong();
+
+    public GeneratedSourceCache(@Value("${codegen.cache.max-entries:64}") int maxEntries,
+                                @Value("${codegen.cache.max-bytes:67108864}") long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    // Chỉ dùng cho cache này; các key khác gọi Hashing.sha256 với namespace riêng
+    public static String key(String cleanDbml, String templateSetVersion) {
+        return Hashing.sha256(templateSetVersion, cleanDbml);
+    }
+
+    /**
+     * Trả về kết quả đã cache cho key, hoặc gọi loader đúng một lần (kể cả khi nhiều thread cùng hỏi)
+     * rồi lưu kết quả lại. Lỗi của loader được ném lại cho mọi thread đang chờ và không được cache.
+     */
+    public List<GeneratedFile> get(String key, Loader loader) throws Exception {
+        List<GeneratedFile> cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<List<GeneratedFile>> own = new CompletableFuture<>();
+        CompletableFuture<List<GeneratedFile>> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            inFlightJoins.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            // Kiểm tra lại: một thread khác có thể vừa hoàn thành và rời khỏi inFlight
+            cached = lookup(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                own.complete(cached);
+                return cached;
+            }
+            misses.incrementAndGet();
+            List<GeneratedFile> files = List.copyOf(loader.load());
+            store(key, files);
+            own.complete(files);
+            return files;
+        } catch (Throwable t) {
+            own.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Chỉ đọc cache, không sinh code khi miss (dùng cho đường stream để không giữ toàn bộ kết quả trên heap).
+     */
+    public List<GeneratedFile> getIfPresent(String key) {
+        List<GeneratedFile> cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return cached;
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), inFlightJoins.get(),
+                entries.size(), currentBytes, maxEntries, maxBytes);
+    }
+
+    private synchronized List<GeneratedFile> lookup(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.files();
+    }
+
+    private synchronized void store(String key, List<GeneratedFile> files) {
+        long bytes = estimateBytes(files);
+        if (bytes > maxBytes || maxEntries <= 0) {
+            // Kết quả quá lớn so với toàn bộ cache: không lưu để tránh đẩy hết các entry khác ra
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(files, bytes));
+        if (previous != null) {
+            currentBytes -= previous.bytes();
+        }
+        currentBytes += bytes;
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || currentBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().bytes();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    static long estimateBytes(List<GeneratedFile> files) {
+        long total = 0;
+        for (GeneratedFile f : files) {
+            // Ước lượng thô: 2 byte/ký tự cho path + content, cộng overhead cố định cho object
+            total += 2L * (f.path().length() + f.content().length()) + 64;
+        }
+        return total;
+    }
+
+    private static List<GeneratedFile> await(CompletableFuture<List<GeneratedFile>> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception ex) throw ex;
+            if (cause instanceof Error err) throw err;
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.dbarchitect.backend.utils;
+
+import com.google.genai.Client;
+import com.google.genai.ResponseStream;
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "gemini.client", havingValue = "google", matchIfMissing = true)
+public class GoogleGeminiClient implements GeminiClient {
+
+    private final Client client;
+
+    public GoogleGeminiClient() {
+        // Khởi tạo Client. Nó tự động lấy GOOGLE_API_KEY từ biến môi trường.
+        this.client = new Client();
+    }
+
+    @Override
+    public GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config) {
+        return client.models.generateContent(model, contents, config);
+    }
+
+    @Override
+    public ResponseChunks generateContentStream(String model, List<Content> contents, GenerateContentConfig config) {
+        ResponseStream<GenerateContentResponse> stream = client.models.generateContentStream(model, contents, config);
+        return new ResponseChunks() {
+            @Override
+            public Iterator<GenerateContentResponse> iterator() {
+                return stream.iterator();
+            }
+
+            @Override
+            public void close() {
+                stream.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package com.dbarchitect.backend.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 dùng chung cho các key nội dung (cache, phiên bản template, ETag).
+ * Mỗi nơi gọi tự chọn phần đầu (namespace) riêng, nên đổi định dạng key của một cache không ảnh hưởng nơi khác.
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /** Hash hex của các phần (UTF-8), ngăn cách bởi byte 0 để ("ab", "c") khác ("a", "bc"). */
+    public static String sha256(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    digest.update((byte) 0);
+                }
+                digest.update(parts[i].getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.dbarchitect.backend.utils;
+
+import com.dbarchitect.backend.entities.CodeChange;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * So sánh hai bộ mã Java (có thể là nhiều file nối liền) theo khai báo: class, field, method / constructor
+ * và annotation của từng khai báo. Tên được qualify theo class (vd: com.x.User.email, com.x.User.setEmail(String))
+ * nên field / method trùng tên ở các class khác nhau không đè lên nhau.
+ *
+ * Mỗi unit (một file sau khi tách theo "package") được parse đúng một lần, song song trên virtual thread,
+ * bằng JavaParser lấy từ pool (JavaParser không thread-safe, StaticJavaParser dùng cấu hình static chung).
+ * Kết quả trích xuất được cache theo SHA-256 của nội dung unit, nên khi so sánh lặp lại chỉ các file đã đổi
+ * mới phải parse. Toàn bộ lần so sánh bị giới hạn bởi compare.timeout.
+ */
+@Component
+public class JavaSourceDiff {
+
+    public static final String CLASS = "CLASS";
+    public static final String FIELD = "FIELD";
+    public static final String METHOD = "METHOD";
+    public static final String ANNOTATION = "ANNOTATION";
+
+    public record Stats(long hits, long misses, long unparseableUnits, int entries, int maxEntries) {
+    }
+
+    // Một khai báo: kind (CLASS/FIELD/METHOD), "kiểu" để so sánh (kiểu field, kiểu trả về, extends...) và annotation
+    private record Member(String kind, String signature, Set<String> annotations) {
+    }
+
+    // Các khai báo của một unit theo tên đã qualify; null members = unit không parse được
+    private record UnitSummary(Map<String, Member> members) {
+    }
+
+    private static final Pattern UNIT_BOUNDARY = Pattern.compile("(?m)(?=^\\s*package\\b)");
+
+    private final BlockingQueue<JavaParser> parsers;
+    private final Duration timeout;
+    private final int maxEntries;
+    private final PipelineMetrics metrics;
+
+    // accessOrder = true -> LRU
+    private final LinkedHashMap<String, UnitSummary> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong unparseableUnits = new AtomicLong();
+
+    public JavaSourceDiff(@Value("${compare.parallelism:0}") int parallelism,
+                          @Value("${compare.timeout:10s}") Duration timeout,
+                          @Value("${compare.cache.max-entries:512}") int maxEntries,
+                          PipelineMetrics metrics) {
+        int poolSize = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.parsers = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            parsers.add(newParser());
+        }
+        this.timeout = timeout;
+        this.maxEntries = maxEntries;
+        this.metrics = metrics;
+    }
+
+    private static JavaParser newParser() {
+        // Không cần comment để so sánh khai báo -> bỏ qua cho nhanh
+        return new JavaParser(new ParserConfiguration()
+                .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_21)
+                .setAttributeComments(false));
+    }
+
+    /**
+     * @throws TimeoutException nếu parse không xong trong compare.timeout (các unit còn lại bị hủy)
+     */
+    public List<CodeChange> diff(String oldSource, String newSource) throws TimeoutException {
+        return diff(oldSource, newSource, units -> {});
+    }
+
+    /**
+     * @param unitCount nhận tổng số unit của hai bên ngay sau khi tách, trước khi parse
+     *                  (nên vẫn được gọi khi parse bị timeout)
+     */
+    public List<CodeChange> diff(String oldSource, String newSource, IntConsumer unitCount) throws TimeoutException {
+        List<String> oldUnits = splitUnits(oldSource);
+        List<String> newUnits = splitUnits(newSource);
+        unitCount.accept(oldUnits.size() + newUnits.size());
+
+        List<String> all = new ArrayList<>(oldUnits);
+        all.addAll(newUnits);
+        // Mã so sánh do người dùng gửi lên, không biết số bảng: không gắn schema_size
+        Tags tags = metrics.tags();
+        long start = System.nanoTime();
+        String outcome = "error";
+        List<UnitSummary> summaries;
+        try {
+            summaries = summarizeAll(all);
+            outcome = "success";
+        } finally {
+            metrics.record("dbarchitect.compare.parse", tags.and("outcome", outcome), System.nanoTime() - start);
+        }
+        metrics.summary("dbarchitect.compare.units", "units", tags, all.size());
+
+        Map<String, Member> before = merge(summaries.subList(0, oldUnits.size()));
+        Map<String, Member> after = merge(summaries.subList(oldUnits.size(), summaries.size()));
+        return compare(before, after);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), unparseableUnits.get(), cache.size(), maxEntries);
+    }
+
+    // Mỗi file bắt đầu bằng "package ..."; phần trước package đầu tiên (nếu có) là một unit riêng
+    static List<String> splitUnits(String source) {
+        if (source == null || source.isBlank()) return List.of();
+        List<String> units = new ArrayList<>();
+        for (String part : UNIT_BOUNDARY.split(source)) {
+            if (!part.isBlank()) units.add(part);
+        }
+        return units;
+    }
+
+    private List<UnitSummary> summarizeAll(List<String> units) throws TimeoutException {
+        List<UnitSummary> result = new ArrayList<>(units.size());
+        List<Integer> pending = new ArrayList<>();
+        List<String> keys = new ArrayList<>(units.size());
+        for (int i = 0; i < units.size(); i++) {
+            String key = key(units.get(i));
+            keys.add(key);
+            UnitSummary cached = lookup(key);
+            result.add(cached);
+            if (cached == null) pending.add(i);
+        }
+        if (pending.isEmpty()) {
+            return result;
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        // Số unit parse đồng thời bị giới hạn bởi số JavaParser trong pool
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<UnitSummary>> futures = new ArrayList<>(pending.size());
+        try {
+            for (int index : pending) {
+                String unit = units.get(index);
+                futures.add(executor.submit(() -> summarizeWithPooledParser(unit)));
+            }
+            try {
+                for (int i = 0; i < pending.size(); i++) {
+                    long remaining = deadline - System.nanoTime();
+                    UnitSummary summary = futures.get(i).get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+                    int index = pending.get(i);
+                    result.set(index, summary);
+                    store(keys.get(index), summary);
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Không phân tích được mã Java", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TimeoutException("So sánh mã bị ngắt");
+            } catch (TimeoutException e) {
+                throw new TimeoutException("So sánh mã vượt quá " + timeout.toMillis() + "ms");
+            }
+        } finally {
+            // Không chờ các unit còn dở: parse đang chạy tự kết thúc, parser được trả về pool
+            futures.forEach(f -> f.cancel(true));
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private UnitSummary summarizeWithPooledParser(String unit) throws InterruptedException {
+        JavaParser parser = parsers.take();
+        try {
+            return summarize(parser, unit);
+        } finally {
+            parsers.add(parser);
+        }
+    }
+
+    // Parse đúng một lần; unit lỗi cú pháp bị bỏ qua (không thử lại với nội dung đã cắt bớt)
+    private UnitSummary summarize(JavaParser parser, String unit) {
+        misses.incrementAndGet();
+        ParseResult<CompilationUnit> parsed = parser.parse(unit);
+        if (!parsed.isSuccessful() || parsed.getResult().isEmpty()) {
+            unparseableUnits.incrementAndGet();
+            return new UnitSummary(null);
+        }
+        Map<String, Member> members = new LinkedHashMap<>();
+        CompilationUnit cu = parsed.getResult().get();
+        for (TypeDeclaration<?> type : cu.findAll(TypeDeclaration.class)) {
+            collect(type, members);
+        }
+        return new UnitSummary(members);
+    }
+
+    private static void collect(TypeDeclaration<?> type, Map<String, Member> members) {
+        String owner = type.getFullyQualifiedName().orElse(type.getNameAsString());
+        members.put(owner, new Member(CLASS, typeSignature(type), annotations(type)));
+
+        // Chỉ khai báo trực tiếp; class lồng nhau được findAll ở trên duyệt riêng
+        for (BodyDeclaration<?> body : type.getMembers()) {
+            if (body instanceof FieldDeclaration field) {
+                for (VariableDeclarator variable : field.getVariables()) {
+                    members.put(owner + "." + variable.getNameAsString(),
+                            new Member(FIELD, variable.getTypeAsString(), annotations(field)));
+                }
+            } else if (body instanceof MethodDeclaration method) {
+                members.put(owner + "." + callableName(method),
+                        new Member(METHOD, method.getTypeAsString(), annotations(method)));
+            } else if (body instanceof ConstructorDeclaration constructor) {
+                members.put(owner + "." + callableName(constructor),
+                        new Member(METHOD, "constructor", annotations(constructor)));
+            }
+        }
+    }
+
+    // "save(User, boolean)": overload phân biệt theo kiểu tham số
+    private static String callableName(CallableDeclaration<?> callable) {
+        List<String> params = new ArrayList<>();
+        for (Parameter parameter : callable.getParameters()) {
+            params.add(parameter.getTypeAsString() + (parameter.isVarArgs() ? "..." : ""));
+        }
+        return callable.getNameAsString() + "(" + String.join(", ", params) + ")";
+    }
+
+    private static String typeSignature(TypeDeclaration<?> type) {
+        String kind = type.isClassOrInterfaceDeclaration()
+                ? (type.asClassOrInterfaceDeclaration().isInterface() ? "interface" : "class")
+                : type.isEnumDeclaration() ? "enum" : type.isRecordDeclaration() ? "record" : "type";
+        if (type.isClassOrInterfaceDeclaration()) {
+            var declaration = type.asClassOrInterfaceDeclaration();
+            if (declaration.getExtendedTypes().isNonEmpty()) kind += " extends " + declaration.getExtendedTypes();
+            if (declaration.getImplementedTypes().isNonEmpty()) kind += " implements " + declaration.getImplementedTypes();
+        }
+        return kind;
+    }
+
+    private static Set<String> annotations(BodyDeclaration<?> declaration) {
+        Set<String> result = new LinkedHashSet<>();
+        for (AnnotationExpr annotation : declaration.getAnnotations()) {
+            result.add(annotation.toString().replaceAll("\\s+", " "));
+        }
+        return result;
+    }
+
+    private static Map<String, Member> merge(List<UnitSummary> summaries) {
+        Map<String, Member> members = new LinkedHashMap<>();
+        for (UnitSummary summary : summaries) {
+            if (summary.members() != null) members.putAll(summary.members());
+        }
+        return members;
+    }
+
+    private static List<CodeChange> compare(Map<String, Member> before, Map<String, Member> after) {
+        List<CodeChange> changes = new ArrayList<>();
+        after.forEach((name, member) -> {
+            Member old = before.get(name);
+            if (old == null) {
+                changes.add(new CodeChange(name, member.kind(), "ADDED", addedDetail(member)));
+                return;
+            }
+            if (!old.signature().equals(member.signature())) {
+                changes.add(new CodeChange(name, member.kind(), "MODIFIED",
+                        "Đổi từ " + old.signature() + " sang " + member.signature()));
+            }
+            for (String annotation : member.annotations()) {
+                if (!old.annotations().contains(annotation)) {
+                    changes.add(new CodeChange(name, ANNOTATION, "ADDED", annotation));
+                }
+            }
+            for (String annotation : old.annotations()) {
+                if (!member.annotations().contains(annotation)) {
+                    changes.add(new CodeChange(name, ANNOTATION, "REMOVED", annotation));
+                }
+            }
+        });
+        before.forEach((name, member) -> {
+            if (!after.containsKey(name)) {
+                changes.add(new CodeChange(name, member.kind(), "REMOVED", removedDetail(member)));
+            }
+        });
+        return changes;
+    }
+
+    private static String addedDetail(Member member) {
+        return switch (member.kind()) {
+            case FIELD -> "Kiểu dữ liệu: " + member.signature();
+            case METHOD -> "Kiểu trả về: " + member.signature();
+            default -> member.signature();
+        };
+    }
+
+    private static String removedDetail(Member member) {
+        return switch (member.kind()) {
+            case FIELD -> "Đã xóa thuộc tính này";
+            case METHOD -> "Đã xóa phương thức này";
+            default -> "Đã xóa " + member.signature();
+        };
+    }
+
+    private synchronized UnitSummary lookup(String key) {
+        UnitSummary cached = cache.get(key);
+        if (cached != null) hits.incrementAndGet();
+        return cached;
+    }
+
+    private synchronized void store(String key, UnitSummary summary) {
+        if (maxEntries <= 0) return;
+        cache.put(key, summary);
+        var it = cache.entrySet().iterator();
+        while (cache.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static String key(String unit) {
+        return Hashing.sha256(unit);
+    }
+}
@@ -0,0 +1,89 @@
+package com.dbarchitect.backend.utils;
+
+import com.wn.dbml.compiler.DbmlParser;
+import com.wn.dbml.model.Database;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache các Database đã parse theo hash SHA-256 của DBML sạch. Database chỉ phụ thuộc vào nội dung DBML,
+ * nên hai lần cập nhật đồng thời của cùng một project (hay hai project cùng DBML) không thể ghi nhầm
+ * Database của nhau vào cache; entry cũ chỉ bị đẩy ra theo LRU.
+ * Database chỉ được đọc sau khi parse (render, so sánh schema) nên dùng chung giữa các thread được.
+ */
+@Component
+public class ParsedSchemaCache {
+
+    public record Stats(long hits, long misses, long evictions, int entries, int maxEntries) {
+    }
+
+    private final int maxEntries;
+    private final PipelineMetrics metrics;
+    private final LinkedHashMap<String, Database> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ParsedSchemaCache(@Value("${dbml.schema-cache.max-entries:128}") int maxEntries, PipelineMetrics metrics) {
+        this.maxEntries = maxEntries;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Database của cleanDbml; parse nếu chưa có trong cache.
+     * Hai thread cùng miss có thể parse hai lần, nhưng kết quả như nhau nên không cần single-flight.
+     */
+    public Database get(String cleanDbml) throws Exception {
+        String key = key(cleanDbml);
+        synchronized (this) {
+            Database cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        long start = System.nanoTime();
+        Database db;
+        try {
+            db = DbmlParser.parse(cleanDbml);
+        } catch (Exception e) {
+            metrics.record("dbarchitect.dbml.parse", metrics.tagsUnknownSize().and("stage", "schema-cache").and("outcome", "error"),
+                    System.nanoTime() - start);
+            throw e;
+        }
+        metrics.record("dbarchitect.dbml.parse",
+                metrics.tags(db.getSchema("public").getTables().size()).and("stage", "schema-cache").and("outcome", "success"),
+                System.nanoTime() - start);
+        store(key, db);
+        return db;
+    }
+
+    /** Lưu Database vừa parse từ cleanDbml (vd: khi lưu DBML mới của project). */
+    public void put(String cleanDbml, Database db) {
+        store(key(cleanDbml), db);
+    }
+
+    private synchronized void store(String key, Database db) {
+        if (maxEntries <= 0) return;
+        entries.put(key, db);
+        var it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String key(String cleanDbml) {
+        return Hashing.sha256("parsed-schema", cleanDbml);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), entries.size(), maxEntries);
+    }
+}
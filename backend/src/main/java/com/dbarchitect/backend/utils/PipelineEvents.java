@@ -0,0 +1,137 @@
+package com.dbarchitect.backend.utils;
+
+import com.google.genai.types.GenerateContentResponse;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event Java Flight Recorder cho các bước của pipeline, để biết một request chậm tốn thời gian ở đâu
+ * (parse, render, nén ZIP, dựng cây, gọi Gemini) khi đặt cạnh các event GC / CPU có sẵn của JDK.
+ *
+ * Khi không có recording nào bật các event này thì begin()/commit() gần như không tốn gì;
+ * các giá trị tốn công tính (vd: tổng số byte) chỉ được tính khi {@code isEnabled()}.
+ * Bật recording qua /admin/jfr (FlightRecorderService) hoặc -XX:StartFlightRecording.
+ */
+public final class PipelineEvents {
+
+    private PipelineEvents() {
+    }
+
+    @Name("com.dbarchitect.PipelineStage")
+    @Label("Pipeline Stage")
+    @Description("Một bước sinh code / preview / so sánh mã")
+    @Category({"DB Architect", "Pipeline"})
+    @StackTrace(false)
+    public static class StageEvent extends Event {
+        @Label("Stage")
+        @Description("codegen.schema, codegen.table, codegen.render, codegen.zip, tree.build, tree.unzip, compare")
+        public String stage;
+
+        @Label("Project ID")
+        @Description("0 nếu không gắn với project nào (vd: tree.*, sinh code từ DBML gửi trực tiếp)")
+        public long projectId;
+
+        @Label("Table Count")
+        @Description("0 nếu không biết số bảng (vd: compare, mã do người dùng gửi lên)")
+        public int tableCount;
+
+        @Label("File Count")
+        public int fileCount;
+
+        @Label("Bytes")
+        @Description("Số byte sinh ra (UTF-8; codegen.zip: sau nén; tree.unzip: kích thước ZIP đầu vào)")
+        @DataAmount
+        public long bytes;
+
+        /** Bắt đầu đo một bước; kết thúc bằng {@link #finish}. */
+        public static StageEvent begin(String stage, Long projectId) {
+            StageEvent event = new StageEvent();
+            event.begin();
+            event.stage = stage;
+            event.projectId = projectId == null ? 0 : projectId;
+            return event;
+        }
+
+        public void finish(int tableCount, int fileCount, long bytes) {
+            end();
+            if (shouldCommit()) {
+                this.tableCount = tableCount;
+                this.fileCount = fileCount;
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+
+    @Name("com.dbarchitect.GeminiCall")
+    @Label("Gemini Call")
+    @Description("Một lời gọi Gemini (mỗi model / mỗi lần thử là một event)")
+    @Category({"DB Architect", "LLM"})
+    @StackTrace(false)
+    public static class GeminiCallEvent extends Event {
+        @Label("Model")
+        public String model;
+
+        @Label("Operation")
+        @Description("generate, stream, plan, fragment")
+        public String operation;
+
+        @Label("Outcome")
+        @Description("success hoặc tên exception")
+        public String outcome;
+
+        @Label("Prompt Tokens")
+        public int promptTokens;
+
+        @Label("Output Tokens")
+        public int outputTokens;
+
+        @Label("Output Size")
+        @Description("Số ký tự text nhận được")
+        public long outputChars;
+
+        public static GeminiCallEvent begin(String model, String operation) {
+            GeminiCallEvent event = new GeminiCallEvent();
+            event.begin();
+            event.model = model;
+            event.operation = operation;
+            return event;
+        }
+
+        /**
+         * @param response null nếu lời gọi lỗi; với stream là đoạn cuối (chứa usage của cả lời gọi)
+         * @param text text đã nhận (stream); null -> lấy từ response
+         */
+        public void finish(GenerateContentResponse response, CharSequence text, Throwable error) {
+            end();
+            if (shouldCommit()) {
+                outcome = error == null ? "success" : error.getClass().getSimpleName();
+                if (text == null && response != null) {
+                    text = response.text();
+                }
+                outputChars = text == null ? 0 : text.length();
+                if (response != null) {
+                    response.usageMetadata().ifPresent(usage -> {
+                        promptTokens = usage.promptTokenCount().orElse(0);
+                        outputTokens = usage.candidatesTokenCount().orElse(0);
+                    });
+                }
+                commit();
+            }
+        }
+    }
+
+    // Số byte UTF-8 của các file; chỉ gọi khi event đang được ghi
+    static long utf8Bytes(Iterable<GeneratedFile> files) {
+        long total = 0;
+        for (GeneratedFile file : files) {
+            total += ProjectTreeBuilder.utf8Length(file.content());
+        }
+        return total;
+    }
+}
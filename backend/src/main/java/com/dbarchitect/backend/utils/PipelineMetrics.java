@@ -0,0 +1,108 @@
+package com.dbarchitect.backend.utils;
+
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metric Micrometer cho từng bước của pipeline (Gemini -> DBML -> sinh code -> ZIP / preview / so sánh),
+ * xuất ra Prometheus qua /actuator/prometheus. Tên metric bắt đầu bằng "dbarchitect.".
+ *
+ * Tag chung: endpoint (pattern của request đang xử lý, vd "GET /projects/{id}"; "none" cho job nền)
+ * và schema_size (nhóm theo số bảng, để số series không tăng theo từng schema; chỉ gắn khi biết số bảng thật,
+ * bước đo cả trường hợp chưa biết số bảng - vd: parse lỗi - dùng nhóm "unknown" để giữ nguyên bộ tag key).
+ * Một tên metric luôn đi với cùng một bộ tag key, nếu không Prometheus sẽ bỏ các series lệch.
+ * Các bước chạy trên thread khác thread request (render song song) phải lấy tags() trước trên thread request.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String UNKNOWN_SIZE = "unknown";
+
+    private final MeterRegistry registry;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public static String sizeBucket(int tables) {
+        if (tables <= 10) return "1-10";
+        if (tables <= 50) return "11-50";
+        if (tables <= 200) return "51-200";
+        if (tables <= 1000) return "201-1000";
+        return "1000+";
+    }
+
+    // Pattern của handler đang xử lý request trên thread hiện tại
+    public static String currentEndpoint() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servlet) {
+            HttpServletRequest request = servlet.getRequest();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                return request.getMethod() + " " + pattern;
+            }
+        }
+        return "none";
+    }
+
+    public Tags tags() {
+        return Tags.of("endpoint", currentEndpoint());
+    }
+
+    public Tags tags(int tables) {
+        return tags().and("schema_size", sizeBucket(tables));
+    }
+
+    // Như tags(int) khi không biết số bảng (vd: DBML không parse được)
+    public Tags tagsUnknownSize() {
+        return tags().and("schema_size", UNKNOWN_SIZE);
+    }
+
+    public void record(String name, Tags tags, long nanos) {
+        Timer.builder(name).tags(tags).register(registry).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void summary(String name, String baseUnit, Tags tags, double amount) {
+        DistributionSummary.builder(name).baseUnit(baseUnit).tags(tags).register(registry).record(amount);
+    }
+
+    public void count(String name, Tags tags, double amount) {
+        Counter.builder(name).tags(tags).register(registry).increment(amount);
+    }
+
+    /**
+     * Một lời gọi Gemini: độ trễ theo model / loại lời gọi / kết quả, số token (prompt, output, tổng)
+     * và số lỗi theo loại exception.
+     * @param base tags() lấy trên thread request (lời gọi Gemini chạy trên thread của GeminiResilience)
+     * @param response null nếu lời gọi lỗi; với stream là response cuối (chứa usage của cả lời gọi)
+     */
+    public void geminiCall(Tags base, String model, String operation, long nanos,
+                           GenerateContentResponse response, Throwable error) {
+        Tags tags = base.and("model", model, "operation", operation);
+        record("dbarchitect.gemini.requests", tags.and("outcome", error == null ? "success" : "error"), nanos);
+        if (error != null) {
+            count("dbarchitect.gemini.errors", tags.and("error", error.getClass().getSimpleName()), 1);
+            return;
+        }
+        Optional<GenerateContentResponseUsageMetadata> usage = response == null ? Optional.empty() : response.usageMetadata();
+        usage.ifPresent(u -> {
+            u.promptTokenCount().ifPresent(n -> count("dbarchitect.gemini.tokens", tags.and("type", "prompt"), n));
+            u.candidatesTokenCount().ifPresent(n -> count("dbarchitect.gemini.tokens", tags.and("type", "output"), n));
+            u.totalTokenCount().ifPresent(n -> count("dbarchitect.gemini.tokens", tags.and("type", "total"), n));
+        });
+    }
+}
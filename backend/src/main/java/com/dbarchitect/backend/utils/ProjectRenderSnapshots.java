@@ -0,0 +1,117 @@
+package com.dbarchitect.backend.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lưu kết quả render lần gần nhất của từng project, theo từng bảng: data model đã dùng và các file sinh ra.
+ * Khi DBML của project bị sửa, CodeGenerator so sánh model mới của mỗi bảng với model cũ;
+ * bảng nào có model không đổi thì dùng lại file cũ, chỉ render lại các bảng thực sự thay đổi.
+ * Model chứa cả Ref đi ra lẫn Ref đi vào, nên thêm/xóa một Ref sẽ làm cả hai bảng hai đầu được render lại.
+ *
+ * Giới hạn theo số project và tổng số byte ước tính (LRU, cùng cách tính byte với GeneratedSourceCache)
+ * để không giữ output của mọi project trên heap: vài schema hàng nghìn bảng có thể chiếm hàng trăm MB.
+ */
+@Component
+public class ProjectRenderSnapshots {
+
+    public record RenderedTable(TableModel model, List<GeneratedFile> files) {
+    }
+
+    private record Snapshot(String templateVersion, Map<String, RenderedTable> tables, long bytes) {
+    }
+
+    public record Stats(long reusedTables, long renderedTables, long evictions, int projects, int maxProjects,
+                        long estimatedBytes, long maxBytes) {
+    }
+
+    private final int maxProjects;
+    private final long maxBytes;
+    // accessOrder = true -> LRU
+    private final LinkedHashMap<Long, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong reusedTables = new AtomicLong();
+    private final AtomicLong renderedTables = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ProjectRenderSnapshots(@Value("${codegen.incremental.max-projects:32}") int maxProjects,
+                                  @Value("${codegen.incremental.max-bytes:67108864}") long maxBytes) {
+        this.maxProjects = maxProjects;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Các bảng đã render lần trước của project (key: tên bảng), rỗng nếu chưa có hoặc bộ template đã đổi.
+     */
+    public synchronized Map<String, RenderedTable> previousTables(Long projectId, String templateVersion) {
+        if (projectId == null) {
+            return Collections.emptyMap();
+        }
+        Snapshot snapshot = snapshots.get(projectId);
+        if (snapshot == null || !snapshot.templateVersion().equals(templateVersion)) {
+            return Collections.emptyMap();
+        }
+        return snapshot.tables();
+    }
+
+    public synchronized void store(Long projectId, String templateVersion, Map<String, RenderedTable> tables) {
+        if (projectId == null || maxProjects <= 0) {
+            return;
+        }
+        List<GeneratedFile> files = new ArrayList<>();
+        for (RenderedTable table : tables.values()) {
+            files.addAll(table.files());
+        }
+        long bytes = GeneratedSourceCache.estimateBytes(files);
+        if (bytes > maxBytes) {
+            // Một project lớn hơn cả giới hạn: không giữ, và bỏ snapshot cũ (đã lỗi thời) của project này
+            evict(projectId);
+            return;
+        }
+        Snapshot previous = snapshots.put(projectId, new Snapshot(templateVersion, Collections.unmodifiableMap(tables), bytes));
+        if (previous != null) {
+            currentBytes -= previous.bytes();
+        }
+        currentBytes += bytes;
+
+        Iterator<Map.Entry<Long, Snapshot>> it = snapshots.entrySet().iterator();
+        while ((snapshots.size() > maxProjects || currentBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<Long, Snapshot> eldest = it.next();
+            if (eldest.getKey().equals(projectId)) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().bytes();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized void evict(Long projectId) {
+        Snapshot removed = snapshots.remove(projectId);
+        if (removed != null) {
+            currentBytes -= removed.bytes();
+        }
+    }
+
+    void recordReused() {
+        reusedTables.incrementAndGet();
+    }
+
+    void recordRendered() {
+        renderedTables.incrementAndGet();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(reusedTables.get(), renderedTables.get(), evictions.get(), snapshots.size(), maxProjects,
+                currentBytes, maxBytes);
+    }
+}
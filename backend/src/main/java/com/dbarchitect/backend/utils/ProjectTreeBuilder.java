@@ -12,37 +12,54 @@ import java.util.zip.ZipInputStream;
 
 public class ProjectTreeBuilder {
 
+    /**
+     * Dựng cây thư mục từ danh sách file phẳng (path tương đối so với gốc project), tuyến tính theo số file.
+     * Cần sắp xếp hoặc lấy cây con thì dùng {@link FileTree#build} trực tiếp.
+     */
     public static FileNode buildTree(List<FileNode> flatFiles, String projectName) {
-        // Tạo node gốc cho dự án
-        FileNode root = new FileNode(projectName, "folder", projectName);
-
-        for (FileNode file : flatFiles) {
-            String[] parts = file.getPath().split("/");
-            FileNode currentNode = root;
-            StringBuilder currentPath = new StringBuilder(projectName);
+        return FileTree.build(flatFiles, projectName).root();
+    }
 
-            // Duyệt qua từng cấp thư mục trong đường dẫn
-            for (int i = 0; i < parts.length; i++) {
-                String part = parts[i];
-                currentPath.append("/").append(part);
+    /**
+     * Build a file tree straight from generated files (no ZIP round trip).
+     * Each file path is prefixed with basePath, e.g. "src/main/java/com/example/demo/".
+     */
+    public static FileNode buildTreeFromGeneratedFiles(List<GeneratedFile> files, String basePath, String projectName) {
+        return buildTreeFromGeneratedFiles(files, basePath, projectName, true);
+    }
 
-                // Kiểm tra xem node con đã tồn tại chưa
-                FileNode nextNode = findChild(currentNode, part);
+    /**
+     * Same as above; with includeContent = false only the skeleton (name, path, language, size) is built
+     * and file contents are fetched later one by one.
+     */
+    public static FileNode buildTreeFromGeneratedFiles(List<GeneratedFile> files, String basePath, String projectName,
+                                                       boolean includeContent) {
+        return indexTreeFromGeneratedFiles(files, basePath, projectName, includeContent).root();
+    }
 
-                if (nextNode == null) {
-                    if (i == parts.length - 1) {
-                        // Nếu là phần cuối cùng, đây là File
-                        nextNode = file;
-                    } else {
-                        // Nếu chưa phải cuối, đây là Folder trung gian
-                        nextNode = new FileNode(part, "folder", currentPath.toString());
-                    }
-                    currentNode.getChildren().add(nextNode);
-                }
-                currentNode = nextNode;
+    /**
+     * Same as above but returns the indexed tree, for sorted output or subtree queries (e.g. just "controller/").
+     */
+    public static FileTree indexTreeFromGeneratedFiles(List<GeneratedFile> files, String basePath, String projectName,
+                                                       boolean includeContent) {
+        PipelineEvents.StageEvent event = PipelineEvents.StageEvent.begin("tree.build", null);
+        long totalBytes = 0;
+        List<FileNode> flatFiles = new ArrayList<>(files.size());
+        for (GeneratedFile file : files) {
+            String path = basePath + file.path();
+            String fileName = path.substring(path.lastIndexOf('/') + 1);
+            FileNode fileNode = new FileNode(fileName, "file", path);
+            if (includeContent) {
+                fileNode.setContent(file.content());
             }
+            fileNode.setSize(utf8Length(file.content()));
+            fileNode.setLanguage(detectLanguage(fileName));
+            flatFiles.add(fileNode);
+            totalBytes += fileNode.getSize();
         }
-        return root;
+        FileTree tree = FileTree.build(flatFiles, projectName);
+        event.finish(0, flatFiles.size(), totalBytes);
+        return tree;
     }
 
     /**
@@ -51,6 +68,7 @@ public class ProjectTreeBuilder {
      * delegates to buildTree to produce the folder structure.
      */
     public static FileNode buildTreeFromZip(byte[] zipBytes, String projectName) throws IOException {
+        PipelineEvents.StageEvent event = PipelineEvents.StageEvent.begin("tree.unzip", null);
         List<FileNode> flatFiles = new ArrayList<>();
 
         try (ByteArrayInputStream bais = new ByteArrayInputStream(zipBytes);
@@ -81,23 +99,41 @@ public class ProjectTreeBuilder {
             }
         }
 
-        return buildTree(flatFiles, projectName);
+        FileNode root = buildTree(flatFiles, projectName);
+        event.finish(0, flatFiles.size(), zipBytes.length);
+        return root;
     }
 
-    private static String detectLanguage(String fileName) {
-        String lower = fileName.toLowerCase();
-        if (lower.endsWith(".java")) return "java";
-        if (lower.endsWith(".xml")) return "xml";
-        if (lower.endsWith(".sql")) return "sql";
-        if (lower.endsWith(".yml") || lower.endsWith(".yaml")) return "yaml";
-        if (lower.endsWith(".json")) return "json";
+    public static String detectLanguage(String fileName) {
+        // So khớp đuôi không phân biệt hoa thường mà không tạo chuỗi lowercase cho mỗi file
+        if (endsWithIgnoreCase(fileName, ".java")) return "java";
+        if (endsWithIgnoreCase(fileName, ".xml")) return "xml";
+        if (endsWithIgnoreCase(fileName, ".sql")) return "sql";
+        if (endsWithIgnoreCase(fileName, ".yml") || endsWithIgnoreCase(fileName, ".yaml")) return "yaml";
+        if (endsWithIgnoreCase(fileName, ".json")) return "json";
         return "text";
     }
 
-    private static FileNode findChild(FileNode parent, String name) {
-        return parent.getChildren().stream()
-                .filter(node -> node.getName().equals(name))
-                .findFirst()
-                .orElse(null);
+    private static boolean endsWithIgnoreCase(String s, String suffix) {
+        return s.regionMatches(true, s.length() - suffix.length(), suffix, 0, suffix.length());
+    }
+
+    // Số byte UTF-8 của chuỗi mà không cần cấp phát mảng byte
+    public static long utf8Length(String s) {
+        long length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
     }
 }
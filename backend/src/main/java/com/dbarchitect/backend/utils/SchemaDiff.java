@@ -0,0 +1,151 @@
+package com.dbarchitect.backend.utils;
+
+import com.dbarchitect.backend.entities.CodeChange;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * So sánh cấu trúc hai SchemaSnapshot: bảng, cột (kiểu, setting), index và ref được thêm / bỏ / sửa.
+ * Mỗi phía được duyệt một lần qua map theo tên nên chi phí tuyến tính theo kích thước schema,
+ * không cần sinh hay parse mã Java. Kết quả dùng cùng dạng CodeChange với /compare để frontend hiển thị chung.
+ * Đổi tên được báo là một lần bỏ và một lần thêm.
+ */
+public final class SchemaDiff {
+
+    public static final String TABLE = "TABLE";
+    public static final String COLUMN = "COLUMN";
+    public static final String INDEX = "INDEX";
+    public static final String REF = "REF";
+
+    private SchemaDiff() {
+    }
+
+    public static List<CodeChange> diff(SchemaSnapshot oldSchema, SchemaSnapshot newSchema) {
+        List<CodeChange> changes = new ArrayList<>();
+        Map<String, SchemaSnapshot.TableSnapshot> oldTables = tablesByKey(oldSchema);
+        Map<String, SchemaSnapshot.TableSnapshot> newTables = tablesByKey(newSchema);
+
+        for (Map.Entry<String, SchemaSnapshot.TableSnapshot> entry : newTables.entrySet()) {
+            SchemaSnapshot.TableSnapshot newTable = entry.getValue();
+            SchemaSnapshot.TableSnapshot oldTable = oldTables.get(entry.getKey());
+            if (oldTable == null) {
+                changes.add(new CodeChange(newTable.name(), TABLE, "ADDED", newTable.columns().size() + " cột"));
+                continue;
+            }
+            diffColumns(oldTable, newTable, changes);
+            diffIndexes(oldTable, newTable, changes);
+        }
+        for (Map.Entry<String, SchemaSnapshot.TableSnapshot> entry : oldTables.entrySet()) {
+            if (!newTables.containsKey(entry.getKey())) {
+                changes.add(new CodeChange(entry.getValue().name(), TABLE, "REMOVED", ""));
+            }
+        }
+
+        Set<String> oldRefs = refKeys(oldSchema);
+        Set<String> newRefs = refKeys(newSchema);
+        for (String ref : newRefs) {
+            if (!oldRefs.contains(ref)) changes.add(new CodeChange(ref, REF, "ADDED", ""));
+        }
+        for (String ref : oldRefs) {
+            if (!newRefs.contains(ref)) changes.add(new CodeChange(ref, REF, "REMOVED", ""));
+        }
+        return changes;
+    }
+
+    private static void diffColumns(SchemaSnapshot.TableSnapshot oldTable, SchemaSnapshot.TableSnapshot newTable,
+                                    List<CodeChange> changes) {
+        Map<String, SchemaSnapshot.ColumnSnapshot> oldColumns = new LinkedHashMap<>();
+        for (SchemaSnapshot.ColumnSnapshot column : oldTable.columns()) {
+            oldColumns.put(column.name(), column);
+        }
+        Set<String> seen = new LinkedHashSet<>();
+        for (SchemaSnapshot.ColumnSnapshot column : newTable.columns()) {
+            seen.add(column.name());
+            String element = newTable.name() + "." + column.name();
+            SchemaSnapshot.ColumnSnapshot old = oldColumns.get(column.name());
+            if (old == null) {
+                changes.add(new CodeChange(element, COLUMN, "ADDED", describe(column)));
+                continue;
+            }
+            List<String> details = new ArrayList<>();
+            if (!Objects.equals(old.type(), column.type())) {
+                details.add("kiểu: " + old.type() + " -> " + column.type());
+            }
+            diffSettings(old.settings(), column.settings(), details);
+            if (!details.isEmpty()) {
+                changes.add(new CodeChange(element, COLUMN, "MODIFIED", String.join("; ", details)));
+            }
+        }
+        for (SchemaSnapshot.ColumnSnapshot column : oldTable.columns()) {
+            if (!seen.contains(column.name())) {
+                changes.add(new CodeChange(newTable.name() + "." + column.name(), COLUMN, "REMOVED", describe(column)));
+            }
+        }
+    }
+
+    private static void diffSettings(Map<String, String> oldSettings, Map<String, String> newSettings, List<String> details) {
+        Set<String> names = new TreeSet<>(oldSettings.keySet());
+        names.addAll(newSettings.keySet());
+        for (String name : names) {
+            String before = oldSettings.get(name);
+            String after = newSettings.get(name);
+            if (before == null) {
+                details.add("+" + setting(name, after));
+            } else if (after == null) {
+                details.add("-" + setting(name, before));
+            } else if (!before.equals(after)) {
+                details.add(name + ": " + before + " -> " + after);
+            }
+        }
+    }
+
+    private static void diffIndexes(SchemaSnapshot.TableSnapshot oldTable, SchemaSnapshot.TableSnapshot newTable,
+                                    List<CodeChange> changes) {
+        Set<String> oldIndexes = new LinkedHashSet<>(oldTable.indexes() == null ? List.of() : oldTable.indexes());
+        Set<String> newIndexes = new LinkedHashSet<>(newTable.indexes() == null ? List.of() : newTable.indexes());
+        for (String index : newIndexes) {
+            if (!oldIndexes.contains(index)) changes.add(new CodeChange(newTable.name(), INDEX, "ADDED", index));
+        }
+        for (String index : oldIndexes) {
+            if (!newIndexes.contains(index)) changes.add(new CodeChange(newTable.name(), INDEX, "REMOVED", index));
+        }
+    }
+
+    private static Map<String, SchemaSnapshot.TableSnapshot> tablesByKey(SchemaSnapshot schema) {
+        Map<String, SchemaSnapshot.TableSnapshot> tables = new LinkedHashMap<>();
+        for (SchemaSnapshot.TableSnapshot table : schema.tables()) {
+            tables.put(table.schema() + "." + table.name(), table);
+        }
+        return tables;
+    }
+
+    // "Post.(user_id) > User.(id)": ref được so sánh theo hai đầu và loại quan hệ
+    private static Set<String> refKeys(SchemaSnapshot schema) {
+        Set<String> refs = new LinkedHashSet<>();
+        for (SchemaSnapshot.RefSnapshot ref : schema.refs()) {
+            refs.add(ref.fromTable() + ".(" + String.join(", ", ref.fromColumns()) + ") " + ref.relation()
+                    + " " + ref.toTable() + ".(" + String.join(", ", ref.toColumns()) + ")");
+        }
+        return refs;
+    }
+
+    private static String describe(SchemaSnapshot.ColumnSnapshot column) {
+        if (column.settings().isEmpty()) {
+            return column.type();
+        }
+        List<String> settings = new ArrayList<>();
+        column.settings().forEach((name, value) -> settings.add(setting(name, value)));
+        return column.type() + " [" + String.join(", ", settings) + "]";
+    }
+
+    private static String setting(String name, String value) {
+        return value == null || value.isEmpty() ? name : name + ": " + value;
+    }
+}
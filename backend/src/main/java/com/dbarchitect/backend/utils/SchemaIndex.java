@@ -0,0 +1,49 @@
+package com.dbarchitect.backend.utils;
+
+import com.wn.dbml.model.Database;
+import com.wn.dbml.model.Relationship;
+import com.wn.dbml.model.Table;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chỉ mục quan hệ của một Database, dựng một lần sau khi parse.
+ * Với mỗi bảng (theo tên) lưu các Ref đi ra (bảng chứa khóa ngoại) và các Ref đi vào
+ * (bảng được tham chiếu), giữ nguyên thứ tự khai báo trong DBML.
+ * Nhờ vậy việc chuẩn bị data model cho một bảng chỉ tốn O(số cột + số Ref của chính bảng đó)
+ * thay vì duyệt toàn bộ db.getRelationships() cho từng bảng.
+ */
+public final class SchemaIndex {
+
+    private final Map<String, List<Relationship>> outgoing = new HashMap<>();
+    private final Map<String, List<Relationship>> incoming = new HashMap<>();
+
+    private SchemaIndex() {
+    }
+
+    public static SchemaIndex of(Database db) {
+        SchemaIndex index = new SchemaIndex();
+        for (Relationship rel : db.getRelationships()) {
+            // Giả định quan hệ đơn cột, giống logic sinh code
+            String fromTable = rel.getFrom().get(0).getTable().getName();
+            String toTable = rel.getTo().get(0).getTable().getName();
+            index.outgoing.computeIfAbsent(fromTable, k -> new ArrayList<>()).add(rel);
+            index.incoming.computeIfAbsent(toTable, k -> new ArrayList<>()).add(rel);
+        }
+        return index;
+    }
+
+    /** Các Ref mà bảng này chứa khóa ngoại (Many-to-One). */
+    public List<Relationship> outgoing(Table table) {
+        return outgoing.getOrDefault(table.getName(), Collections.emptyList());
+    }
+
+    /** Các Ref từ bảng khác trỏ tới bảng này (One-to-Many). */
+    public List<Relationship> incoming(Table table) {
+        return incoming.getOrDefault(table.getName(), Collections.emptyList());
+    }
+}
@@ -0,0 +1,115 @@
+package com.dbarchitect.backend.utils;
+
+import com.wn.dbml.model.Column;
+import com.wn.dbml.model.Database;
+import com.wn.dbml.model.Relationship;
+import com.wn.dbml.model.Schema;
+import com.wn.dbml.model.Table;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bản tóm tắt đã chuẩn hóa của schema (bảng, cột, kiểu, setting, index, ref), tính một lần khi project được lưu
+ * và lưu dạng JSON cạnh DesignProject. Các phép so sánh / thống kê schema đọc bản này thay vì parse lại DBML.
+ * Thứ tự bảng và cột giữ nguyên như trong DBML; setting được sắp xếp theo tên để JSON ổn định.
+ */
+public record SchemaSnapshot(List<TableSnapshot> tables, List<RefSnapshot> refs) {
+
+    // indexes: các dòng trong khối indexes { } đã chuẩn hóa khoảng trắng; null với snapshot lưu trước khi có trường này
+    public record TableSnapshot(String schema, String name, List<ColumnSnapshot> columns, List<String> indexes) {
+    }
+
+    public record ColumnSnapshot(String name, String type, Map<String, String> settings) {
+    }
+
+    public record RefSnapshot(String fromTable, List<String> fromColumns, String relation,
+                              String toTable, List<String> toColumns) {
+    }
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+    private static final Pattern INDEXES_BLOCK = Pattern.compile("(?i)\\bindexes\\s*\\{");
+
+    /**
+     * @param cleanDbml DBML đã parse ra db; index được đọc từ text của từng khối Table
+     */
+    public static SchemaSnapshot of(Database db, String cleanDbml) {
+        Map<String, List<String>> indexes = indexDefinitions(cleanDbml);
+        List<TableSnapshot> tables = new ArrayList<>();
+        for (Schema schema : db.getSchemas()) {
+            for (Table table : schema.getTables()) {
+                List<ColumnSnapshot> columns = new ArrayList<>();
+                for (Column column : table.getColumns()) {
+                    Map<String, String> settings = new TreeMap<>();
+                    column.getSettings().forEach((setting, value) ->
+                            settings.put(setting.name().toLowerCase(), value == null ? "" : value));
+                    columns.add(new ColumnSnapshot(column.getName(), column.getType(), settings));
+                }
+                tables.add(new TableSnapshot(schema.getName(), table.getName(), columns,
+                        indexes.getOrDefault(table.getName(), List.of())));
+            }
+        }
+
+        List<RefSnapshot> refs = new ArrayList<>();
+        for (Relationship rel : db.getRelationships()) {
+            if (rel.getFrom().isEmpty() || rel.getTo().isEmpty()) continue;
+            refs.add(new RefSnapshot(
+                    rel.getFrom().get(0).getTable().getName(), columnNames(rel.getFrom()),
+                    String.valueOf(rel.getRelation()),
+                    rel.getTo().get(0).getTable().getName(), columnNames(rel.getTo())));
+        }
+        return new SchemaSnapshot(tables, refs);
+    }
+
+    public String toJson() {
+        return JSON.writeValueAsString(this);
+    }
+
+    public static SchemaSnapshot fromJson(String json) {
+        return JSON.readValue(json, SchemaSnapshot.class);
+    }
+
+    // Snapshot cũ (trước khi có index) cần tính lại trước khi so sánh
+    public boolean hasIndexes() {
+        return tables.stream().allMatch(table -> table.indexes() != null);
+    }
+
+    // Tên bảng -> các định nghĩa index trong khối indexes { } của bảng đó
+    private static Map<String, List<String>> indexDefinitions(String cleanDbml) {
+        Map<String, List<String>> result = new HashMap<>();
+        new DbmlTableStreamParser((tableName, block) -> {
+            int start = indexesBlockStart(block);
+            if (start == -1) return;
+            int end = block.indexOf('}', start);
+            List<String> definitions = new ArrayList<>();
+            for (String line : block.substring(start, end == -1 ? block.length() : end).split("\n")) {
+                String definition = line.strip();
+                int comment = definition.indexOf("//");
+                if (comment != -1) definition = definition.substring(0, comment).strip();
+                if (!definition.isEmpty()) definitions.add(definition.replaceAll("\\s+", " "));
+            }
+            result.put(tableName, definitions);
+        }).feed(cleanDbml);
+        return result;
+    }
+
+    // Vị trí ngay sau "indexes {" trong khối Table, -1 nếu bảng không có index
+    private static int indexesBlockStart(String tableBlock) {
+        Matcher m = INDEXES_BLOCK.matcher(tableBlock);
+        return m.find() ? m.end() : -1;
+    }
+
+    private static List<String> columnNames(List<Column> columns) {
+        List<String> names = new ArrayList<>(columns.size());
+        for (Column column : columns) {
+            names.add(column.getName());
+        }
+        return names;
+    }
+}
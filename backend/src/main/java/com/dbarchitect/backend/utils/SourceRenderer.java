@@ -0,0 +1,14 @@
+package com.dbarchitect.backend.utils;
+
+/**
+ * Backend render một file nguồn từ TableModel theo tên template (TemplateRegistry.ENTITY, ...).
+ * Hai cài đặt: TemplateRegistry (thông dịch các file .ftl bằng FreeMarker) và CompiledSourceRenderer
+ * (code Java viết tay cho bộ template có sẵn, cho output giống hệt từng byte).
+ */
+public interface SourceRenderer {
+
+    /** Phiên bản output, dùng trong key của GeneratedSourceCache và snapshot render theo project. */
+    String version();
+
+    String render(String templateName, TableModel model) throws Exception;
+}
@@ -0,0 +1,246 @@
+package com.dbarchitect.backend.utils;
+
+import com.google.genai.types.Candidate;
+import com.google.genai.types.Content;
+import com.google.genai.types.FinishReason;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.Part;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Gemini giả lập cho chạy local và load test (gemini.client=stub): không gọi mạng, trả về DBML soạn sẵn
+ * sau một độ trễ lấy ngẫu nhiên theo phân phối cấu hình được, có thể lỗi ngẫu nhiên theo tỉ lệ.
+ *
+ * Cấu hình (mỗi khóa có thể ghi đè theo model: gemini.stub.&lt;model&gt;.latency, ...):
+ * <pre>
+ * gemini.stub.latency-distribution  fixed | uniform | lognormal (mặc định lognormal)
+ * gemini.stub.latency               trung vị độ trễ (mặc định 800ms)
+ * gemini.stub.latency-spread        uniform: ±tỉ lệ quanh trung vị; lognormal: sigma (mặc định 0.5)
+ * gemini.stub.failure-rate          tỉ lệ lời gọi ném lỗi, 0..1 (mặc định 0)
+ * gemini.stub.responses-dir         thư mục chứa các file *.dbml dùng làm output (mặc định: vài schema có sẵn)
+ * gemini.stub.stream-chunk-chars    kích thước mỗi đoạn khi stream (mặc định 64)
+ * </pre>
+ * Cùng một nội dung yêu cầu luôn nhận cùng một DBML, như model thật với temperature thấp.
+ * Lời gọi lập plan của chế độ chia nhỏ cũng nhận DBML nên không đọc được plan và quay về sinh một lần.
+ */
+@Component
+@ConditionalOnProperty(name = "gemini.client", havingValue = "stub")
+public class StubGeminiClient implements GeminiClient {
+
+    private static final List<String> BUILT_IN_RESPONSES = List.of(
+            """
+            Table users {
+              id int [pk, increment]
+              username varchar [not null, unique]
+              email varchar [not null]
+              created_at datetime
+            }
+
+            Table posts {
+              id int [pk, increment]
+              title varchar [not null]
+              body varchar
+              user_id int
+              created_at datetime
+            }
+
+            Table comments {
+              id int [pk, increment]
+              content varchar
+              post_id int
+              user_id int
+            }
+
+            Ref: posts.user_id > users.id
+            Ref: comments.post_id > posts.id
+            Ref: comments.user_id > users.id
+            """,
+            """
+            Table customers {
+              id int [pk, increment]
+              full_name varchar [not null]
+              phone varchar
+            }
+
+            Table products {
+              id int [pk, increment]
+              name varchar [not null]
+              price varchar
+              is_active boolean
+            }
+
+            Table orders {
+              id int [pk, increment]
+              customer_id int
+              status varchar
+              ordered_at datetime
+            }
+
+            Table order_items {
+              id int [pk, increment]
+              order_id int
+              product_id int
+              quantity int
+            }
+
+            Ref: orders.customer_id > customers.id
+            Ref: order_items.order_id > orders.id
+            Ref: order_items.product_id > products.id
+            """,
+            """
+            Table students {
+              id int [pk, increment]
+              name varchar [not null]
+              enrolled_at datetime
+            }
+
+            Table courses {
+              id int [pk, increment]
+              code varchar [unique]
+              title varchar
+            }
+
+            Table enrollments {
+              id int [pk, increment]
+              student_id int
+              course_id int
+              grade varchar
+            }
+
+            Ref: enrollments.student_id > students.id
+            Ref: enrollments.course_id > courses.id
+            """);
+
+    private final Environment environment;
+    private final List<String> responses;
+
+    public StubGeminiClient(Environment environment) throws IOException {
+        this.environment = environment;
+        String dir = environment.getProperty("gemini.stub.responses-dir");
+        this.responses = dir == null || dir.isBlank() ? BUILT_IN_RESPONSES : loadResponses(Path.of(dir));
+    }
+
+    private static List<String> loadResponses(Path dir) throws IOException {
+        List<String> loaded = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(p -> p.toString().endsWith(".dbml")).sorted().toList()) {
+                loaded.add(Files.readString(file));
+            }
+        }
+        if (loaded.isEmpty()) {
+            throw new IllegalArgumentException("Không có file .dbml nào trong " + dir);
+        }
+        return loaded;
+    }
+
+    @Override
+    public GenerateContentResponse generateContent(String model, List<Content> contents, GenerateContentConfig config)
+            throws Exception {
+        Thread.sleep(sampleLatency(model));
+        failRandomly(model);
+        return response(cannedText(contents));
+    }
+
+    /** Chia output thành các đoạn stream-chunk-chars ký tự, độ trễ được rải đều giữa các đoạn. */
+    @Override
+    public ResponseChunks generateContentStream(String model, List<Content> contents, GenerateContentConfig config) {
+        String text = cannedText(contents);
+        int chunkChars = Math.max(1, environment.getProperty("gemini.stub.stream-chunk-chars", Integer.class, 64));
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += chunkChars) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + chunkChars)));
+        }
+        Duration perChunk = sampleLatency(model).dividedBy(Math.max(1, chunks.size()));
+        boolean fail = shouldFail(model);
+
+        return new ResponseChunks() {
+            @Override
+            public Iterator<GenerateContentResponse> iterator() {
+                Iterator<String> it = chunks.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public GenerateContentResponse next() {
+                        try {
+                            Thread.sleep(perChunk);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        if (fail) {
+                            throw new IllegalStateException("Stub Gemini: lỗi giả lập khi stream");
+                        }
+                        return response(it.next());
+                    }
+                };
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private String cannedText(List<Content> contents) {
+        String prompt = contents.isEmpty() ? "" : String.valueOf(contents.getLast().text());
+        String dbml = responses.get(Math.floorMod(prompt.hashCode(), responses.size()));
+        return "```dbml\n" + dbml.strip() + "\n```";
+    }
+
+    private static GenerateContentResponse response(String text) {
+        return GenerateContentResponse.builder()
+                .candidates(List.of(Candidate.builder()
+                        .content(Content.builder().role("model").parts(List.of(Part.fromText(text))).build())
+                        .finishReason(new FinishReason(FinishReason.Known.STOP))
+                        .build()))
+                .build();
+    }
+
+    Duration sampleLatency(String model) {
+        Duration median = setting(model, "latency", Duration.class, Duration.ofMillis(800));
+        double spread = setting(model, "latency-spread", Double.class, 0.5);
+        String distribution = setting(model, "latency-distribution", String.class, "lognormal");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double factor = switch (distribution.toLowerCase()) {
+            case "fixed" -> 1.0;
+            case "uniform" -> 1.0 + spread * (2 * random.nextDouble() - 1);
+            case "lognormal" -> Math.exp(spread * random.nextGaussian());
+            default -> throw new IllegalArgumentException("gemini.stub.latency-distribution không hợp lệ: " + distribution);
+        };
+        return Duration.ofNanos((long) (median.toNanos() * Math.max(0, factor)));
+    }
+
+    private void failRandomly(String model) {
+        if (shouldFail(model)) {
+            throw new IllegalStateException("Stub Gemini: lỗi giả lập cho model " + model);
+        }
+    }
+
+    private boolean shouldFail(String model) {
+        return ThreadLocalRandom.current().nextDouble() < setting(model, "failure-rate", Double.class, 0.0);
+    }
+
+    private <T> T setting(String model, String name, Class<T> type, T defaultValue) {
+        T perModel = environment.getProperty("gemini.stub." + model + "." + name, type);
+        if (perModel != null) {
+            return perModel;
+        }
+        return environment.getProperty("gemini.stub." + name, type, defaultValue);
+    }
+}
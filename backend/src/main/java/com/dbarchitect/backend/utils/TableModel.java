@@ -0,0 +1,30 @@
+package com.dbarchitect.backend.utils;
+
+import java.util.List;
+
+/**
+ * Data model bất biến cho một bảng, truyền thẳng vào các template FreeMarker.
+ * Tên các thành phần trùng với biến trong template (vd: ${className}, field.columnName).
+ */
+public record TableModel(
+        String packageName,
+        String tableName,
+        String className,
+        boolean hasIncrement,
+        String idType, // null nếu bảng không có khóa chính, template dùng ${idType!"Long"}
+        List<String> imports,
+        List<Field> fields,
+        List<ManyToOne> manyToOneRels,
+        List<OneToMany> oneToManyRels) {
+
+    public record Field(String columnName, String fieldName, String javaType, boolean primaryKey) {
+    }
+
+    // Bảng hiện tại chứa khóa ngoại
+    public record ManyToOne(String joinColumn, String targetClass, String fieldName) {
+    }
+
+    // Bảng hiện tại được bảng khác tham chiếu
+    public record OneToMany(String targetClass, String fieldName, String mappedBy) {
+    }
+}
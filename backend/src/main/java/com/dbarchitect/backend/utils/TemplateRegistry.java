@@ -0,0 +1,108 @@
+package com.dbarchitect.backend.utils;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nạp và biên dịch sẵn các template sinh code ngay khi khởi động, rồi render thử một lần để
+ * làm nóng object wrapper (introspection các record model), nên request đầu tiên không phải trả chi phí cold start.
+ *
+ * Khi codegen.templates.check-updates=false (mặc định) các Template đã biên dịch được giữ nguyên suốt vòng đời ứng dụng;
+ * khi bật (môi trường dev) mỗi lần render sẽ hỏi lại Configuration để nhận template đã sửa.
+ */
+@Component
+public class TemplateRegistry implements SourceRenderer {
+
+    public static final String ENTITY = "entity.ftl";
+    public static final String REPOSITORY = "repository.ftl";
+    public static final String SERVICE = "service.ftl";
+    public static final String CONTROLLER = "controller.ftl";
+
+    public static final List<String> TEMPLATE_NAMES = List.of(ENTITY, REPOSITORY, SERVICE, CONTROLLER);
+
+    private final Configuration freemarkerConfig;
+    private final boolean checkUpdates;
+    private final Map<String, Template> templates = new HashMap<>();
+    private final String version;
+
+    public TemplateRegistry(Configuration freemarkerConfig,
+                            @Value("${codegen.templates.check-updates:false}") boolean checkUpdates) throws IOException, TemplateException {
+        this.freemarkerConfig = freemarkerConfig;
+        this.checkUpdates = checkUpdates;
+
+        StringBuilder sources = new StringBuilder();
+        for (String name : TEMPLATE_NAMES) {
+            Template template = freemarkerConfig.getTemplate(name);
+            templates.put(name, template);
+            sources.append(name).append('\n').append(template).append('\n');
+        }
+        // Phiên bản bộ template = hash nội dung các file .ftl, dùng trong key của GeneratedSourceCache
+        this.version = Hashing.sha256("templates", sources.toString());
+
+        warmUp();
+    }
+
+    @Override
+    public String version() {
+        return version;
+    }
+
+    // true: template có thể bị sửa lúc chạy, không được thay bằng bản đã biên dịch sẵn thành Java
+    public boolean checksUpdates() {
+        return checkUpdates;
+    }
+
+    @Override
+    public String render(String templateName, TableModel model) throws IOException, TemplateException {
+        Template template = checkUpdates ? freemarkerConfig.getTemplate(templateName) : templates.get(templateName);
+        if (template == null) {
+            throw new IllegalArgumentException("Template không được đăng ký: " + templateName);
+        }
+        StringWriter out = new StringWriter(2048);
+        template.process(model, out);
+        return out.toString();
+    }
+
+    private void warmUp() throws IOException, TemplateException {
+        for (String name : TEMPLATE_NAMES) {
+            render(name, sampleModels().getFirst());
+        }
+    }
+
+    /**
+     * Vài model mẫu phủ các nhánh của template (có / không khóa chính tự tăng, import, quan hệ hai chiều).
+     * Dùng để làm nóng và để kiểm tra CompiledSourceRenderer còn khớp với các file .ftl.
+     */
+    public static List<TableModel> sampleModels() {
+        return List.of(
+                new TableModel("com.example.demo", "warm_up", "WarmUp", true, "Integer",
+                        List.of("java.util.List"),
+                        List.of(new TableModel.Field("id", "id", "Integer", true),
+                                new TableModel.Field("name", "name", "String", false)),
+                        List.of(new TableModel.ManyToOne("owner_id", "Owner", "owner")),
+                        List.of(new TableModel.OneToMany("Item", "items", "warmUp"))),
+                new TableModel("com.example.demo", "audit_log", "Audit_log", false, null,
+                        List.of(),
+                        List.of(new TableModel.Field("message", "message", "String", false),
+                                new TableModel.Field("created_at", "createdAt", "LocalDateTime", false)),
+                        List.of(),
+                        List.of()),
+                new TableModel("com.example.demo", "order_item", "Order_item", false, "String",
+                        List.of("java.util.List", "java.math.BigDecimal", "java.time.LocalDateTime"),
+                        List.of(new TableModel.Field("code", "code", "String", true),
+                                new TableModel.Field("is_active", "isActive", "Boolean", false)),
+                        List.of(new TableModel.ManyToOne("order_id", "Orders", "orders"),
+                                new TableModel.ManyToOne("product_id", "Product", "product")),
+                        List.of(new TableModel.OneToMany("Shipment", "shipments", "orderItem"),
+                                new TableModel.OneToMany("Review", "reviews", "orderItem"))));
+    }
+}
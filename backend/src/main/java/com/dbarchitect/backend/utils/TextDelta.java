@@ -0,0 +1,173 @@
+package com.dbarchitect.backend.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Delta theo dòng giữa hai phiên bản văn bản (diff Myers), mã hóa gọn thành text để lưu vào DB:
+ * <pre>
+ * =12        giữ nguyên 12 dòng
+ * -3         bỏ 3 dòng
+ * +nội dung  chèn một dòng
+ * </pre>
+ * Phần đầu / cuối giống nhau được cắt trước khi diff nên chi phí chỉ phụ thuộc vùng thay đổi.
+ */
+public final class TextDelta {
+
+    // Quá nhiều khác biệt thì lưu bản đầy đủ thay vì delta (diff() trả về null)
+    static final int MAX_EDIT_DISTANCE = 1000;
+
+    private TextDelta() {
+    }
+
+    /** @return delta biến base thành target, hoặc null nếu hai bản khác nhau quá nhiều. */
+    public static String diff(String base, String target) {
+        String[] a = lines(base);
+        String[] b = lines(target);
+
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix].equals(b[prefix])) prefix++;
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+                && a[a.length - 1 - suffix].equals(b[b.length - 1 - suffix])) suffix++;
+
+        String[] midA = Arrays.copyOfRange(a, prefix, a.length - suffix);
+        String[] midB = Arrays.copyOfRange(b, prefix, b.length - suffix);
+        List<Character> ops = myers(midA, midB);
+        if (ops == null) return null;
+
+        Encoder out = new Encoder();
+        out.keep(prefix);
+        int j = 0;
+        for (char op : ops) {
+            switch (op) {
+                case '=' -> {
+                    out.keep(1);
+                    j++;
+                }
+                case '-' -> out.delete(1);
+                default -> out.insert(midB[j++]);
+            }
+        }
+        out.keep(suffix);
+        return out.finish();
+    }
+
+    public static String apply(String base, String delta) {
+        String[] a = lines(base);
+        List<String> result = new ArrayList<>(a.length);
+        int pos = 0;
+        for (String op : delta.split("\n", -1)) {
+            if (op.isEmpty()) continue;
+            switch (op.charAt(0)) {
+                case '=' -> {
+                    int n = Integer.parseInt(op.substring(1));
+                    for (int i = 0; i < n; i++) result.add(a[pos++]);
+                }
+                case '-' -> pos += Integer.parseInt(op.substring(1));
+                case '+' -> result.add(op.substring(1));
+                default -> throw new IllegalArgumentException("Delta không hợp lệ: " + op);
+            }
+        }
+        if (pos != a.length) {
+            throw new IllegalArgumentException("Delta không khớp với bản gốc (" + pos + "/" + a.length + " dòng)");
+        }
+        return String.join("\n", result);
+    }
+
+    private static String[] lines(String text) {
+        return text == null || text.isEmpty() ? new String[0] : text.split("\n", -1);
+    }
+
+    // Chuỗi thao tác '=', '-', '+' biến a thành b; null nếu khoảng cách sửa vượt MAX_EDIT_DISTANCE
+    private static List<Character> myers(String[] a, String[] b) {
+        int n = a.length;
+        int m = b.length;
+        int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+
+        for (int d = 0; d <= max; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+                        ? v[offset + k + 1]
+                        : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[x].equals(b[y])) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, offset, n, m);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<Character> backtrack(List<int[]> trace, int offset, int n, int m) {
+        List<Character> ops = new ArrayList<>();
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d >= 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            int prevK = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) ? k + 1 : k - 1;
+            int prevX = d == 0 ? 0 : v[offset + prevK];
+            int prevY = d == 0 ? 0 : prevX - prevK;
+            while (x > prevX && y > prevY) {
+                ops.add('=');
+                x--;
+                y--;
+            }
+            if (d > 0) {
+                ops.add(x == prevX ? '+' : '-');
+            }
+            x = prevX;
+            y = prevY;
+        }
+        return ops.reversed();
+    }
+
+    // Gộp các thao tác liên tiếp cùng loại ("=3" thay vì ba lần "=1")
+    private static final class Encoder {
+        private final StringBuilder out = new StringBuilder();
+        private char pending;
+        private int count;
+
+        void keep(int n) {
+            run('=', n);
+        }
+
+        void delete(int n) {
+            run('-', n);
+        }
+
+        void insert(String line) {
+            flush();
+            out.append('+').append(line).append('\n');
+        }
+
+        String finish() {
+            flush();
+            return out.toString();
+        }
+
+        private void run(char op, int n) {
+            if (n == 0) return;
+            if (pending != op) flush();
+            pending = op;
+            count += n;
+        }
+
+        private void flush() {
+            if (count > 0) out.append(pending).append(count).append('\n');
+            pending = 0;
+            count = 0;
+        }
+    }
+}
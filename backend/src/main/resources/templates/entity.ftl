@@ -18,7 +18,7 @@ public class ${className} {
     </#if>
 
     <#list fields as field>
-    <#if !field.isId>
+    <#if !field.primaryKey>
     @Column(name = "${field.columnName}")
     private ${field.javaType} ${field.fieldName};
     </#if>
@@ -0,0 +1,54 @@
+package com.dbarchitect.backend.benchmarks;
+
+import com.dbarchitect.backend.utils.CodeGenerator;
+import com.dbarchitect.backend.utils.CompiledSourceRenderer;
+import com.dbarchitect.backend.utils.FreeMarkerConfig;
+import com.dbarchitect.backend.utils.GeneratedSourceCache;
+import com.dbarchitect.backend.utils.PipelineMetrics;
+import com.dbarchitect.backend.utils.ProjectRenderSnapshots;
+import com.dbarchitect.backend.utils.TemplateRegistry;
+import freemarker.template.Configuration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.ui.freemarker.FreeMarkerConfigurationFactoryBean;
+
+/**
+ * Dựng các thành phần sinh code giống cấu hình Spring thật nhưng không cần ApplicationContext/DB.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Configuration freemarkerConfiguration() throws Exception {
+        FreeMarkerConfigurationFactoryBean bean = FreeMarkerConfig.configurationFactory(false);
+        bean.afterPropertiesSet();
+        return bean.getObject();
+    }
+
+    public static TemplateRegistry templateRegistry() throws Exception {
+        return new TemplateRegistry(freemarkerConfiguration(), false);
+    }
+
+    public static CodeGenerator codeGenerator(GeneratedSourceCache cache) throws Exception {
+        return codeGenerator(cache, 1);
+    }
+
+    public static CodeGenerator codeGenerator(GeneratedSourceCache cache, int parallelism) throws Exception {
+        return codeGenerator(cache, parallelism, CompiledSourceRenderer.COMPILED);
+    }
+
+    /** @param backend giá trị của codegen.backend: "freemarker" hoặc "compiled" */
+    public static CodeGenerator codeGenerator(GeneratedSourceCache cache, int parallelism, String backend) throws Exception {
+        return new CodeGenerator(templateRegistry(), null, cache, new ProjectRenderSnapshots(0, 0), metrics(), parallelism, backend);
+    }
+
+    /** Metric ghi vào registry trong bộ nhớ, không xuất ra đâu cả. */
+    public static PipelineMetrics metrics() {
+        return new PipelineMetrics(new SimpleMeterRegistry());
+    }
+
+    /** Cache không giữ gì, để mỗi lần gọi đều sinh code thật. */
+    public static GeneratedSourceCache noCache() {
+        return new GeneratedSourceCache(0, 0);
+    }
+}
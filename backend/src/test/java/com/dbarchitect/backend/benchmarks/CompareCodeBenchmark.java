@@ -0,0 +1,67 @@
+package com.dbarchitect.backend.benchmarks;
+
+import com.dbarchitect.backend.entities.CodeChange;
+import com.dbarchitect.backend.utils.CompiledSourceRenderer;
+import com.dbarchitect.backend.utils.JavaSourceDiff;
+import com.dbarchitect.backend.utils.TableModel;
+import com.dbarchitect.backend.utils.TemplateRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POST /compare (MainService.compareCode -> JavaSourceDiff) trên mã sinh từ schema giả lập:
+ * bản mới có thêm 10% bảng (vài entity cũ có thêm quan hệ one-to-many tới bảng mới).
+ * Nối file giống frontend ("// File: ..." rồi nội dung).
+ * cold: không cache, mọi unit đều được parse; warm: chỉ các file mới / đã đổi phải parse.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompareCodeBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int tables;
+
+    private JavaSourceDiff cold;
+    private JavaSourceDiff warm;
+    private String oldSource;
+    private String newSource;
+
+    @Setup
+    public void setUp() throws Exception {
+        oldSource = concatenatedSources(SyntheticSchema.tableModels(tables, 1.5, 42));
+        newSource = concatenatedSources(SyntheticSchema.tableModels(tables + Math.max(1, tables / 10), 1.5, 42));
+        cold = new JavaSourceDiff(0, Duration.ofMinutes(5), 0, BenchmarkFixtures.metrics());
+        warm = new JavaSourceDiff(0, Duration.ofMinutes(5), Integer.MAX_VALUE, BenchmarkFixtures.metrics());
+        warm.diff(oldSource, newSource);
+    }
+
+    @Benchmark
+    public List<CodeChange> cold() throws Exception {
+        return cold.diff(oldSource, newSource);
+    }
+
+    @Benchmark
+    public List<CodeChange> warm() throws Exception {
+        return warm.diff(oldSource, newSource);
+    }
+
+    private static String concatenatedSources(List<TableModel> models) {
+        CompiledSourceRenderer renderer = new CompiledSourceRenderer("bench");
+        StringBuilder out = new StringBuilder();
+        for (TableModel model : models) {
+            for (String template : TemplateRegistry.TEMPLATE_NAMES) {
+                if (!out.isEmpty()) out.append("\n\n");
+                out.append("// File: ").append(model.className()).append('/').append(template).append('\n')
+                        .append(renderer.render(template, model));
+            }
+        }
+        return out.toString();
+    }
+}
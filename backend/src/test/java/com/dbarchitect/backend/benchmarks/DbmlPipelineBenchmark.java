@@ -0,0 +1,88 @@
+package com.dbarchitect.backend.benchmarks;
+
+import com.dbarchitect.backend.entities.FileNode;
+import com.dbarchitect.backend.utils.CodeGenerator;
+import com.dbarchitect.backend.utils.DBMLCode;
+import com.dbarchitect.backend.utils.GeneratedFile;
+import com.dbarchitect.backend.utils.ProjectTreeBuilder;
+import com.dbarchitect.backend.utils.TableModel;
+import com.wn.dbml.compiler.DbmlParser;
+import com.wn.dbml.model.Database;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Từng bước của đường sinh code, trên schema giả lập 10 -> 5000 bảng (trung bình 1.5 khóa ngoại mỗi bảng):
+ * tách DBML khỏi phản hồi markdown, parse, dựng data model, sinh ZIP, dựng cây preview.
+ * Không dùng cache sinh code và render tuần tự, nên số đo không phụ thuộc số core của máy chạy.
+ * Seed cố định -> cùng input ở mọi commit; chạy qua profile benchmark để có -prof gc và file JSON kết quả.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DbmlPipelineBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    public int tables;
+
+    @Param({"1.5"})
+    public double refsPerTable;
+
+    private CodeGenerator codeGenerator;
+    private String rawDbml;
+    private String dbml;
+    private Database database;
+    private List<GeneratedFile> files;
+    private byte[] zip;
+
+    @Setup
+    public void setUp() throws Exception {
+        codeGenerator = BenchmarkFixtures.codeGenerator(BenchmarkFixtures.noCache(), 1);
+        dbml = SyntheticSchema.dbml(tables, refsPerTable, 42);
+        // Dạng phản hồi của Gemini: DBML nằm trong khối ```dbml có lời dẫn phía trước
+        rawDbml = "Đây là thiết kế cơ sở dữ liệu:\n\n```dbml\n" + dbml + "\n```\n";
+        database = DbmlParser.parse(dbml);
+        files = codeGenerator.generateAllSourceFiles(dbml);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codeGenerator.writeProjectZip(dbml, out);
+        zip = out.toByteArray();
+    }
+
+    @Benchmark
+    public String extractCleanDbmlCode() {
+        return DBMLCode.extractCleanDbmlCode(rawDbml);
+    }
+
+    @Benchmark
+    public Database parse() throws Exception {
+        return DbmlParser.parse(dbml);
+    }
+
+    @Benchmark
+    public List<TableModel> prepareDataModels() {
+        return codeGenerator.prepareDataModels(database);
+    }
+
+    // Parse + render + nén, như GET /projects/{id}/download khi cache miss
+    @Benchmark
+    public void writeProjectZip() throws Exception {
+        codeGenerator.writeProjectZip(dbml, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public FileNode buildTree() {
+        return ProjectTreeBuilder.buildTreeFromGeneratedFiles(files, CodeGenerator.BASE_PACKAGE_PATH, "bench");
+    }
+
+    @Benchmark
+    public FileNode buildTreeFromZip() throws Exception {
+        return ProjectTreeBuilder.buildTreeFromZip(zip, "bench");
+    }
+}
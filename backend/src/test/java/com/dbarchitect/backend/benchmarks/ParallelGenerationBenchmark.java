@@ -0,0 +1,42 @@
+package com.dbarchitect.backend.benchmarks;
+
+import com.dbarchitect.backend.utils.CodeGenerator;
+import com.dbarchitect.backend.utils.GeneratedFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo khả năng mở rộng của sinh code theo mức song song (codegen.parallelism).
+ * Không dùng cache nên mỗi lần gọi đều parse + render toàn bộ schema.
+ * Mức song song lớn hơn số core của máy chạy benchmark sẽ không cải thiện thêm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelGenerationBenchmark {
+
+    @Param({"500"})
+    public int tables;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int parallelism;
+
+    private CodeGenerator codeGenerator;
+    private String dbml;
+
+    @Setup
+    public void setUp() throws Exception {
+        codeGenerator = BenchmarkFixtures.codeGenerator(BenchmarkFixtures.noCache(), parallelism);
+        dbml = SyntheticSchema.dbml(tables, 1.5, 42);
+    }
+
+    @Benchmark
+    public List<GeneratedFile> generateAll() throws Exception {
+        return codeGenerator.generateAllSourceFiles(dbml);
+    }
+}
@@ -0,0 +1,51 @@
+package com.dbarchitect.backend.benchmarks;
+
+import com.dbarchitect.backend.entities.FileNode;
+import com.dbarchitect.backend.utils.CodeGenerator;
+import com.dbarchitect.backend.utils.GeneratedSourceCache;
+import com.dbarchitect.backend.utils.ProjectTreeBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh dựng cây preview qua ZIP (nén rồi giải nén) với dựng trực tiếp từ danh sách file đã sinh.
+ * Cache sinh code được làm nóng trước nên chênh lệch đo được chính là chi phí vòng ZIP.
+ * Chạy với -prof gc (mặc định trong profile benchmark) để xem gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreviewTreeBenchmark {
+
+    // 5000 bảng = 5000 file trong mỗi thư mục entity/, repository/...: kiểm tra dựng cây vẫn tuyến tính
+    @Param({"50", "500", "5000"})
+    public int tables;
+
+    private CodeGenerator codeGenerator;
+    private String dbml;
+
+    @Setup
+    public void setUp() throws Exception {
+        codeGenerator = BenchmarkFixtures.codeGenerator(new GeneratedSourceCache(16, Long.MAX_VALUE));
+        dbml = SyntheticSchema.dbml(tables, 1.5, 42);
+        codeGenerator.generateAllSourceFiles(dbml);
+    }
+
+    @Benchmark
+    public FileNode viaZipRoundTrip() throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        codeGenerator.writeProjectZip(dbml, zip);
+        return ProjectTreeBuilder.buildTreeFromZip(zip.toByteArray(), "bench");
+    }
+
+    @Benchmark
+    public FileNode direct() throws Exception {
+        return ProjectTreeBuilder.buildTreeFromGeneratedFiles(
+                codeGenerator.generateAllSourceFiles(dbml), CodeGenerator.BASE_PACKAGE_PATH, "bench");
+    }
+}
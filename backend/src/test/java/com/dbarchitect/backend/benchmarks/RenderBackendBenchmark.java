@@ -0,0 +1,60 @@
+package com.dbarchitect.backend.benchmarks;
+
+import com.dbarchitect.backend.utils.CodeGenerator;
+import com.dbarchitect.backend.utils.CompiledSourceRenderer;
+import com.dbarchitect.backend.utils.GeneratedFile;
+import com.dbarchitect.backend.utils.SourceRenderer;
+import com.dbarchitect.backend.utils.TableModel;
+import com.dbarchitect.backend.utils.TemplateRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh hai backend sinh code (codegen.backend): FreeMarker thông dịch .ftl và CompiledSourceRenderer.
+ * renderOnly đo riêng bước render 4 file cho mỗi bảng; generateAll đo cả CodeGenerator (parse DBML + render),
+ * tuần tự và không cache, để thấy phần render chiếm bao nhiêu trong tổng thời gian.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBackendBenchmark {
+
+    @Param({"500"})
+    public int tables;
+
+    @Param({CompiledSourceRenderer.FREEMARKER, CompiledSourceRenderer.COMPILED})
+    public String backend;
+
+    private SourceRenderer renderer;
+    private List<TableModel> models;
+    private CodeGenerator codeGenerator;
+    private String dbml;
+
+    @Setup
+    public void setUp() throws Exception {
+        renderer = CompiledSourceRenderer.select(backend, BenchmarkFixtures.templateRegistry());
+        models = SyntheticSchema.tableModels(tables, 1.5, 42);
+        codeGenerator = BenchmarkFixtures.codeGenerator(BenchmarkFixtures.noCache(), 1, backend);
+        dbml = SyntheticSchema.dbml(tables, 1.5, 42);
+    }
+
+    @Benchmark
+    public void renderOnly(Blackhole blackhole) throws Exception {
+        for (TableModel model : models) {
+            for (String template : TemplateRegistry.TEMPLATE_NAMES) {
+                blackhole.consume(renderer.render(template, model));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<GeneratedFile> generateAll() throws Exception {
+        return codeGenerator.generateAllSourceFiles(dbml);
+    }
+}
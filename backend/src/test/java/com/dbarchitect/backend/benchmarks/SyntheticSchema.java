@@ -0,0 +1,95 @@
+package com.dbarchitect.backend.benchmarks;
+
+import com.dbarchitect.backend.utils.TableModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sinh DBML giả lập cho benchmark: mỗi bảng có khóa chính, vài cột cơ bản và
+ * trung bình {@code refsPerTable} khóa ngoại trỏ tới các bảng đã sinh trước đó.
+ * Cùng seed luôn cho ra cùng một DBML để kết quả so sánh được giữa các commit.
+ */
+public final class SyntheticSchema {
+
+    private SyntheticSchema() {
+    }
+
+    public static String dbml(int tables, double refsPerTable, long seed) {
+        Random random = new Random(seed);
+        StringBuilder tablesDbml = new StringBuilder(tables * 256);
+        StringBuilder refsDbml = new StringBuilder();
+
+        for (int t = 0; t < tables; t++) {
+            String name = tableName(t);
+            tablesDbml.append("Table ").append(name).append(" {\n");
+            tablesDbml.append("  id int [pk, increment]\n");
+            tablesDbml.append("  name varchar(255) [not null]\n");
+            tablesDbml.append("  description varchar\n");
+            tablesDbml.append("  is_active boolean\n");
+            tablesDbml.append("  created_at datetime [default: `now()`]\n");
+            tablesDbml.append("  updated_at datetime [default: `now()`]\n");
+
+            if (t > 0) {
+                int refs = (int) refsPerTable + (random.nextDouble() < refsPerTable % 1 ? 1 : 0);
+                for (int r = 0; r < refs; r++) {
+                    String target = tableName(random.nextInt(t));
+                    String fkColumn = target + "_id_" + r;
+                    tablesDbml.append("  ").append(fkColumn).append(" int\n");
+                    refsDbml.append("Ref: ").append(name).append('.').append(fkColumn)
+                            .append(" > ").append(target).append(".id\n");
+                }
+            }
+            tablesDbml.append("}\n\n");
+        }
+        return tablesDbml.append(refsDbml).toString();
+    }
+
+    /**
+     * Các TableModel mà CodeGenerator dựng ra từ {@link #dbml} cùng tham số, để đo riêng bước render
+     * (không tính parse DBML). Quan hệ được rút ngẫu nhiên theo đúng thứ tự như trong dbml().
+     */
+    public static List<TableModel> tableModels(int tables, double refsPerTable, long seed) {
+        Random random = new Random(seed);
+        List<List<TableModel.ManyToOne>> manyToOne = new ArrayList<>();
+        List<List<TableModel.OneToMany>> oneToMany = new ArrayList<>();
+        for (int t = 0; t < tables; t++) {
+            manyToOne.add(new ArrayList<>());
+            oneToMany.add(new ArrayList<>());
+            if (t == 0) continue;
+            int refs = (int) refsPerTable + (random.nextDouble() < refsPerTable % 1 ? 1 : 0);
+            for (int r = 0; r < refs; r++) {
+                int target = random.nextInt(t);
+                manyToOne.get(t).add(new TableModel.ManyToOne(
+                        tableName(target) + "_id_" + r, className(target), "entity" + target));
+                oneToMany.get(target).add(new TableModel.OneToMany(className(t), "entity" + t + "s", "entity" + target));
+            }
+        }
+
+        List<TableModel> models = new ArrayList<>(tables);
+        for (int t = 0; t < tables; t++) {
+            List<String> imports = new ArrayList<>();
+            if (!oneToMany.get(t).isEmpty()) imports.add("java.util.List");
+            imports.add("java.time.LocalDateTime");
+            models.add(new TableModel("com.example.demo", tableName(t), className(t), true, "Integer",
+                    List.copyOf(imports),
+                    List.of(new TableModel.Field("id", "id", "Integer", true),
+                            new TableModel.Field("name", "name", "String", false),
+                            new TableModel.Field("description", "description", "String", false),
+                            new TableModel.Field("is_active", "isActive", "Boolean", false),
+                            new TableModel.Field("created_at", "createdAt", "LocalDateTime", false),
+                            new TableModel.Field("updated_at", "updatedAt", "LocalDateTime", false)),
+                    List.copyOf(manyToOne.get(t)), List.copyOf(oneToMany.get(t))));
+        }
+        return models;
+    }
+
+    private static String className(int index) {
+        return "Entity_" + index;
+    }
+
+    private static String tableName(int index) {
+        return "entity_" + index;
+    }
+}
@@ -0,0 +1,49 @@
+package com.dbarchitect.backend.benchmarks;
+
+import com.dbarchitect.backend.utils.CompiledSourceRenderer;
+import com.dbarchitect.backend.utils.SourceRenderer;
+import com.dbarchitect.backend.utils.TableModel;
+import com.dbarchitect.backend.utils.TemplateRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render một template cho mọi bảng của schema giả lập (bước renderFile trong CodeGenerator),
+ * tách theo từng template và từng backend để thấy template nào tốn nhất.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateRenderBenchmark {
+
+    @Param({"500"})
+    public int tables;
+
+    @Param({TemplateRegistry.ENTITY, TemplateRegistry.REPOSITORY, TemplateRegistry.SERVICE, TemplateRegistry.CONTROLLER})
+    public String template;
+
+    @Param({CompiledSourceRenderer.FREEMARKER, CompiledSourceRenderer.COMPILED})
+    public String backend;
+
+    private SourceRenderer renderer;
+    private List<TableModel> models;
+
+    @Setup
+    public void setUp() throws Exception {
+        renderer = CompiledSourceRenderer.select(backend, BenchmarkFixtures.templateRegistry());
+        models = SyntheticSchema.tableModels(tables, 1.5, 42);
+    }
+
+    @Benchmark
+    public void renderFile(Blackhole blackhole) throws Exception {
+        for (TableModel model : models) {
+            blackhole.consume(renderer.render(template, model));
+        }
+    }
+}
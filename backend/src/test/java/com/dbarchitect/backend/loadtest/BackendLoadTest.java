@@ -0,0 +1,199 @@
+package com.dbarchitect.backend.loadtest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test đầu-cuối cho mọi endpoint của MainController: server thật trên cổng ngẫu nhiên, H2 ở chế độ
+ * PostgreSQL thay cho Postgres, Gemini giả lập (StubGeminiClient) - xem application-loadtest.properties.
+ *
+ * Không chạy trong `mvn test` thường; chạy bằng: ./mvnw -Ploadtest test
+ * Tham số: -Dloadtest.concurrency=16 -Dloadtest.requests=200 -Dgemini.stub.latency=300ms ...
+ * In ra bảng throughput và độ trễ p50/p90/p99/max cho từng kịch bản.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class BackendLoadTest {
+
+    private static final Pattern TABLE_NAME = Pattern.compile("Table\\s+(\\w+)");
+    private static final String BASE_PACKAGE_PATH = "src/main/java/com/example/demo/";
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${loadtest.concurrency:16}")
+    private int concurrency;
+
+    @Value("${loadtest.requests:200}")
+    private int requests;
+
+    @Value("${loadtest.model:gemini-2.5-flash}")
+    private String model;
+
+    // Tỉ lệ request lỗi tối đa chấp nhận được cho mỗi kịch bản (lỗi giả lập của stub cũng tính)
+    @Value("${loadtest.max-error-rate:0.01}")
+    private double maxErrorRate;
+
+    private final JsonMapper json = JsonMapper.builder().build();
+    private final HttpClient http = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private record Seeded(long projectId, String firstFilePath) {
+    }
+
+    @Test
+    void allEndpointsUnderLoad() throws Exception {
+        LoadRunner runner = new LoadRunner(concurrency);
+        List<Seeded> projects = new CopyOnWriteArrayList<>();
+        List<String> jobIds = new CopyOnWriteArrayList<>();
+
+        // Sinh DBML: 50 mô tả khác nhau, phần còn lại trúng cache DBML
+        runner.run("POST /generate-dbml", requests, i -> {
+            HttpResponse<String> response = post("/generate-dbml", Map.of(
+                    "projectName", "load-" + i,
+                    "systemDescription", "Load test system #" + (i % 50),
+                    "modelName", model));
+            if (response.statusCode() == 200) {
+                JsonNode body = json.readTree(response.body());
+                projects.add(new Seeded(body.get("projectId").asLong(), firstFilePath(body.get("cleanDbmlCode").asString())));
+            }
+            return response.statusCode();
+        });
+        assertThat(projects).as("không sinh được project nào").isNotEmpty();
+
+        runner.run("POST /generate-dbml/jobs", requests, i -> {
+            HttpResponse<String> response = post("/generate-dbml/jobs", Map.of(
+                    "projectName", "job-" + i,
+                    "systemDescription", "Async load test system #" + i,
+                    "modelName", model,
+                    "bypassCache", true));
+            if (response.statusCode() == 202) {
+                jobIds.add(json.readTree(response.body()).get("jobId").asString());
+            }
+            return response.statusCode();
+        });
+        runner.run("GET /generate-dbml/jobs/{id}", requests, i -> get("/generate-dbml/jobs/" + pick(jobIds, i)).statusCode());
+        // SSE: đọc tới khi job kết thúc và server đóng stream
+        runner.run("GET /generate-dbml/jobs/{id}/events", Math.min(requests, jobIds.size()),
+                i -> get("/generate-dbml/jobs/" + jobIds.get(i) + "/events").statusCode());
+
+        runner.run("GET /projects", requests, i -> get("/projects?limit=50").statusCode());
+        runner.run("GET /projects/{id}", requests, i -> get("/projects/" + pick(projects, i).projectId()).statusCode());
+
+        // Mỗi lần sửa thêm một bảng -> revision mới cho lịch sử DBML và schema-diff
+        runner.run("PUT /projects/{id}/dbml", requests, i -> {
+            Seeded project = pick(projects, i);
+            String current = json.readTree(get("/projects/" + project.projectId()).body()).get("cleanDbmlCode").asString();
+            String updated = current + "\n\nTable extra_" + i + " {\n  id int [pk, increment]\n  note varchar\n}\n";
+            return put("/projects/" + project.projectId() + "/dbml", Map.of("rawDbmlCode", "```dbml\n" + updated + "\n```"))
+                    .statusCode();
+        });
+        runner.run("GET /projects/{id}/revisions", requests,
+                i -> get("/projects/" + pick(projects, i).projectId() + "/revisions").statusCode());
+        runner.run("GET /projects/{id}/revisions/{revision}", requests,
+                i -> get("/projects/" + pick(projects, i).projectId() + "/revisions/1").statusCode());
+        runner.run("POST /schema-diff", requests, i -> {
+            long projectId = pick(projects, i).projectId();
+            return post("/schema-diff", Map.of("projectId", projectId, "fromRevision", 1)).statusCode();
+        });
+
+        runner.run("GET /generate-code", requests, i -> get("/generate-code?id=" + pick(projects, i).projectId()).statusCode());
+        runner.run("GET /generate-preview?lazy=true", requests,
+                i -> get("/generate-preview?lazy=true&id=" + pick(projects, i).projectId()).statusCode());
+        runner.run("GET /generate-preview", requests, i -> get("/generate-preview?id=" + pick(projects, i).projectId()).statusCode());
+        runner.run("GET /projects/{id}/files", requests, i -> {
+            Seeded project = pick(projects, i);
+            return get("/projects/" + project.projectId() + "/files?path="
+                    + URLEncoder.encode(project.firstFilePath(), StandardCharsets.UTF_8)).statusCode();
+        });
+
+        String oldDbml = json.readTree(get("/projects/" + projects.getFirst().projectId()).body()).get("cleanDbmlCode").asString();
+        String newDbml = oldDbml + "\n\nTable audit_log {\n  id int [pk, increment]\n  message varchar\n}\n";
+        runner.run("POST /generate-java-code", requests,
+                i -> post("/generate-java-code", Map.of("rawDbmlCode", "```dbml\n" + newDbml + "\n```")).statusCode());
+        String oldCode = javaSources(oldDbml);
+        String newCode = javaSources(newDbml);
+        runner.run("POST /compare", requests, i -> post("/compare", Map.of("oldCode", oldCode, "newCode", newCode)).statusCode());
+
+        List<String> statsEndpoints = List.of("/compare/stats", "/generation-cache/stats", "/gemini/status",
+                "/gemini/hedge/stats", "/schema-cache/stats", "/dbml-cache/stats", "/generation-cache/incremental/stats");
+        runner.run("GET stats endpoints", requests, i -> get(statsEndpoints.get(i % statsEndpoints.size())).statusCode());
+
+        System.out.println("\nLoad test: concurrency=" + concurrency + ", requests/scenario=" + requests + ", model=" + model);
+        System.out.println(runner.report());
+
+        for (LoadRunner.Result result : runner.results()) {
+            assertThat(result.errors())
+                    .as("%s: %d/%d request lỗi", result.name(), result.errors(), result.requests())
+                    .isLessThanOrEqualTo((int) Math.floor(result.requests() * maxErrorRate));
+        }
+    }
+
+    // Nối các file Java đã sinh như frontend làm trước khi gọi /compare
+    private String javaSources(String dbml) throws Exception {
+        HttpResponse<String> response = post("/generate-java-code", Map.of("rawDbmlCode", "```dbml\n" + dbml + "\n```"));
+        StringBuilder out = new StringBuilder();
+        for (JsonNode file : json.readTree(response.body())) {
+            out.append("// File: ").append(file.get("path").asString()).append('\n')
+                    .append(file.get("content").asString()).append("\n\n");
+        }
+        return out.toString();
+    }
+
+    private static String firstFilePath(String cleanDbml) {
+        Matcher m = TABLE_NAME.matcher(cleanDbml);
+        String table = m.find() ? m.group(1) : "unknown";
+        return BASE_PACKAGE_PATH + "entity/" + Character.toUpperCase(table.charAt(0)) + table.substring(1) + ".java";
+    }
+
+    private static <T> T pick(List<T> items, int i) {
+        return items.get(i % items.size());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return http.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, Object body) throws Exception {
+        return http.send(request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(body)))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> put(String path, Object body) throws Exception {
+        return http.send(request(path)
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(body)))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).timeout(Duration.ofMinutes(2));
+    }
+}
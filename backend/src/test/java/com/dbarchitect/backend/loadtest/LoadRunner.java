@@ -0,0 +1,101 @@
+package com.dbarchitect.backend.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chạy một kịch bản N lần với tối đa {@code concurrency} request cùng lúc (virtual thread),
+ * ghi lại độ trễ từng lần để tính percentile và throughput.
+ */
+final class LoadRunner {
+
+    @FunctionalInterface
+    interface Call {
+        /** @return HTTP status của request thứ i */
+        int execute(int i) throws Exception;
+    }
+
+    record Result(String name, int requests, int errors, double seconds,
+                  double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+
+        double throughput() {
+            return seconds > 0 ? requests / seconds : 0;
+        }
+
+        String format() {
+            return String.format(Locale.ROOT, "%-44s %6d %6d %9.1f %9.1f %9.1f %9.1f %9.1f",
+                    name, requests, errors, throughput(), p50Millis, p90Millis, p99Millis, maxMillis);
+        }
+
+        static String header() {
+            return String.format(Locale.ROOT, "%-44s %6s %6s %9s %9s %9s %9s %9s",
+                    "scenario", "req", "err", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        }
+    }
+
+    private final int concurrency;
+    private final List<Result> results = new ArrayList<>();
+
+    LoadRunner(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    Result run(String name, int requests, Call call) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        Semaphore permits = new Semaphore(concurrency);
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                permits.acquire();
+                executor.submit(() -> {
+                    long begin = System.nanoTime();
+                    try {
+                        int status = call.execute(index);
+                        if (status >= 400) errors.incrementAndGet();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        latencies[index] = System.nanoTime() - begin;
+                        permits.release();
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        Result result = new Result(name, requests, errors.get(), seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                requests == 0 ? 0 : latencies[requests - 1] / 1e6);
+        results.add(result);
+        return result;
+    }
+
+    List<Result> results() {
+        return results;
+    }
+
+    String report() {
+        StringBuilder out = new StringBuilder(Result.header()).append('\n');
+        for (Result result : results) {
+            out.append(result.format()).append('\n');
+        }
+        return out.toString();
+    }
+
+    // Nearest-rank trên mảng đã sắp xếp
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.clamp(rank, 0, sorted.length - 1)] / 1e6;
+    }
+}
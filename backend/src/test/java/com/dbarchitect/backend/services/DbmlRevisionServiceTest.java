@@ -0,0 +1,136 @@
+package com.dbarchitect.backend.services;
+
+import com.dbarchitect.backend.entities.DbmlRevision;
+import com.dbarchitect.backend.repositories.DbmlRevisionRepository;
+import com.dbarchitect.backend.repositories.DesignProjectRepository;
+import com.dbarchitect.backend.utils.TextDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DbmlRevisionServiceTest {
+
+    private static final long PROJECT_ID = 1L;
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 8, 0);
+    private static final LocalDateTime CUTOFF = T0.plusDays(1);
+
+    private DbmlRevisionRepository repository;
+    private DbmlRevisionService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(DbmlRevisionRepository.class);
+        service = new DbmlRevisionService(repository, mock(DesignProjectRepository.class),
+                mock(PlatformTransactionManager.class), 20, Duration.ofDays(30), Duration.ofHours(1), 50);
+    }
+
+    private static String text(int revision) {
+        StringBuilder dbml = new StringBuilder("Table users {\n  id int [pk]\n");
+        for (int i = 1; i <= revision; i++) {
+            dbml.append("  col").append(i).append(" varchar\n");
+        }
+        return dbml.append("}").toString();
+    }
+
+    private static DbmlRevision row(int revision, DbmlRevision.Kind kind, LocalDateTime createdAt, Boolean compacted) {
+        DbmlRevision row = new DbmlRevision();
+        row.setProjectId(PROJECT_ID);
+        row.setRevision(revision);
+        row.setKind(kind);
+        row.setCreatedAt(createdAt);
+        row.setCompacted(compacted);
+        if (kind == DbmlRevision.Kind.FULL) {
+            row.setContent(text(revision));
+        } else {
+            row.setBaseRevision(revision - 1);
+            row.setContent(TextDelta.diff(text(revision - 1), text(revision)));
+        }
+        return row;
+    }
+
+    private void givenHistory(DbmlRevision watermark, int fromRevision, List<DbmlRevision> rows) {
+        when(repository.findTopByProjectIdAndCompactedTrueOrderByRevisionDesc(PROJECT_ID))
+                .thenReturn(Optional.ofNullable(watermark));
+        when(repository.findByProjectIdAndRevisionGreaterThanEqualAndCreatedAtBeforeOrderByRevisionAsc(
+                eq(PROJECT_ID), eq(fromRevision), any())).thenReturn(rows);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DbmlRevision> savedRows() {
+        ArgumentCaptor<Iterable<DbmlRevision>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(repository).saveAll(captor.capture());
+        List<DbmlRevision> rows = new ArrayList<>();
+        captor.getValue().forEach(rows::add);
+        return rows;
+    }
+
+    @Test
+    void firstCompactionKeepsLastRevisionPerBucketAndMarksThem() {
+        givenHistory(null, 0, List.of(
+                row(1, DbmlRevision.Kind.FULL, T0, null),
+                row(2, DbmlRevision.Kind.DELTA, T0.plusHours(1), null),
+                row(3, DbmlRevision.Kind.DELTA, T0.plusHours(1).plusMinutes(5), null),
+                row(4, DbmlRevision.Kind.DELTA, T0.plusHours(1).plusMinutes(10), null)));
+
+        service.compactProject(PROJECT_ID, CUTOFF);
+
+        verify(repository).deleteRange(PROJECT_ID, 1, 4);
+        List<DbmlRevision> saved = savedRows();
+        assertThat(saved).extracting(DbmlRevision::getRevision).containsExactly(1, 4);
+        assertThat(saved).allMatch(r -> Boolean.TRUE.equals(r.getCompacted()));
+        // Revision cũ cuối cùng là FULL: làm gốc cho lần compaction sau
+        assertThat(saved.getLast().getKind()).isEqualTo(DbmlRevision.Kind.FULL);
+        assertThat(saved.getLast().getContent()).isEqualTo(text(4));
+    }
+
+    @Test
+    void laterCompactionStartsFromWatermarkAndKeepsIt() {
+        DbmlRevision watermark = row(4, DbmlRevision.Kind.FULL, T0.plusHours(1).plusMinutes(10), true);
+        givenHistory(watermark, 4, List.of(
+                watermark,
+                // Cùng bucket với mốc nhưng mốc vẫn được giữ
+                row(5, DbmlRevision.Kind.DELTA, T0.plusHours(1).plusMinutes(20), null),
+                row(6, DbmlRevision.Kind.DELTA, T0.plusHours(1).plusMinutes(30), null),
+                row(7, DbmlRevision.Kind.DELTA, T0.plusHours(3), null)));
+
+        service.compactProject(PROJECT_ID, CUTOFF);
+
+        verify(repository).deleteRange(PROJECT_ID, 4, 7);
+        List<DbmlRevision> saved = savedRows();
+        assertThat(saved).extracting(DbmlRevision::getRevision).containsExactly(4, 6, 7);
+        assertThat(saved.get(0).getContent()).isEqualTo(text(4));
+        assertThat(TextDelta.apply(text(4), saved.get(1).getContent())).isEqualTo(text(6));
+        assertThat(saved.get(2).getContent()).isEqualTo(text(7));
+    }
+
+    @Test
+    void nothingToMergeOnlyMarksRowsCompacted() {
+        givenHistory(null, 0, List.of(
+                row(1, DbmlRevision.Kind.FULL, T0, null),
+                row(2, DbmlRevision.Kind.DELTA, T0.plusHours(1), null),
+                row(3, DbmlRevision.Kind.DELTA, T0.plusHours(2), null)));
+
+        service.compactProject(PROJECT_ID, CUTOFF);
+
+        verify(repository).markCompacted(PROJECT_ID, 1, 3);
+        verify(repository, never()).deleteRange(anyLong(), anyInt(), anyInt());
+        verify(repository, never()).saveAll(any());
+    }
+}
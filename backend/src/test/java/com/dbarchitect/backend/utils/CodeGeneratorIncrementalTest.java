@@ -0,0 +1,131 @@
+package com.dbarchitect.backend.utils;
+
+import com.dbarchitect.backend.benchmarks.BenchmarkFixtures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sinh lại code sau khi sửa DBML của một project: chỉ các bảng có data model thay đổi được render lại.
+ */
+class CodeGeneratorIncrementalTest {
+
+    private static final long PROJECT_ID = 1L;
+
+    private static final String SCHEMA = """
+            Table users {
+              id int [pk, increment]
+              name varchar
+            }
+
+            Table posts {
+              id int [pk, increment]
+              title varchar
+              user_id int [ref: > users.id]
+            }
+
+            Table comments {
+              id int [pk, increment]
+              body text
+              post_id int
+              tag_id int
+            }
+
+            Table tags {
+              id int [pk, increment]
+              label varchar
+            }
+            """;
+
+    private CodeGenerator generator;
+    // Số bảng được render lại / dùng lại trong lần gọi gần nhất
+    private long renderedDelta;
+    private long reusedDelta;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Không cache nội dung: mỗi lần gọi đều đi qua đường render theo bảng
+        generator = newGenerator(new ProjectRenderSnapshots(8, Long.MAX_VALUE));
+    }
+
+    private static CodeGenerator newGenerator(ProjectRenderSnapshots snapshots) throws Exception {
+        return new CodeGenerator(BenchmarkFixtures.templateRegistry(), null, BenchmarkFixtures.noCache(), snapshots,
+                BenchmarkFixtures.metrics(), 1, CompiledSourceRenderer.COMPILED);
+    }
+
+    private List<GeneratedFile> generateAndCount(String dbml) throws Exception {
+        ProjectRenderSnapshots.Stats before = generator.getIncrementalStats();
+        List<GeneratedFile> files = generator.generateAllSourceFiles(PROJECT_ID, dbml);
+        ProjectRenderSnapshots.Stats after = generator.getIncrementalStats();
+        renderedDelta = after.renderedTables() - before.renderedTables();
+        reusedDelta = after.reusedTables() - before.reusedTables();
+        return files;
+    }
+
+    private static List<GeneratedFile> coldRender(String dbml) throws Exception {
+        return newGenerator(new ProjectRenderSnapshots(0, 0)).generateAllSourceFiles(dbml);
+    }
+
+    @Test
+    void firstRenderRendersEveryTable() throws Exception {
+        generateAndCount(SCHEMA);
+
+        assertThat(renderedDelta).isEqualTo(4);
+        assertThat(reusedDelta).isZero();
+    }
+
+    @Test
+    void editedColumnRerendersOnlyItsTable() throws Exception {
+        generateAndCount(SCHEMA);
+        String edited = SCHEMA.replace("label varchar", "label int");
+
+        List<GeneratedFile> files = generateAndCount(edited);
+
+        assertThat(renderedDelta).isEqualTo(1);
+        assertThat(reusedDelta).isEqualTo(3);
+        assertThat(files).isEqualTo(coldRender(edited));
+    }
+
+    @Test
+    void typeChangeWithSameJavaTypeReusesEveryTable() throws Exception {
+        generateAndCount(SCHEMA);
+
+        generateAndCount(SCHEMA.replace("label varchar", "label text"));
+
+        assertThat(renderedDelta).isZero();
+        assertThat(reusedDelta).isEqualTo(4);
+    }
+
+    @Test
+    void addedRefRerendersBothEndpointTables() throws Exception {
+        generateAndCount(SCHEMA);
+        String withRef = SCHEMA + "\nRef: comments.tag_id > tags.id\n";
+
+        List<GeneratedFile> files = generateAndCount(withRef);
+
+        assertThat(renderedDelta).isEqualTo(2);
+        assertThat(reusedDelta).isEqualTo(2);
+        assertThat(files).isEqualTo(coldRender(withRef));
+        assertThat(content(files, "entity/Comments.java")).contains("Tags");
+        assertThat(content(files, "entity/Tags.java")).contains("Comments");
+    }
+
+    @Test
+    void removedRefRerendersBothEndpointTables() throws Exception {
+        generateAndCount(SCHEMA);
+        String withoutRef = SCHEMA.replace("user_id int [ref: > users.id]", "user_id int");
+
+        List<GeneratedFile> files = generateAndCount(withoutRef);
+
+        assertThat(renderedDelta).isEqualTo(2);
+        assertThat(reusedDelta).isEqualTo(2);
+        assertThat(files).isEqualTo(coldRender(withoutRef));
+    }
+
+    private static String content(List<GeneratedFile> files, String path) {
+        return files.stream().filter(f -> f.path().equals(path)).findFirst().orElseThrow().content();
+    }
+}
@@ -0,0 +1,145 @@
+package com.dbarchitect.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DbmlFragmentMergerTest {
+
+    private static final String CATALOG = """
+            Table Product {
+              id int [pk]
+              name varchar
+              category_id int [ref: > Category.id]
+            }
+
+            Table Category {
+              id int [pk]
+            }
+            """;
+
+    private static final String ORDERS = """
+            Table Order {
+              id int [pk]
+              product_id int
+              customer_id int [ref: > Customer.id]
+            }
+
+            Table Product {
+              id int [pk]
+            }
+
+            Ref: Order.product_id > Product.id
+            Ref: Order.coupon_id > Coupon.id
+            """;
+
+    @Test
+    void duplicateTableKeepsOwnerDomainDefinition() {
+        // Product thuộc domain 0 (catalog) theo plan, dù domain 1 cũng định nghĩa
+        DbmlFragmentMerger.MergeResult result = DbmlFragmentMerger.merge(List.of(ORDERS, CATALOG),
+                Map.of("product", 1, "category", 1, "order", 0));
+
+        assertThat(result.tables()).isEqualTo(3);
+        assertThat(result.duplicateTables()).isEqualTo(1);
+        assertThat(result.dbml()).containsOnlyOnce("Table Product").contains("name varchar");
+    }
+
+    @Test
+    void duplicateTableWithoutOwnerKeepsFirstDefinition() {
+        DbmlFragmentMerger.MergeResult result = DbmlFragmentMerger.merge(List.of(ORDERS, CATALOG), Map.of());
+
+        assertThat(result.dbml()).containsOnlyOnce("Table Product").doesNotContain("name varchar");
+    }
+
+    @Test
+    void crossDomainRefsAreKeptOnlyWhenTargetExists() {
+        DbmlFragmentMerger.MergeResult result = DbmlFragmentMerger.merge(List.of(CATALOG, ORDERS),
+                Map.of("product", 0, "category", 0, "order", 1));
+
+        assertThat(result.dbml())
+                .contains("Ref: Order.product_id > Product.id")
+                .doesNotContain("Coupon")
+                .doesNotContain("Customer.id")
+                // Ref inline tới bảng khác domain vẫn giữ
+                .contains("category_id int [ref: > Category.id]");
+        assertThat(result.refs()).isEqualTo(1);
+        assertThat(result.droppedRefs()).hasSize(2);
+        // Cột vẫn còn, chỉ bỏ phần ref
+        assertThat(result.dbml()).contains("customer_id int\n");
+    }
+
+    @Test
+    void duplicateRefIsKeptOnce() {
+        String inline = """
+                Table A {
+                  id int [pk]
+                  b_id int [ref: > B.id]
+                }
+                """;
+        String topLevel = """
+                Table B {
+                  id int [pk]
+                }
+                Ref: A.b_id > B.id
+                Ref: B.id < A.b_id
+                """;
+
+        DbmlFragmentMerger.MergeResult result = DbmlFragmentMerger.merge(List.of(inline, topLevel), Map.of());
+
+        assertThat(result.refs()).isZero();
+        assertThat(result.dbml()).contains("[ref: > B.id]").doesNotContain("Ref:");
+    }
+
+    @Test
+    void truncatedBlockIsDropped() {
+        String truncated = """
+                Table Customer {
+                  id int [pk]
+                }
+
+                Table Address {
+                  id int [pk]
+                  street varch""";
+
+        assertThat(DbmlFragmentMerger.looksTruncated(truncated)).isTrue();
+        DbmlFragmentMerger.MergeResult result = DbmlFragmentMerger.merge(List.of(truncated), Map.of());
+        assertThat(result.tables()).isEqualTo(1);
+        assertThat(result.dbml()).contains("Table Customer").doesNotContain("Address");
+    }
+
+    @Test
+    void looksTruncatedDetectsUnclosedFenceAndIgnoresBracesInStrings() {
+        assertThat(DbmlFragmentMerger.looksTruncated("```dbml\nTable A {\n  id int [pk]\n}\n")).isTrue();
+        assertThat(DbmlFragmentMerger.looksTruncated("```dbml\nTable A {\n  id int [pk]\n}\n```")).isFalse();
+        assertThat(DbmlFragmentMerger.looksTruncated(
+                "Table A {\n  name varchar [note: 'has { brace'] // and }\n}")).isFalse();
+    }
+
+    @Test
+    void stripFencesHandlesClosedMissingAndAbsentFences() {
+        assertThat(DbmlFragmentMerger.stripFences("Intro\n```dbml\nTable A {}\n```\nOutro")).isEqualTo("Table A {}\n");
+        assertThat(DbmlFragmentMerger.stripFences("```dbml\nTable A {\n  id int")).isEqualTo("Table A {\n  id int");
+        assertThat(DbmlFragmentMerger.stripFences("Table A {}")).isEqualTo("Table A {}");
+        assertThat(DbmlFragmentMerger.stripFences("```")).isEmpty();
+    }
+
+    @Test
+    void withoutTopLevelRefsKeepsTablesAndInlineRefs() {
+        String dbml = DbmlFragmentMerger.withoutTopLevelRefs(ORDERS);
+
+        assertThat(dbml).contains("Table Order", "Table Product", "[ref: > Customer.id]").doesNotContain("Ref:");
+    }
+
+    @Test
+    void enumsAreDeduplicatedByName() {
+        String status = "Enum status {\n  active\n  inactive\n}\n";
+
+        DbmlFragmentMerger.MergeResult result = DbmlFragmentMerger.merge(
+                List.of(status + "Table A {\n  id int [pk]\n}", status), Map.of());
+
+        assertThat(result.dbml()).containsOnlyOnce("Enum status");
+    }
+}
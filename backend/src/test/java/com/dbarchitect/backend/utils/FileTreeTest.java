@@ -0,0 +1,172 @@
+package com.dbarchitect.backend.utils;
+
+import com.dbarchitect.backend.entities.FileNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileTreeTest {
+
+    private static final String PROJECT = "Shop";
+    private static final String BASE = CodeGenerator.BASE_PACKAGE_PATH;
+
+    // Thuật toán ProjectTreeBuilder.buildTree trước khi có FileTree, dùng làm chuẩn so sánh
+    private static FileNode referenceTree(List<FileNode> flatFiles, String projectName) {
+        FileNode root = new FileNode(projectName, "folder", projectName);
+        for (FileNode file : flatFiles) {
+            String[] parts = file.getPath().split("/");
+            FileNode currentNode = root;
+            StringBuilder currentPath = new StringBuilder(projectName);
+            for (int i = 0; i < parts.length; i++) {
+                String part = parts[i];
+                currentPath.append("/").append(part);
+                FileNode nextNode = currentNode.getChildren().stream()
+                        .filter(node -> node.getName().equals(part))
+                        .findFirst()
+                        .orElse(null);
+                if (nextNode == null) {
+                    nextNode = i == parts.length - 1 ? file : new FileNode(part, "folder", currentPath.toString());
+                    currentNode.getChildren().add(nextNode);
+                }
+                currentNode = nextNode;
+            }
+        }
+        return root;
+    }
+
+    // Mỗi lần gọi tạo node mới: cả hai thuật toán gắn chính các node file vào cây (và có thể thêm con vào chúng)
+    private static List<FileNode> files(List<String> paths) {
+        List<FileNode> files = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            FileNode file = new FileNode(path.substring(path.lastIndexOf('/') + 1), "file", path);
+            file.setContent(path);
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static List<String> generatedPaths(int tables) {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < tables; i++) {
+            paths.add(BASE + "entity/T" + i + ".java");
+            paths.add(BASE + "repository/T" + i + "Repository.java");
+            paths.add(BASE + "service/T" + i + "Service.java");
+            paths.add(BASE + "controller/T" + i + "Controller.java");
+        }
+        return paths;
+    }
+
+    static Stream<Arguments> pathLists() {
+        List<String> shuffled = new ArrayList<>(generatedPaths(50));
+        Collections.shuffle(shuffled, new Random(42));
+        return Stream.of(
+                Arguments.of("empty", List.of()),
+                Arguments.of("generated", generatedPaths(50)),
+                Arguments.of("shuffled", shuffled),
+                Arguments.of("root files", List.of("pom.xml", "README.md", "src/App.java", "pom.xml")),
+                Arguments.of("duplicate paths", List.of("a/b/C.java", "a/b/D.java", "a/b/C.java", "a/x/C.java", "a/b/D.java")),
+                // File trùng tên thư mục: cách cũ dùng luôn node file làm thư mục
+                Arguments.of("file then folder", List.of("a/b", "a/b/C.java", "a/b/d/E.java")),
+                Arguments.of("folder then file", List.of("a/b/C.java", "a/b", "a/c")),
+                Arguments.of("interleaved folders", List.of("a/b/C.java", "a/D.java", "a/b/E.java", "x/F.java", "a/b/G.java")));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("pathLists")
+    void buildMatchesReferenceAlgorithm(String name, List<String> paths) {
+        FileNode expected = referenceTree(files(paths), PROJECT);
+
+        assertThat(FileTree.build(files(paths), PROJECT).root()).isEqualTo(expected);
+        assertThat(ProjectTreeBuilder.buildTree(files(paths), PROJECT)).isEqualTo(expected);
+    }
+
+    @Test
+    void duplicatePathKeepsFirstFile() {
+        List<FileNode> files = files(List.of("a/C.java", "a/C.java"));
+        files.get(1).setContent("second");
+
+        FileNode a = FileTree.build(files, PROJECT).root().getChildren().get(0);
+
+        assertThat(a.getChildren()).hasSize(1);
+        assertThat(a.getChildren().get(0).getContent()).isEqualTo("a/C.java");
+    }
+
+    @Test
+    void folderPathsArePrefixedWithProjectName() {
+        FileTree tree = FileTree.build(files(List.of("a/b/C.java")), PROJECT);
+
+        assertThat(tree.subtree("a/b").getPath()).isEqualTo(PROJECT + "/a/b");
+        assertThat(tree.subtree("a/b/C.java").getPath()).isEqualTo("a/b/C.java");
+        assertThat(tree.folderCount()).isEqualTo(3);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"a/b", "/a/b", "a/b/", "//a/b//", " a/b ", PROJECT + "/a/b", PROJECT + "/a/b/"})
+    void subtreeNormalizesPath(String path) {
+        FileTree tree = FileTree.build(files(List.of("a/b/C.java", "a/D.java")), PROJECT);
+
+        FileNode b = tree.subtree(path);
+
+        assertThat(b).isNotNull();
+        assertThat(b.getName()).isEqualTo("b");
+        assertThat(b.getType()).isEqualTo("folder");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "/", PROJECT, PROJECT + "/"})
+    void subtreeOfRootPathIsRoot(String path) {
+        FileTree tree = FileTree.build(files(List.of("a/D.java")), PROJECT);
+
+        assertThat(tree.subtree(path)).isSameAs(tree.root());
+        assertThat(tree.subtree(null)).isSameAs(tree.root());
+    }
+
+    @Test
+    void subtreeFindsFilesAndReturnsNullForUnknownPaths() {
+        FileTree tree = FileTree.build(files(generatedPaths(3)), PROJECT);
+
+        assertThat(tree.subtree(BASE + "entity/T1.java").getContent()).isEqualTo(BASE + "entity/T1.java");
+        assertThat(tree.subtree(BASE + "controller").getChildren()).hasSize(3);
+        assertThat(tree.subtree(BASE + "dto")).isNull();
+        assertThat(tree.subtree(BASE + "entity/T9.java")).isNull();
+        assertThat(tree.subtree(BASE + "entity/T1.java/x")).isNull();
+        assertThat(tree.subtree("entity")).isNull();
+    }
+
+    @Test
+    void sortedPutsFoldersFirstThenSortsByNameAtEveryLevel() {
+        FileTree tree = FileTree.build(files(List.of(
+                "z.txt", "b/Y.java", "a/c/Z.java", "b/A.java", "a/B.java", "a/c/A.java", "pom.xml", "a/a/X.java")), PROJECT);
+
+        FileNode root = tree.sorted().root();
+
+        assertThat(root.getChildren()).extracting(FileNode::getName).containsExactly("a", "b", "pom.xml", "z.txt");
+        FileNode a = tree.subtree("a");
+        assertThat(a.getChildren()).extracting(FileNode::getName).containsExactly("a", "c", "B.java");
+        assertThat(tree.subtree("a/c").getChildren()).extracting(FileNode::getName).containsExactly("A.java", "Z.java");
+        assertThat(tree.subtree("b").getChildren()).extracting(FileNode::getName).containsExactly("A.java", "Y.java");
+    }
+
+    @Test
+    void sortedKeepsSameNodes() {
+        List<String> paths = new ArrayList<>(generatedPaths(20));
+        Collections.shuffle(paths, new Random(7));
+        FileTree tree = FileTree.build(files(paths), PROJECT);
+        FileNode entity = tree.subtree(BASE + "entity");
+
+        tree.sorted();
+
+        assertThat(tree.subtree(BASE + "entity")).isSameAs(entity);
+        assertThat(entity.getChildren()).hasSize(20).isSortedAccordingTo((x, y) -> x.getName().compareTo(y.getName()));
+    }
+}
@@ -0,0 +1,122 @@
+package com.dbarchitect.backend.utils;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.Part;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeminiHedgingTest {
+
+    private static final String PRIMARY = "gemini-2.5-pro";
+    private static final String HEDGE = "gemini-2.5-flash-lite";
+    private static final String FALLBACK = "gemini-2.5-flash";
+    private static final List<Content> PROMPT = List.of(Content.fromParts(Part.fromText("blog")));
+
+    private MockEnvironment environment;
+    private GeminiResilience resilience;
+    private GeminiHedging hedging;
+    private GeminiHedging.Attempt attempt;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        environment = new MockEnvironment()
+                .withProperty("gemini.hedge.enabled", "true")
+                .withProperty("gemini.hedge.initial-delay", "100ms")
+                .withProperty("gemini.hedge.min-delay", "10ms")
+                .withProperty("gemini.hedge.target." + PRIMARY, HEDGE)
+                .withProperty("gemini.stub.latency-distribution", "fixed")
+                .withProperty("gemini.stub.latency", "1ms");
+        // Như Environment của Spring Boot: đọc được Duration dạng "100ms"
+        environment.setConversionService(new ApplicationConversionService());
+        StubGeminiClient client = new StubGeminiClient(environment);
+        resilience = new GeminiResilience(environment);
+        hedging = new GeminiHedging(environment);
+        attempt = model -> resilience.executeWithModel(model, m -> client.generateContent(m, PROMPT, null).text());
+    }
+
+    @AfterEach
+    void tearDown() {
+        hedging.shutdown();
+        resilience.shutdown();
+    }
+
+    private GeminiResilience.ModelStatus status(String model) {
+        return resilience.status().stream().filter(s -> s.model().equals(model)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void fastPrimaryDoesNotHedge() {
+        GeminiResilience.Answer<String> answer = hedging.execute(PRIMARY, attempt);
+
+        assertThat(answer.model()).isEqualTo(PRIMARY);
+        assertThat(hedging.stats().hedgesFired()).isZero();
+        assertThat(hedging.stats().primaryWins()).isEqualTo(1);
+    }
+
+    @Test
+    void slowPrimaryIsHedgedAndCancelled() throws Exception {
+        environment.setProperty("gemini.stub." + PRIMARY + ".latency", "5s");
+
+        long start = System.nanoTime();
+        GeminiResilience.Answer<String> answer = hedging.execute(PRIMARY, attempt);
+
+        assertThat(answer.model()).isEqualTo(HEDGE);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+        assertThat(hedging.stats().hedgesFired()).isEqualTo(1);
+        assertThat(hedging.stats().hedgeWins()).isEqualTo(1);
+        assertThat(hedging.stats().wastedMillis()).isGreaterThanOrEqualTo(100);
+
+        // Request thua bị hủy: nhả bulkhead và không bị tính là lỗi của model
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (status(PRIMARY).inFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(status(PRIMARY).inFlight()).isZero();
+        assertThat(status(PRIMARY).failures()).isZero();
+        assertThat(resilience.circuitState(PRIMARY)).isEqualTo(GeminiResilience.CircuitState.CLOSED);
+    }
+
+    @Test
+    void failingPrimaryFiresHedgeImmediately() {
+        environment.setProperty("gemini.stub." + PRIMARY + ".failure-rate", "1");
+
+        GeminiResilience.Answer<String> answer = hedging.execute(PRIMARY, attempt);
+
+        assertThat(answer.model()).isEqualTo(HEDGE);
+        assertThat(hedging.stats().failedAttempts()).isEqualTo(1);
+        assertThat(hedging.stats().hedgeWins()).isEqualTo(1);
+    }
+
+    @Test
+    void fallbackAnswerDoesNotCountAsPrimaryLatency() {
+        environment.setProperty("gemini.hedge.min-samples", "1");
+        hedging.shutdown();
+        hedging = new GeminiHedging(environment);
+        environment.setProperty("gemini.fallback." + PRIMARY, FALLBACK);
+        environment.setProperty("gemini.stub." + PRIMARY + ".failure-rate", "1");
+        environment.setProperty("gemini.stub." + HEDGE + ".failure-rate", "1");
+        environment.setProperty("gemini.stub." + FALLBACK + ".latency", "300ms");
+        Duration before = hedging.hedgeDelay(PRIMARY);
+
+        GeminiResilience.Answer<String> answer = hedging.execute(PRIMARY, attempt);
+
+        assertThat(answer.model()).isEqualTo(FALLBACK);
+        assertThat(hedging.hedgeDelay(PRIMARY)).isEqualTo(before);
+    }
+
+    @Test
+    void hedgeDelayUsesInitialDelayUntilEnoughSamples() {
+        assertThat(hedging.hedgeDelay(PRIMARY).toMillis()).isEqualTo(100);
+        assertThat(hedging.hedgeTarget(PRIMARY)).isEqualTo(HEDGE);
+        assertThat(hedging.hedgeTarget(HEDGE)).isEqualTo(HEDGE);
+    }
+}
@@ -0,0 +1,137 @@
+package com.dbarchitect.backend.utils;
+
+import com.google.genai.types.Content;
+import com.google.genai.types.Part;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeminiResilienceTest {
+
+    private static final String MODEL = "gemini-2.5-flash";
+    private static final String FALLBACK = "gemini-2.5-flash-lite";
+    private static final List<Content> PROMPT = List.of(Content.fromParts(Part.fromText("blog")));
+
+    private MockEnvironment environment;
+    private StubGeminiClient client;
+    private GeminiResilience resilience;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        environment = new MockEnvironment()
+                .withProperty("gemini.stub.latency-distribution", "fixed")
+                .withProperty("gemini.stub.latency", "1ms")
+                .withProperty("gemini.resilience.failure-threshold", "2")
+                .withProperty("gemini.resilience.open-duration", "200ms")
+                .withProperty("gemini.resilience.bulkhead-wait", "50ms");
+        // Như Environment của Spring Boot: đọc được Duration dạng "100ms"
+        environment.setConversionService(new ApplicationConversionService());
+        client = new StubGeminiClient(environment);
+        resilience = new GeminiResilience(environment);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resilience.shutdown();
+    }
+
+    private GeminiResilience.Answer<String> call(String model) {
+        return resilience.executeWithModel(model, m -> client.generateContent(m, PROMPT, null).text());
+    }
+
+    private GeminiResilience.ModelStatus status(String model) {
+        return resilience.status().stream().filter(s -> s.model().equals(model)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void circuitOpensAfterThresholdThenClosesAfterSuccessfulTrial() throws Exception {
+        environment.setProperty("gemini.stub.failure-rate", "1");
+        assertThatThrownBy(() -> call(MODEL)).isInstanceOf(GeminiUnavailableException.class);
+        assertThat(resilience.circuitState(MODEL)).isEqualTo(GeminiResilience.CircuitState.CLOSED);
+        assertThatThrownBy(() -> call(MODEL)).isInstanceOf(GeminiUnavailableException.class);
+        assertThat(resilience.circuitState(MODEL)).isEqualTo(GeminiResilience.CircuitState.OPEN);
+
+        // Đang mở: fail fast, không gọi model
+        assertThatThrownBy(() -> call(MODEL)).hasMessageContaining("circuit breaker");
+        assertThat(status(MODEL).rejections()).isEqualTo(1);
+        assertThat(status(MODEL).failures()).isEqualTo(2);
+
+        Thread.sleep(250);
+        assertThat(resilience.circuitState(MODEL)).isEqualTo(GeminiResilience.CircuitState.HALF_OPEN);
+        environment.setProperty("gemini.stub.failure-rate", "0");
+        assertThat(call(MODEL).value()).contains("Table");
+        assertThat(resilience.circuitState(MODEL)).isEqualTo(GeminiResilience.CircuitState.CLOSED);
+    }
+
+    @Test
+    void failedTrialReopensCircuit() throws Exception {
+        environment.setProperty("gemini.stub.failure-rate", "1");
+        assertThatThrownBy(() -> call(MODEL)).isInstanceOf(GeminiUnavailableException.class);
+        assertThatThrownBy(() -> call(MODEL)).isInstanceOf(GeminiUnavailableException.class);
+
+        Thread.sleep(250);
+        assertThatThrownBy(() -> call(MODEL)).isInstanceOf(GeminiUnavailableException.class);
+        assertThat(resilience.circuitState(MODEL)).isEqualTo(GeminiResilience.CircuitState.OPEN);
+        assertThat(status(MODEL).failures()).isEqualTo(3);
+    }
+
+    @Test
+    void tokenBucketRejectsCallsBeyondBurst() {
+        environment.setProperty("gemini.resilience.rate-per-second", "0.001");
+        environment.setProperty("gemini.resilience.burst", "2");
+
+        call(MODEL);
+        call(MODEL);
+        assertThatThrownBy(() -> call(MODEL)).hasMessageContaining("vượt giới hạn tốc độ gọi");
+        assertThat(status(MODEL).rejections()).isEqualTo(1);
+        // Bị từ chối không phải lỗi của model: circuit vẫn đóng
+        assertThat(resilience.circuitState(MODEL)).isEqualTo(GeminiResilience.CircuitState.CLOSED);
+    }
+
+    @Test
+    void bulkheadRejectsWhenMaxInFlightReached() throws Exception {
+        environment.setProperty("gemini.resilience.max-in-flight", "1");
+        environment.setProperty("gemini.stub.latency", "500ms");
+
+        CompletableFuture<GeminiResilience.Answer<String>> first = CompletableFuture.supplyAsync(() -> call(MODEL));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((resilience.status().isEmpty() || status(MODEL).inFlight() == 0) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThatThrownBy(() -> call(MODEL)).hasMessageContaining("quá nhiều lời gọi đồng thời");
+
+        assertThat(first.get(5, TimeUnit.SECONDS).model()).isEqualTo(MODEL);
+        assertThat(status(MODEL).inFlight()).isZero();
+    }
+
+    @Test
+    void timeoutCountsAsFailure() {
+        environment.setProperty("gemini.resilience.timeout", "50ms");
+        environment.setProperty("gemini.stub.latency", "2s");
+
+        assertThatThrownBy(() -> call(MODEL)).hasMessageContaining("quá thời gian chờ");
+        assertThat(status(MODEL).timeouts()).isEqualTo(1);
+        assertThat(status(MODEL).failures()).isEqualTo(1);
+    }
+
+    @Test
+    void reportsFallbackModelThatAnswered() {
+        environment.setProperty("gemini.fallback." + MODEL, FALLBACK);
+        environment.setProperty("gemini.stub." + MODEL + ".failure-rate", "1");
+
+        GeminiResilience.Answer<String> answer = call(MODEL);
+
+        assertThat(answer.model()).isEqualTo(FALLBACK);
+        assertThat(answer.value()).contains("Table");
+        assertThat(resilience.fallbackChain(MODEL)).containsExactly(MODEL, FALLBACK);
+    }
+}
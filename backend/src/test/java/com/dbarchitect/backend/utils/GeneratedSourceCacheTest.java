@@ -0,0 +1,122 @@
+package com.dbarchitect.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeneratedSourceCacheTest {
+
+    private static List<GeneratedFile> files(String content) {
+        return List.of(new GeneratedFile("entity/User.java", content));
+    }
+
+    @Test
+    void keyDependsOnDbmlAndTemplateVersion() {
+        String key = GeneratedSourceCache.key("Table a {}", "v1");
+
+        assertThat(GeneratedSourceCache.key("Table a {}", "v1")).isEqualTo(key);
+        assertThat(GeneratedSourceCache.key("Table b {}", "v1")).isNotEqualTo(key);
+        assertThat(GeneratedSourceCache.key("Table a {}", "v2")).isNotEqualTo(key);
+    }
+
+    @Test
+    void secondGetIsServedFromCache() throws Exception {
+        GeneratedSourceCache cache = new GeneratedSourceCache(8, Long.MAX_VALUE);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<GeneratedFile> first = cache.get("k", () -> {
+            loads.incrementAndGet();
+            return files("a");
+        });
+        List<GeneratedFile> second = cache.get("k", () -> {
+            loads.incrementAndGet();
+            return files("b");
+        });
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(cache.stats().misses()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentMissesLoadOnce() throws Exception {
+        GeneratedSourceCache cache = new GeneratedSourceCache(8, Long.MAX_VALUE);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 16;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<GeneratedFile>>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(() -> cache.get("k", () -> {
+                    loads.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return files("a");
+                })));
+            }
+            // Chờ tất cả caller đã vào get() rồi mới cho loader chạy xong
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cache.stats().inFlightJoins() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<List<GeneratedFile>> future : futures) {
+                assertThat(future.get()).isEqualTo(files("a"));
+            }
+        }
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void loaderFailureIsNotCached() throws Exception {
+        GeneratedSourceCache cache = new GeneratedSourceCache(8, Long.MAX_VALUE);
+
+        assertThatThrownBy(() -> cache.get("k", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.get("k", () -> files("ok"))).isEqualTo(files("ok"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedByEntryCount() throws Exception {
+        GeneratedSourceCache cache = new GeneratedSourceCache(2, Long.MAX_VALUE);
+        cache.get("a", () -> files("a"));
+        cache.get("b", () -> files("b"));
+        cache.get("a", () -> files("a")); // a mới dùng -> b là entry cũ nhất
+        cache.get("c", () -> files("c"));
+
+        assertThat(cache.getIfPresent("a")).isNotNull();
+        assertThat(cache.getIfPresent("b")).isNull();
+        assertThat(cache.getIfPresent("c")).isNotNull();
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsByByteBudgetAndSkipsOversizedResults() throws Exception {
+        long oneEntry = GeneratedSourceCache.estimateBytes(files("x".repeat(100)));
+        GeneratedSourceCache cache = new GeneratedSourceCache(100, oneEntry * 2);
+        cache.get("a", () -> files("x".repeat(100)));
+        cache.get("b", () -> files("y".repeat(100)));
+        cache.get("c", () -> files("z".repeat(100)));
+
+        assertThat(cache.getIfPresent("a")).isNull();
+        assertThat(cache.stats().estimatedBytes()).isLessThanOrEqualTo(oneEntry * 2);
+
+        // Lớn hơn cả cache: trả về nhưng không lưu, không đẩy các entry khác ra
+        cache.get("huge", () -> files("h".repeat(1000)));
+        assertThat(cache.getIfPresent("huge")).isNull();
+        assertThat(cache.getIfPresent("c")).isNotNull();
+    }
+}
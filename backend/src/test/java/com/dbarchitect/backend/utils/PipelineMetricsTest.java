@@ -0,0 +1,152 @@
+package com.dbarchitect.backend.utils;
+
+import com.dbarchitect.backend.benchmarks.BenchmarkFixtures;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelineMetricsTest {
+
+    private static final String OLD_SOURCE = """
+            package com.example.demo.entity;
+
+            public class User {
+                private Long id;
+            }
+            """;
+
+    private SimpleMeterRegistry registry;
+    private PipelineMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new PipelineMetrics(registry);
+    }
+
+    private Meter.Id meter(String name) {
+        return registry.getMeters().stream()
+                .map(Meter::getId)
+                .filter(id -> id.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Không có metric " + name));
+    }
+
+    private static Set<String> keys(Meter.Id id) {
+        return id.getTags().stream().map(Tag::getKey).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    // Prometheus bỏ các series có bộ tag key khác với series đầu tiên cùng tên
+    private void assertConsistentTagKeys() {
+        Map<String, Set<String>> keysByName = new HashMap<>();
+        for (Meter meter : registry.getMeters()) {
+            Meter.Id id = meter.getId();
+            assertThat(id.getName()).startsWith("dbarchitect.");
+            Set<String> first = keysByName.putIfAbsent(id.getName(), keys(id));
+            if (first != null) {
+                assertThat(keys(id)).as(id.getName()).isEqualTo(first);
+            }
+        }
+    }
+
+    @Test
+    void compareMetricsHaveNoSchemaSize() throws Exception {
+        JavaSourceDiff diff = new JavaSourceDiff(1, Duration.ofSeconds(10), 16, metrics);
+
+        diff.diff(OLD_SOURCE, OLD_SOURCE.replace("private Long id;", "private Long id;\n    private String name;"));
+
+        assertThat(keys(meter("dbarchitect.compare.parse"))).containsExactly("endpoint", "outcome");
+        assertThat(keys(meter("dbarchitect.compare.units"))).containsExactly("endpoint");
+        assertConsistentTagKeys();
+    }
+
+    @Test
+    void zipFromCacheIsTaggedWithRealTableCount() throws Exception {
+        GeneratedSourceCache cache = new GeneratedSourceCache(8, Long.MAX_VALUE);
+        TemplateRegistry templates = BenchmarkFixtures.templateRegistry();
+        CodeGenerator generator = new CodeGenerator(templates, null, cache, new ProjectRenderSnapshots(0, 0), metrics,
+                1, CompiledSourceRenderer.COMPILED);
+        // 12 bảng chỉ sinh entity: chia số file cho số template sẽ ra 3 bảng (nhóm 1-10)
+        List<GeneratedFile> files = IntStream.range(0, 12)
+                .mapToObj(i -> new GeneratedFile("entity/T" + i + ".java", "class T" + i + " {}"))
+                .toList();
+        String dbml = "Table t {}";
+        cache.get(GeneratedSourceCache.key(dbml, templates.version()), () -> files);
+
+        generator.writeProjectZip(1L, dbml, new ByteArrayOutputStream());
+
+        Meter.Id zip = meter("dbarchitect.zip.build");
+        assertThat(keys(zip)).containsExactly("cache", "endpoint", "schema_size");
+        assertThat(zip.getTag("schema_size")).isEqualTo("11-50");
+        assertThat(zip.getTag("cache")).isEqualTo("hit");
+        assertThat(keys(meter("dbarchitect.zip.size"))).isEqualTo(keys(zip));
+        assertConsistentTagKeys();
+    }
+
+    @Test
+    void countTablesCountsEntityFiles() {
+        List<GeneratedFile> files = List.of(
+                new GeneratedFile("entity/User.java", ""),
+                new GeneratedFile("repository/UserRepository.java", ""),
+                new GeneratedFile("service/UserService.java", ""),
+                new GeneratedFile("entity/Post.java", ""));
+
+        assertThat(CodeGenerator.countTables(files)).isEqualTo(2);
+        assertThat(CodeGenerator.countTables(List.of())).isZero();
+    }
+
+    @Test
+    void geminiMetricsKeepTagKeysAcrossOutcomes() {
+        Tags base = metrics.tags();
+
+        metrics.geminiCall(base, "gemini-2.5-flash", "generate", 1_000, null, new GeminiUnavailableException("down", null));
+        metrics.geminiCall(base, "gemini-2.5-flash", "generate", 1_000, null, null);
+
+        assertThat(registry.getMeters()).extracting(m -> m.getId().getName())
+                .contains("dbarchitect.gemini.requests", "dbarchitect.gemini.errors");
+        assertThat(keys(meter("dbarchitect.gemini.requests"))).containsExactly("endpoint", "model", "operation", "outcome");
+        assertThat(keys(meter("dbarchitect.gemini.errors"))).containsExactly("endpoint", "error", "model", "operation");
+        assertConsistentTagKeys();
+    }
+
+    @Test
+    void failedParseIsTaggedWithUnknownSize() throws Exception {
+        ParsedSchemaCache cache = new ParsedSchemaCache(8, metrics);
+
+        cache.get("Table users {\n  id int [pk]\n}\nTable posts {\n  id int [pk]\n}");
+        assertThatThrownBy(() -> cache.get("Table users {\n  id int [pk]\n"));
+
+        List<Meter.Id> parses = registry.getMeters().stream().map(Meter::getId)
+                .filter(id -> id.getName().equals("dbarchitect.dbml.parse"))
+                .toList();
+        assertThat(parses).extracting(id -> id.getTag("outcome") + ":" + id.getTag("schema_size"))
+                .containsExactlyInAnyOrder("success:1-10", "error:" + PipelineMetrics.UNKNOWN_SIZE);
+        assertConsistentTagKeys();
+    }
+
+    @Test
+    void schemaSizeBuckets() {
+        assertThat(PipelineMetrics.sizeBucket(0)).isEqualTo("1-10");
+        assertThat(PipelineMetrics.sizeBucket(10)).isEqualTo("1-10");
+        assertThat(PipelineMetrics.sizeBucket(11)).isEqualTo("11-50");
+        assertThat(PipelineMetrics.sizeBucket(1000)).isEqualTo("201-1000");
+        assertThat(PipelineMetrics.sizeBucket(1001)).isEqualTo("1000+");
+        assertThat(metrics.tagsUnknownSize()).extracting(Tag::getKey).containsExactly("endpoint", "schema_size");
+    }
+}
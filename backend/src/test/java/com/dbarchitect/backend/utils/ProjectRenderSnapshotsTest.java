@@ -0,0 +1,82 @@
+package com.dbarchitect.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProjectRenderSnapshotsTest {
+
+    private static final String VERSION = "v1";
+
+    private static Map<String, ProjectRenderSnapshots.RenderedTable> tables(String content) {
+        TableModel model = TemplateRegistry.sampleModels().getFirst();
+        return Map.of(model.tableName(), new ProjectRenderSnapshots.RenderedTable(model,
+                List.of(new GeneratedFile("entity/" + model.className() + ".java", content))));
+    }
+
+    private static long bytes(Map<String, ProjectRenderSnapshots.RenderedTable> tables) {
+        return GeneratedSourceCache.estimateBytes(tables.values().iterator().next().files());
+    }
+
+    @Test
+    void returnsPreviousTablesOnlyForSameTemplateVersion() {
+        ProjectRenderSnapshots snapshots = new ProjectRenderSnapshots(4, Long.MAX_VALUE);
+        snapshots.store(1L, VERSION, tables("a"));
+
+        assertThat(snapshots.previousTables(1L, VERSION)).hasSize(1);
+        assertThat(snapshots.previousTables(1L, "v2")).isEmpty();
+        assertThat(snapshots.previousTables(2L, VERSION)).isEmpty();
+        assertThat(snapshots.previousTables(null, VERSION)).isEmpty();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedProjectByCount() {
+        ProjectRenderSnapshots snapshots = new ProjectRenderSnapshots(2, Long.MAX_VALUE);
+        snapshots.store(1L, VERSION, tables("a"));
+        snapshots.store(2L, VERSION, tables("b"));
+        snapshots.previousTables(1L, VERSION);
+        snapshots.store(3L, VERSION, tables("c"));
+
+        assertThat(snapshots.previousTables(1L, VERSION)).isNotEmpty();
+        assertThat(snapshots.previousTables(2L, VERSION)).isEmpty();
+        assertThat(snapshots.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsByByteBudget() {
+        long one = bytes(tables("x".repeat(1000)));
+        ProjectRenderSnapshots snapshots = new ProjectRenderSnapshots(100, one * 2);
+        snapshots.store(1L, VERSION, tables("x".repeat(1000)));
+        snapshots.store(2L, VERSION, tables("y".repeat(1000)));
+        snapshots.store(3L, VERSION, tables("z".repeat(1000)));
+
+        assertThat(snapshots.previousTables(1L, VERSION)).isEmpty();
+        assertThat(snapshots.stats().projects()).isEqualTo(2);
+        assertThat(snapshots.stats().estimatedBytes()).isEqualTo(one * 2);
+    }
+
+    @Test
+    void replacingAProjectUpdatesByteAccounting() {
+        ProjectRenderSnapshots snapshots = new ProjectRenderSnapshots(4, Long.MAX_VALUE);
+        snapshots.store(1L, VERSION, tables("x".repeat(1000)));
+        snapshots.store(1L, VERSION, tables("y"));
+
+        assertThat(snapshots.stats().estimatedBytes()).isEqualTo(bytes(tables("y")));
+        snapshots.evict(1L);
+        assertThat(snapshots.stats().estimatedBytes()).isZero();
+    }
+
+    @Test
+    void oversizedProjectIsNotKeptAndDropsItsStaleSnapshot() {
+        long small = bytes(tables("a"));
+        ProjectRenderSnapshots snapshots = new ProjectRenderSnapshots(4, small * 2);
+        snapshots.store(1L, VERSION, tables("a"));
+        snapshots.store(1L, VERSION, tables("x".repeat(10_000)));
+
+        assertThat(snapshots.previousTables(1L, VERSION)).isEmpty();
+        assertThat(snapshots.stats().estimatedBytes()).isZero();
+    }
+}
@@ -0,0 +1,109 @@
+package com.dbarchitect.backend.utils;
+
+import com.dbarchitect.backend.benchmarks.BenchmarkFixtures;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hai backend sinh code (FreeMarker và CompiledSourceRenderer) phải cho output giống hệt từng byte.
+ * File golden nằm ở src/test/resources/golden/{tableName}/{template}.java.txt, được sinh từ các file .ftl;
+ * khi sửa template thì sinh lại golden và sửa CompiledSourceRenderer cho khớp.
+ */
+class TemplateBackendGoldenTest {
+
+    private static TemplateRegistry freemarker;
+    private static CompiledSourceRenderer compiled;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        freemarker = BenchmarkFixtures.templateRegistry();
+        compiled = new CompiledSourceRenderer(freemarker.version());
+    }
+
+    static Stream<Arguments> goldenCases() {
+        List<Arguments> cases = new ArrayList<>();
+        for (TableModel model : TemplateRegistry.sampleModels()) {
+            for (String template : TemplateRegistry.TEMPLATE_NAMES) {
+                cases.add(Arguments.of(model.tableName(), template, model));
+            }
+        }
+        return cases.stream();
+    }
+
+    @ParameterizedTest(name = "{0}/{1}")
+    @MethodSource("goldenCases")
+    void bothBackendsMatchGoldenFile(String tableName, String template, TableModel model) throws Exception {
+        byte[] golden = golden(tableName, template);
+
+        assertThat(freemarker.render(template, model).getBytes(StandardCharsets.UTF_8)).isEqualTo(golden);
+        assertThat(compiled.render(template, model).getBytes(StandardCharsets.UTF_8)).isEqualTo(golden);
+    }
+
+    @Test
+    void randomModelsRenderIdentically() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            TableModel model = randomModel(random, i);
+            for (String template : TemplateRegistry.TEMPLATE_NAMES) {
+                assertThat(compiled.render(template, model))
+                        .as("%s của %s", template, model.tableName())
+                        .isEqualTo(freemarker.render(template, model));
+            }
+        }
+    }
+
+    @Test
+    void selectsBackendFromProperty() throws Exception {
+        assertThat(CompiledSourceRenderer.select("compiled", freemarker)).isInstanceOf(CompiledSourceRenderer.class);
+        assertThat(CompiledSourceRenderer.select("freemarker", freemarker)).isSameAs(freemarker);
+        // Template có thể bị sửa lúc chạy (dev) -> luôn thông dịch .ftl
+        TemplateRegistry reloading = new TemplateRegistry(BenchmarkFixtures.freemarkerConfiguration(), true);
+        assertThat(CompiledSourceRenderer.select("compiled", reloading)).isSameAs(reloading);
+    }
+
+    private static byte[] golden(String tableName, String template) throws Exception {
+        String path = "/golden/" + tableName + "/" + template.replace(".ftl", ".java.txt");
+        try (InputStream in = TemplateBackendGoldenTest.class.getResourceAsStream(path)) {
+            assertThat(in).as("file golden %s", path).isNotNull();
+            return in.readAllBytes();
+        }
+    }
+
+    private static final String[] TYPES = {"String", "Integer", "Boolean", "LocalDateTime", "BigDecimal"};
+
+    private static TableModel randomModel(Random random, int n) {
+        String tableName = "table_" + n;
+        boolean hasPk = random.nextBoolean();
+        boolean hasIncrement = hasPk && random.nextBoolean();
+        String idType = hasPk ? TYPES[random.nextInt(2)] : null;
+
+        List<TableModel.Field> fields = new ArrayList<>();
+        if (hasPk) fields.add(new TableModel.Field("id", "id", idType, true));
+        for (int i = random.nextInt(12); i > 0; i--) {
+            fields.add(new TableModel.Field("col_" + i, "col" + i, TYPES[random.nextInt(TYPES.length)], false));
+        }
+        List<TableModel.ManyToOne> manyToOne = new ArrayList<>();
+        for (int i = random.nextInt(4); i > 0; i--) {
+            manyToOne.add(new TableModel.ManyToOne("ref_" + i + "_id", "Ref" + i, "ref" + i));
+        }
+        List<TableModel.OneToMany> oneToMany = new ArrayList<>();
+        for (int i = random.nextInt(4); i > 0; i--) {
+            oneToMany.add(new TableModel.OneToMany("Child" + i, "child" + i + "s", "table" + n));
+        }
+        List<String> imports = oneToMany.isEmpty() ? List.of() : List.of("java.util.List");
+        return new TableModel("com.example.demo", tableName, "Table_" + n, hasIncrement, idType,
+                imports, fields, manyToOne, oneToMany);
+    }
+}
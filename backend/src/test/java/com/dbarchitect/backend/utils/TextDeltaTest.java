@@ -0,0 +1,81 @@
+package com.dbarchitect.backend.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TextDeltaTest {
+
+    private static final String TABLE = """
+            Table users {
+              id int [pk]
+              name varchar
+            }""";
+
+    static Stream<Arguments> pairs() {
+        return Stream.of(
+                Arguments.of("", ""),
+                Arguments.of("", TABLE),
+                Arguments.of(TABLE, ""),
+                Arguments.of(TABLE, TABLE),
+                // Thay toàn bộ
+                Arguments.of("a\nb\nc", "x\ny\nz"),
+                // Sửa ở đầu / cuối
+                Arguments.of(TABLE, "// header\n" + TABLE),
+                Arguments.of(TABLE, TABLE.substring(TABLE.indexOf('\n') + 1)),
+                Arguments.of(TABLE, TABLE + "\nRef: posts.user_id > users.id"),
+                Arguments.of(TABLE, TABLE.substring(0, TABLE.lastIndexOf('\n'))),
+                // Dòng trống / xuống dòng ở cuối
+                Arguments.of(TABLE, TABLE + "\n"),
+                Arguments.of(TABLE + "\n", TABLE),
+                Arguments.of("\n", ""),
+                Arguments.of("a\n\n\nb", "a\nb"),
+                // CRLF: \r được giữ như một phần của dòng
+                Arguments.of(TABLE.replace("\n", "\r\n"), TABLE),
+                Arguments.of(TABLE, TABLE.replace("\n", "\r\n")),
+                Arguments.of("a\r\nb\r\n", "a\r\nc\r\n"),
+                // Dòng mở đầu bằng ký tự trùng mã thao tác
+                Arguments.of("=1\n-2", "+3\n=1\n-2"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("pairs")
+    void applyOfDiffRestoresTarget(String base, String target) {
+        String delta = TextDelta.diff(base, target);
+
+        assertThat(delta).isNotNull();
+        assertThat(TextDelta.apply(base, delta)).isEqualTo(target);
+    }
+
+    @Test
+    void unchangedPrefixAndSuffixAreEncodedAsKeepRuns() {
+        String base = "a\nb\nc\nd\ne";
+        String target = "a\nb\nX\nd\ne";
+
+        assertThat(TextDelta.diff(base, target)).isEqualTo("=2\n-1\n+X\n=2\n");
+    }
+
+    @Test
+    void tooManyEditsFallsBackToFullText() {
+        String base = IntStream.range(0, 800).mapToObj(i -> "a" + i).collect(Collectors.joining("\n"));
+        String target = IntStream.range(0, 800).mapToObj(i -> "b" + i).collect(Collectors.joining("\n"));
+
+        assertThat(TextDelta.diff(base, target)).isNull();
+    }
+
+    @Test
+    void applyRejectsDeltaForDifferentBase() {
+        String delta = TextDelta.diff("a\nb", "a\nc");
+
+        assertThatThrownBy(() -> TextDelta.apply("a\nb\nc", delta)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TextDelta.apply("a", "?1")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -6,7 +6,7 @@ import { DbmlEditor } from './components/DbmlEditor';
 import { SchemaVisualizer } from './components/SchemaVisualizer';
 import { useBackend } from './hooks/useBackend';
 import { parseDBML } from './services/dbmlParser';
-import { ParsedSchema, GeneratedFile, Project, FileNode, CodeChange } from './types';
+import { ParsedSchema, GeneratedFile, ProjectSummary, FileNode, CodeChange } from './types';
 // import { SAMPLE_REQUIREMENTS } from './constants';
 import Loader from './components/Loader';
 import { CodeGenerationModal } from './components/CodeGenerationModal';
@@ -26,19 +26,23 @@ export default function App() {
   const [isDownloadPopupOpen, setIsDownloadPopupOpen] = useState(false);
   const [isDownloading, setIsDownloading] = useState(false);
   const [downloadSuccess, setDownloadSuccess] = useState(false);
-  const [projects, setProjects] = useState<Project[]>([]);
+  const [projects, setProjects] = useState<ProjectSummary[]>([]);
+  const [nextProjectsCursor, setNextProjectsCursor] = useState<number | null>(null);
+  const [isLoadingMoreProjects, setIsLoadingMoreProjects] = useState(false);
   const [selectedProjectId, setSelectedProjectId] = useState<number | null>(null);
   const [isPreviewModalOpen, setIsPreviewModalOpen] = useState(false);
   const [previewData, setPreviewData] = useState<FileNode | null>(null);
   const [isDiffModalOpen, setIsDiffModalOpen] = useState(false);
   const [diffChanges, setDiffChanges] = useState<CodeChange[] | null>(null);
+  // DBML the saved Java code was generated from; comparisons diff against this schema
   const [savedDbmlCode, setSavedDbmlCode] = useState<string>('');
   const [isComparingCode, setIsComparingCode] = useState(false);
   const [savedJavaCode, setSavedJavaCode] = useState<string>('');
-  const [oldJavaCode, setOldJavaCode] = useState<string>('');
-  const [newJavaCode, setNewJavaCode] = useState<string>('');
+  // The two DBML versions shown side by side in the compare view
+  const [compareOldDbml, setCompareOldDbml] = useState<string>('');
+  const [compareNewDbml, setCompareNewDbml] = useState<string>('');
   
-  const { generateDbml, isLoading, generateSpringBootCode, isCodeLoading, isPreviewLoading, isDbmlUpdating, error, fetchProjects, fetchProjectById, downloadGeneratedCode, generatePreview, updateDbml, compareCode } = useBackend();
+  const { generateDbml, isLoading, generateSpringBootCode, isCodeLoading, isPreviewLoading, isDbmlUpdating, error, fetchProjects, fetchProjectById, downloadGeneratedCode, generatePreview, updateDbml, compareDbml } = useBackend();
 
   const handleGenerate = useCallback(async () => {
     const response = await generateDbml(requirements, projectName);
@@ -46,9 +50,10 @@ export default function App() {
       setDbmlCode(response.cleanDbmlCode);
       setSelectedProjectId(response.projectId);
       // Refresh projects list to include newly created project
-      const fetchedProjects = await fetchProjects();
-      if (fetchedProjects) {
-        setProjects(fetchedProjects);
+      const page = await fetchProjects();
+      if (page) {
+        setProjects(page.items);
+        setNextProjectsCursor(page.nextCursor);
       }
     }
   }, [requirements, projectName, generateDbml, fetchProjects]);
@@ -61,6 +66,7 @@ export default function App() {
       // Save the generated Java code for comparison
       const concatenatedCode = files.map(f => `// File: ${f.fileName}\n${f.content}`).join('\n\n');
       setSavedJavaCode(concatenatedCode);
+      setSavedDbmlCode(dbmlCode);
       setIsCodeModalOpen(true);
     }
   }, [dbmlCode, generateSpringBootCode]);
@@ -112,29 +118,25 @@ export default function App() {
     
     setIsComparingCode(true);
     setIsDiffModalOpen(true);
-    setOldJavaCode(savedJavaCode);
+    setCompareOldDbml(savedDbmlCode);
+    setCompareNewDbml('');
+    setDiffChanges(null);
     
     // Regenerate DBML from requirements
     const response = await generateDbml(requirements, projectName || 'Comparison');
     if (response) {
       const newDbmlCode = response.cleanDbmlCode;
+      setCompareNewDbml(newDbmlCode);
       
-      // Generate new Java code from new DBML
-      const newFiles = await generateSpringBootCode(newDbmlCode);
-      if (newFiles) {
-        const newCodeStr = newFiles.map(f => `// File: ${f.fileName}\n${f.content}`).join('\n\n');
-        setNewJavaCode(newCodeStr);
-        
-        // Compare old vs new Java code
-        const changes = await compareCode(savedJavaCode, newCodeStr);
-        if (changes) {
-          setDiffChanges(changes);
-        }
+      // Compare the two schemas directly instead of generating and diffing Java code
+      const changes = await compareDbml(savedDbmlCode, newDbmlCode);
+      if (changes) {
+        setDiffChanges(changes);
       }
     }
     
     setIsComparingCode(false);
-  }, [savedJavaCode, requirements, projectName, generateDbml, generateSpringBootCode, compareCode]);
+  }, [savedJavaCode, savedDbmlCode, requirements, projectName, generateDbml, compareDbml]);
 
   useEffect(() => {
     try {
@@ -149,9 +151,10 @@ export default function App() {
   // Load projects on mount
   useEffect(() => {
     const loadProjects = async () => {
-      const fetchedProjects = await fetchProjects();
-      if (fetchedProjects) {
-        setProjects(fetchedProjects);
+      const page = await fetchProjects();
+      if (page) {
+        setProjects(page.items);
+        setNextProjectsCursor(page.nextCursor);
       }
     };
     loadProjects();
@@ -187,12 +190,25 @@ export default function App() {
 
   // Handle refresh projects
   const handleRefreshProjects = useCallback(async () => {
-    const fetchedProjects = await fetchProjects();
-    if (fetchedProjects) {
-      setProjects(fetchedProjects);
+    const page = await fetchProjects();
+    if (page) {
+      setProjects(page.items);
+      setNextProjectsCursor(page.nextCursor);
     }
   }, [fetchProjects]);
 
+  // Append the next page of projects
+  const handleLoadMoreProjects = useCallback(async () => {
+    if (nextProjectsCursor === null || isLoadingMoreProjects) return;
+    setIsLoadingMoreProjects(true);
+    const page = await fetchProjects(nextProjectsCursor);
+    if (page) {
+      setProjects(prev => [...prev, ...page.items]);
+      setNextProjectsCursor(page.nextCursor);
+    }
+    setIsLoadingMoreProjects(false);
+  }, [fetchProjects, nextProjectsCursor, isLoadingMoreProjects]);
+
   // Automatically generate on initial load for demonstration
   // useEffect(() => {
   //   if (requirements && !dbmlCode) {
@@ -227,8 +243,8 @@ export default function App() {
         onClose={() => setIsDiffModalOpen(false)}
         changes={diffChanges}
         isLoading={isComparingCode}
-        oldCode={oldJavaCode}
-        newCode={newJavaCode}
+        oldCode={compareOldDbml}
+        newCode={compareNewDbml}
       />
       <Header 
         onGenerate={handleGenerate} 
@@ -248,6 +264,9 @@ export default function App() {
             selectedProjectId={selectedProjectId}
             onSelectProject={handleSelectProject}
             onRefresh={handleRefreshProjects}
+            hasMore={nextProjectsCursor !== null}
+            onLoadMore={handleLoadMoreProjects}
+            isLoadingMore={isLoadingMoreProjects}
             isLoading={isLoading}
           />
           <RequirementsEditor
@@ -1,16 +1,19 @@
 import React from 'react';
-import { Project } from '../types';
+import { ProjectSummary } from '../types';
 import { FolderIcon } from './icons';
 
 interface ProjectSelectorProps {
-  projects: Project[];
+  projects: ProjectSummary[];
   selectedProjectId: number | null;
   onSelectProject: (projectId: number) => void;
   onRefresh: () => void;
+  hasMore?: boolean;
+  onLoadMore?: () => void;
+  isLoadingMore?: boolean;
   isLoading?: boolean;
 }
 
-export function ProjectSelector({ projects, selectedProjectId, onSelectProject, onRefresh, isLoading }: ProjectSelectorProps) {
+export function ProjectSelector({ projects, selectedProjectId, onSelectProject, onRefresh, hasMore, onLoadMore, isLoadingMore, isLoading }: ProjectSelectorProps) {
   return (
     <div className="bg-slate-800 rounded-lg shadow-inner border border-slate-700 p-4">
       <div className="flex items-center justify-between mb-3">
@@ -51,6 +54,15 @@ export function ProjectSelector({ projects, selectedProjectId, onSelectProject,
           </option>
         ))}
       </select>
+      {hasMore && onLoadMore && (
+        <button
+          onClick={onLoadMore}
+          disabled={isLoading || isLoadingMore}
+          className="mt-2 w-full px-3 py-1.5 rounded-md text-sm text-purple-400 border border-slate-700 hover:bg-slate-700 hover:text-purple-300 transition-colors disabled:opacity-50 disabled:cursor-not-allowed"
+        >
+          {isLoadingMore ? 'Loading...' : 'Load more projects'}
+        </button>
+      )}
     </div>
   );
 }
@@ -1,9 +1,10 @@
 
 import { useState, useCallback } from 'react';
-import { GeneratedFile, GenerateDbmlResponse, Project, FileNode, CodeChange } from '../types';
+import { GeneratedFile, GenerateDbmlResponse, Project, ProjectPage, FileNode, CodeChange } from '../types';
 import { GEMINI_MODEL } from '../constants';
 
 const BASE_URL = 'http://localhost:8080';
+const PROJECT_PAGE_SIZE = 50;
 // const BASE_URL = "https://x7nbr74s-8080.asse.devtunnels.ms"
 export function useBackend() {
   const [isLoading, setIsLoading] = useState(false);
@@ -115,10 +116,13 @@ export function useBackend() {
     }
   }, []);
 
-  const fetchProjects = useCallback(async (): Promise<Project[] | null> => {
+  // The list endpoint is keyset-paginated and returns summaries only (no DBML).
+  // Fetches one page; pass the previous page's nextCursor to get the next one.
+  const fetchProjects = useCallback(async (cursor: number | null = null): Promise<ProjectPage | null> => {
     setError(null);
     try {
-      const response = await fetch(`${BASE_URL}/projects`, {
+      const query = cursor === null ? '' : `&cursor=${cursor}`;
+      const response = await fetch(`${BASE_URL}/projects?limit=${PROJECT_PAGE_SIZE}${query}`, {
         method: 'GET',
         headers: { 'Content-Type': 'application/json' },
       });
@@ -128,8 +132,8 @@ export function useBackend() {
         throw new Error(errorText || `Backend error: ${response.status}`);
       }
 
-      const projects: Project[] = await response.json();
-      return projects;
+      const page: ProjectPage = await response.json();
+      return page;
     } catch (e: any) {
       console.error('Fetch Projects Error:', e);
       setError(e.message || 'Failed to fetch projects.');
@@ -278,5 +282,32 @@ export function useBackend() {
     }
   }, []);
 
-  return { generateDbml, isLoading, generateSpringBootCode, isCodeLoading, isPreviewLoading, isDbmlUpdating, error, lastProjectId, fetchProjects, fetchProjectById, downloadGeneratedCode, generatePreview, updateDbml, compareCode };
+  // Structural diff computed directly on two DBML versions (no Java generation/parsing)
+  const compareDbml = useCallback(async (oldDbml: string, newDbml: string): Promise<CodeChange[] | null> => {
+    setIsLoading(true);
+    setError(null);
+    try {
+      const response = await fetch(`${BASE_URL}/schema-diff`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify({ oldDbml, newDbml }),
+      });
+
+      if (!response.ok) {
+        const errorText = await response.text();
+        throw new Error(errorText || `Backend error: ${response.status}`);
+      }
+
+      const changes: CodeChange[] = await response.json();
+      return changes;
+    } catch (e: any) {
+      console.error('Compare DBML Error:', e);
+      setError(e.message || 'Failed to compare schemas.');
+      return null;
+    } finally {
+      setIsLoading(false);
+    }
+  }, []);
+
+  return { generateDbml, isLoading, generateSpringBootCode, isCodeLoading, isPreviewLoading, isDbmlUpdating, error, lastProjectId, fetchProjects, fetchProjectById, downloadGeneratedCode, generatePreview, updateDbml, compareCode, compareDbml };
 }
@@ -39,6 +39,19 @@ export interface Project {
   cleanDbmlCode: string;
 }
 
+export interface ProjectSummary {
+  projectId: number;
+  projectName: string;
+  status?: string | null;
+  updatedAt?: string | null;
+  tableCount?: number | null;
+}
+
+export interface ProjectPage {
+  items: ProjectSummary[];
+  nextCursor: number | null;
+}
+
 export interface FileNode {
   name: string;
   type: 'folder' | 'file';
@@ -46,6 +59,7 @@ export interface FileNode {
   children: FileNode[];
   content?: string | null;
   language?: string | null;
+  size?: number | null;
 }
 
 export interface PreviewResponse {